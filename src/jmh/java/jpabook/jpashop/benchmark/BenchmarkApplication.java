@@ -0,0 +1,53 @@
+package jpabook.jpashop.benchmark;
+
+import jpabook.jpashop.JpashopApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 벤치마크용으로 JPA 계층만 띄운다. (웹 서버 없이, 인메모리 H2)
+ * application.yml 보다 우선하도록 커맨드라인 인자로 설정을 넘긴다.
+ */
+public final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    public static ConfigurableApplicationContext start(String databaseName) {
+        return start(databaseName, Map.of());
+    }
+
+    public static ConfigurableApplicationContext start(String databaseName, Map<String, Object> overrides) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("spring.main.web-application-type", "none");
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("spring.datasource.url", "jdbc:h2:mem:" + databaseName + ";DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+        properties.put("spring.datasource.username", "sa");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.jpa.hibernate.ddl-auto", "create");
+        properties.put("spring.jpa.properties.hibernate.default_batch_fetch_size", 100);
+        properties.put("spring.jpa.properties.hibernate.format_sql", false);
+        properties.put("decorator.datasource.enabled", false); // p6spy 로그 끄기
+        properties.put("jpashop.datagen.enabled", false); // 데이터는 벤치마크에서 크기를 정해서 직접 만든다.
+        properties.put("logging.level.root", "warn");
+        properties.put("logging.level.org.hibernate.SQL", "off");
+        properties.put("logging.level.org.hibernate.type", "off");
+        properties.putAll(overrides);
+
+        String[] args = properties.entrySet().stream()
+                .map(e -> "--" + e.getKey() + "=" + e.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(JpashopApplication.class).run(args);
+    }
+
+    public static TransactionTemplate readOnlyTransaction(ConfigurableApplicationContext context) {
+        TransactionTemplate template = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        template.setReadOnly(true);
+        return template;
+    }
+}
@@ -0,0 +1,33 @@
+package jpabook.jpashop.benchmark;
+
+import jpabook.jpashop.datagen.DataGenerator;
+import jpabook.jpashop.datagen.DataGeneratorProperties;
+import jpabook.jpashop.service.MemberService;
+import jpabook.jpashop.service.OrderSummaryService;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * 벤치마크용 데이터 적재 (DataGenerator 사용)
+ * 회원 = 주문 / 10, 상품 100개, 주문당 상품 2개
+ * 주문 요약 읽기 모델, 회원 주문 통계도 같이 만든다.
+ */
+public final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    public static void seed(ConfigurableApplicationContext context, int orders) {
+        DataGeneratorProperties props = new DataGeneratorProperties();
+        props.setMembers(Math.max(orders / 10, 1));
+        props.setBooks(60);
+        props.setAlbums(20);
+        props.setMovies(20);
+        props.setOrders(orders);
+        props.setItemsPerOrder(2);
+        props.setCategoryDepth(2);
+        props.setCategoryFanout(5);
+        context.getBean(DataGenerator.class).generate(props);
+        context.getBean(OrderSummaryService.class).rebuild();
+        context.getBean(MemberService.class).rebuildOrderStats();
+    }
+}
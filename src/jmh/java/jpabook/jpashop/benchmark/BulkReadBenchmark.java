@@ -0,0 +1,75 @@
+package jpabook.jpashop.benchmark;
+
+import jpabook.jpashop.repository.order.bulk.OrderBulkReader;
+import jpabook.jpashop.repository.order.bulk.OrderBulkRow;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 전체 주문(+ 회원, 배송, 주문상품, 상품)을 한 번 훑을 때 경로별 시간과 힙 사용량
+ * - stateless: OrderBulkReader.forEach (StatelessSession, 1차 캐시 X)
+ * - managed: OrderBulkReader.forEachManaged (영속성 컨텍스트에 전부 쌓인다.)
+ * - managed-clear: forEachManaged + jpashop.persistence-context.auto-clear (청크마다 비운다.)
+ *
+ * 할당량, GC 횟수는 -prof gc 로, 힙 최대 사용량은 PeakHeapProfiler 의 peak.heap 으로 나온다. (둘 다 jmh 태스크가 붙이고 results.json 에 남는다)
+ * ./gradlew jmh -Pjmh.args="BulkReadBenchmark -p orders=500000 -jvmArgs -Xmx2g"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BulkReadBenchmark {
+
+    @Param({"stateless", "managed", "managed-clear"})
+    String path;
+
+    @Param({"100000"})
+    int orders;
+
+    @Param({"500"})
+    int chunkSize;
+
+    ConfigurableApplicationContext context;
+    TransactionTemplate tx;
+    OrderBulkReader reader;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("bulk-read-" + path, Map.of(
+                "jpashop.persistence-context.auto-clear", path.equals("managed-clear"),
+                "jpashop.persistence-context.max-entities", chunkSize * 10)); // 청크 하나 (주문, 회원, 배송, 주문상품, 상품) 보다 크게
+        BenchmarkData.seed(context, orders);
+        tx = BenchmarkApplication.readOnlyTransaction(context);
+        reader = context.getBean(OrderBulkReader.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void readAll(Blackhole bh) {
+        tx.executeWithoutResult(s -> {
+            if (path.equals("stateless")) {
+                reader.forEach(null, chunkSize, row -> consume(row, bh));
+            } else {
+                reader.forEachManaged(null, chunkSize, row -> consume(row, bh));
+            }
+        });
+    }
+
+    // 내보내기처럼 주문 한 건의 값을 다 읽는다.
+    private static void consume(OrderBulkRow row, Blackhole bh) {
+        bh.consume(row.getOrder().getMember().getName());
+        bh.consume(row.getOrder().getDelivery().getAddress());
+        row.getOrderItems().forEach(orderItem -> bh.consume(orderItem.getItem().getName()));
+    }
+}
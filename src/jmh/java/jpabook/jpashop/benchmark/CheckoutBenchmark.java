@@ -0,0 +1,87 @@
+package jpabook.jpashop.benchmark;
+
+import jpabook.jpashop.service.OrderLine;
+import jpabook.jpashop.service.OrderService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 상품 cartSize 개를 장바구니 주문 한 건으로 주문 vs 단건 주문 cartSize 번
+ * 장바구니끼리 상품이 겹치도록 적은 상품(hotItems) 안에서 무작위로 고른다. (잠금 순서가 다르면 데드락)
+ * 점수는 초당 장바구니 수
+ *
+ * ./gradlew jmh -Pjmh.args="CheckoutBenchmark -t 16"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+public class CheckoutBenchmark {
+
+    @Param({"5"})
+    int cartSize;
+
+    @Param({"20"})
+    int hotItems;
+
+    ConfigurableApplicationContext context;
+    OrderService orderService;
+    List<Long> memberIds;
+    List<Long> itemIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("checkout", Map.of("spring.datasource.hikari.maximum-pool-size", 70));
+        BenchmarkData.seed(context, 1000);
+
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        jdbc.update("update item set stock_quantity = ?", Integer.MAX_VALUE);
+        memberIds = jdbc.queryForList("select member_id from member", Long.class);
+        itemIds = jdbc.queryForList("select item_id from item order by item_id limit ?", Long.class, hotItems);
+        orderService = context.getBean(OrderService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Long checkout() {
+        return orderService.checkout(randomMember(), randomCart());
+    }
+
+    @Benchmark
+    public Long singleLineOrders() {
+        Long memberId = randomMember();
+        Long last = null;
+        for (OrderLine line : randomCart()) {
+            last = orderService.order(memberId, line.getItemId(), line.getCount());
+        }
+        return last;
+    }
+
+    private Long randomMember() {
+        return memberIds.get(ThreadLocalRandom.current().nextInt(memberIds.size()));
+    }
+
+    // 장바구니에 담는 순서는 무작위 (잠금 순서는 서비스에서 정렬)
+    private List<OrderLine> randomCart() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<OrderLine> cart = new ArrayList<>(cartSize);
+        for (int i = 0; i < cartSize; i++) {
+            cart.add(new OrderLine(itemIds.get(random.nextInt(itemIds.size())), 1));
+        }
+        return cart;
+    }
+}
@@ -0,0 +1,78 @@
+package jpabook.jpashop.benchmark;
+
+import jpabook.jpashop.domain.OrderItem;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 영속성 컨텍스트에 주문상품 10,000개가 있을 때 flush 한 번의 비용
+ * 바이트코드 향상(변경 추적)이 없으면 flush 때마다 모든 엔티티를 스냅샷과 필드 단위로 비교하고,
+ * 있으면 setter 에서 남긴 변경 표시만 확인한다.
+ * 매번 주문상품 dirty 개만 바꾸고 flush 한다. (update 도 그만큼만 나간다.)
+ *
+ * ./gradlew jmh -Pjmh.args="DirtyCheckingBenchmark -p dirty=0,1,100"
+ * 향상 전과 비교하려면 build.gradle 의 hibernate.enhance 를 끄고 다시 잰다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DirtyCheckingBenchmark {
+
+    @Param({"10000"})
+    int orderItems;
+
+    @Param({"1"})
+    int dirty;
+
+    ConfigurableApplicationContext context;
+    EntityManagerFactory emf;
+    EntityManager em;
+    List<OrderItem> managed;
+    int round;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("dirty-checking");
+        BenchmarkData.seed(context, orderItems / 2); // 주문당 상품 2개
+        emf = context.getBean(EntityManagerFactory.class);
+    }
+
+    // 반복마다 새 영속성 컨텍스트에 주문상품을 다시 올린다. (트랜잭션은 끝에 롤백)
+    @Setup(Level.Iteration)
+    public void load() {
+        em = emf.createEntityManager();
+        em.getTransaction().begin();
+        managed = em.createQuery("select oi from OrderItem oi order by oi.id", OrderItem.class)
+                .setMaxResults(orderItems)
+                .getResultList();
+    }
+
+    @TearDown(Level.Iteration)
+    public void unload() {
+        em.getTransaction().rollback();
+        em.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void flush() {
+        round++;
+        for (int i = 0; i < dirty; i++) {
+            OrderItem orderItem = managed.get((round * dirty + i) % managed.size());
+            orderItem.setCount(orderItem.getCount() + 1);
+        }
+        em.flush();
+    }
+}
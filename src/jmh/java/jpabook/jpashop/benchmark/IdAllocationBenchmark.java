@@ -0,0 +1,106 @@
+package jpabook.jpashop.benchmark;
+
+import jpabook.jpashop.domain.id.BlockSequenceGenerator;
+import jpabook.jpashop.service.OrderService;
+import org.hibernate.MappingException;
+import org.hibernate.id.PersistentIdentifierGenerator;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.jpa.spi.IdentifierGeneratorStrategyProvider;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 동시 주문에서 id 블록 크기별 초당 주문 수
+ * blockSize=1 은 블록 이전 기준선: 이 벤치마크에서만 엔티티를 같은 테이블별 시퀀스에 increment 1, optimizer none 으로 매핑해서 id 마다 시퀀스를 조회한다.
+ * blockSize=10 은 BlockSequenceGenerator 가 허용하는 가장 작은 블록 (MIN_BLOCK_SIZE), 50 / 500 과 비교한다.
+ * 재고 경합이 섞이지 않도록 주문마다 상품을 무작위로 고른다.
+ *
+ * ./gradlew jmh -Pjmh.args="IdAllocationBenchmark -t 64"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+public class IdAllocationBenchmark {
+
+    @Param({"1", "10", "50", "500"})
+    int blockSize;
+
+    ConfigurableApplicationContext context;
+    OrderService orderService;
+    List<Long> memberIds;
+    List<Long> itemIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Map<String, Object> overrides = new LinkedHashMap<>();
+        overrides.put("spring.datasource.hikari.maximum-pool-size", 70);
+        if (blockSize == 1) {
+            overrides.put("spring.jpa.properties.hibernate.identifier_generator_strategy_provider", PerRowSequenceStrategy.class.getName());
+        } else {
+            overrides.put("spring.jpa.properties[jpashop.id.default-block-size]", blockSize);
+            for (String sequence : new String[]{"orders_seq", "delivery_seq", "order_item_seq"}) {
+                overrides.put("spring.jpa.properties[jpashop.id.block-size." + sequence + "]", blockSize);
+            }
+        }
+        context = BenchmarkApplication.start("id-" + blockSize, overrides);
+        BenchmarkData.seed(context, 1000);
+
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        jdbc.update("update item set stock_quantity = ?", Integer.MAX_VALUE);
+        memberIds = jdbc.queryForList("select member_id from member", Long.class);
+        itemIds = jdbc.queryForList("select item_id from item", Long.class);
+        orderService = context.getBean(OrderService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Long order() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return orderService.order(memberIds.get(random.nextInt(memberIds.size())), itemIds.get(random.nextInt(itemIds.size())), 1);
+    }
+
+    /**
+     * 기준선: block_seq 전략(BlockSequenceGenerator)을 PerRowSequenceGenerator 로 바꿔 끼운다.
+     * (hibernate.identifier_generator_strategy_provider, 엔티티 매핑은 그대로)
+     */
+    public static class PerRowSequenceStrategy implements IdentifierGeneratorStrategyProvider {
+        @Override
+        public Map<String, Class<?>> getStrategies() {
+            return Map.of(BlockSequenceGenerator.class.getName(), PerRowSequenceGenerator.class);
+        }
+    }
+
+    /**
+     * 테이블별 시퀀스 (테이블명_seq) 에서 id 하나마다 next value 를 조회한다.
+     */
+    public static class PerRowSequenceGenerator extends SequenceStyleGenerator {
+        @Override
+        public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+            String table = params.getProperty(PersistentIdentifierGenerator.TABLE);
+            params.setProperty(SEQUENCE_PARAM, table.toLowerCase(Locale.ROOT) + "_seq");
+            params.setProperty(INCREMENT_PARAM, "1");
+            params.setProperty(OPT_PARAM, StandardOptimizerDescriptor.NONE.getExternalName());
+            super.configure(type, params, serviceRegistry);
+        }
+    }
+}
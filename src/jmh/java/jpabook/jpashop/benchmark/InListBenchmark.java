@@ -0,0 +1,60 @@
+package jpabook.jpashop.benchmark;
+
+import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * v5 (findAllByDto_optimization) 의 컬렉션 IN 절 조회 방식 비교
+ * single: IN 절 하나에 id 전부, sequential: 고정 크기 청크 순차, parallel: 청크 병렬 (별도 읽기 전용 커넥션)
+ *
+ * ./gradlew jmh -Pjmh.args="InListBenchmark -p orders=10000,100000,1000000"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class InListBenchmark {
+
+    @Param({"10000"})
+    int orders;
+
+    @Param({"single", "sequential", "parallel"})
+    String mode;
+
+    @Param({"500"})
+    int chunkSize;
+
+    ConfigurableApplicationContext context;
+    TransactionTemplate tx;
+    OrderQueryRepository orderQueryRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("in-list", Map.of(
+                "jpashop.in-list.parallelism", 4,
+                "spring.datasource.hikari.maximum-pool-size", 8));
+        BenchmarkData.seed(context, orders);
+        tx = BenchmarkApplication.readOnlyTransaction(context);
+        orderQueryRepository = context.getBean(OrderQueryRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void v5(Blackhole bh) {
+        int size = "single".equals(mode) ? 0 : chunkSize;
+        boolean parallel = "parallel".equals(mode);
+        bh.consume(tx.execute(s -> orderQueryRepository.findAllByDto_optimization(size, parallel)));
+    }
+}
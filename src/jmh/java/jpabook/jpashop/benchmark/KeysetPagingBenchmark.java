@@ -0,0 +1,71 @@
+package jpabook.jpashop.benchmark;
+
+import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.repository.support.FetchPlanRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * offset 페이징 vs 키셋 페이징 (/api/v3.1/orders vs /api/v3.1/orders/keyset)
+ * page 가 뒤로 갈수록 offset 방식은 느려지고 키셋 방식은 그대로인지 확인한다.
+ *
+ * ./gradlew jmh -Pjmh.args="KeysetPagingBenchmark -p orders=1000000 -p page=0,1000,9999"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeysetPagingBenchmark {
+
+    @Param({"100000"})
+    int orders;
+
+    @Param({"100"})
+    int pageSize;
+
+    @Param({"0", "100", "999"})
+    int page;
+
+    ConfigurableApplicationContext context;
+    TransactionTemplate tx;
+    OrderRepository orderRepository;
+    Long lastOrderId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("keyset");
+        BenchmarkData.seed(context, orders);
+        tx = BenchmarkApplication.readOnlyTransaction(context);
+        orderRepository = context.getBean(OrderRepository.class);
+
+        // 키셋 방식에서 클라이언트가 들고 있을 커서(이전 페이지의 마지막 order_id)
+        EntityManager em = context.getBean(EntityManager.class);
+        lastOrderId = page == 0 ? null : tx.execute(s -> em.createQuery("select o.id from Order o order by o.id", Long.class)
+                .setFirstResult(page * pageSize - 1)
+                .setMaxResults(1)
+                .getSingleResult());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void offset(Blackhole bh) {
+        bh.consume(tx.execute(s -> orderRepository.findAll(new OrderSearch(), FetchPlanRegistry.SUMMARY, (long) page * pageSize, pageSize)));
+    }
+
+    @Benchmark
+    public void keyset(Blackhole bh) {
+        bh.consume(tx.execute(s -> orderRepository.findAllAfter(lastOrderId, null, FetchPlanRegistry.SUMMARY, pageSize)));
+    }
+}
@@ -0,0 +1,122 @@
+package jpabook.jpashop.benchmark;
+
+import jpabook.jpashop.api.OrderApiController;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.service.query.OrderDto;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 컨트롤러가 제공하는 주문 조회 전략(v2 ~ v7)별 비교
+ * OSIV 처럼 읽기 전용 트랜잭션 안에서 엔드포인트 메서드를 그대로 호출해서 DTO 변환(지연 로딩)까지 포함해서 잰다.
+ * 결과 타입에 묶이지 않도록 트랜잭션 안에서는 건수만 돌려준다. (DTO 변환은 다 끝난 뒤)
+ *
+ * ./gradlew jmh -Pjmh.args="OrderReadBenchmark -p orders=10000"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderReadBenchmark {
+
+    @Param({"1000"})
+    int orders;
+
+    @Param({"100"})
+    int pageSize;
+
+    ConfigurableApplicationContext context;
+    TransactionTemplate tx;
+    OrderApiController controller;
+    EntityManager em;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("order-read");
+        BenchmarkData.seed(context, orders);
+        tx = BenchmarkApplication.readOnlyTransaction(context);
+        controller = context.getBean(OrderApiController.class);
+        em = context.getBean(EntityManager.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    // findAllByString + 지연 로딩 (N + 1)
+    @Benchmark
+    public void v2_lazyLoading(Blackhole bh) {
+        bh.consume(tx.execute(s -> controller.ordersV2().size()));
+    }
+
+    // 컬렉션 페치 조인 쿼리 한 번으로 전체 (페이징 X, 주문상품 수만큼 row 가 늘어나고 distinct 로 줄인다.)
+    // 엔드포인트는 fetch plan 으로 바뀌어서 예전 findAllWithItem() 쿼리를 여기서 직접 실행한다.
+    @Benchmark
+    public void v3_fetchJoinAll(Blackhole bh) {
+        bh.consume(tx.execute(s -> {
+            List<Order> result = em.createQuery("select distinct o from Order o" +
+                            " join fetch o.member m" +
+                            " join fetch o.delivery d" +
+                            " join fetch o.orderItems oi" +
+                            " join fetch oi.item i", Order.class)
+                    .getResultList();
+            return result.stream()
+                    .map(OrderDto::new)
+                    .collect(Collectors.toList())
+                    .size();
+        }));
+    }
+
+    // fetch plan full, 전체를 한 페이지로 (루트 쿼리 + 같은 검색조건으로 컬렉션 쿼리 한 번)
+    @Benchmark
+    public void v3_fetchPlanFullAll(Blackhole bh) {
+        bh.consume(tx.execute(s -> controller.ordersV3(0, orders, new OrderSearch()).size()));
+    }
+
+    // fetch plan withItems (XToOne 페치 조인 + 컬렉션 batch size 단위)
+    @Benchmark
+    public void v3_1_pagedBatchFetch(Blackhole bh) {
+        bh.consume(tx.execute(s -> controller.ordersV3_page(0, pageSize).size()));
+    }
+
+    // fetch plan full 한 페이지 (루트 페이징 + 컬렉션 쿼리 한 번)
+    @Benchmark
+    public void v3_pagedTwoPhase(Blackhole bh) {
+        bh.consume(tx.execute(s -> controller.ordersV3(0, pageSize, new OrderSearch()).size()));
+    }
+
+    // findOrderQueryDtos: DTO 직접 조회 + 컬렉션 N + 1
+    @Benchmark
+    public void v4_dtoNPlusOne(Blackhole bh) {
+        bh.consume(tx.execute(s -> controller.ordersV4().size()));
+    }
+
+    // findAllByDto_optimization: DTO 직접 조회 + IN 절
+    @Benchmark
+    public void v5_dtoInQuery(Blackhole bh) {
+        bh.consume(tx.execute(s -> controller.ordersV5().size()));
+    }
+
+    // findAllByDto_flat + 애플리케이션 groupingBy
+    @Benchmark
+    public void v6_flatRegroup(Blackhole bh) {
+        bh.consume(tx.execute(s -> controller.ordersV6().size()));
+    }
+
+    // 읽기 모델 order_summary + order_summary_line IN 절 (조인 X)
+    @Benchmark
+    public void v7_readModel(Blackhole bh) {
+        bh.consume(tx.execute(s -> controller.ordersV7().size()));
+    }
+}
@@ -0,0 +1,75 @@
+package jpabook.jpashop.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OSIV on / off 에서 같은 커넥션 풀 크기로 주문 조회 API를 HTTP로 동시에 호출했을 때의 초당 요청 수
+ * OSIV 가 켜져 있으면 요청이 끝날 때까지 (JSON 직렬화 포함) 커넥션을 잡고 있어서 풀보다 많은 요청은 커넥션을 기다린다.
+ * 끄면 OrderQueryService 트랜잭션이 끝나는 순간 커넥션을 돌려준다.
+ *
+ * ./gradlew jmh -Pjmh.args="OsivLoadBenchmark -p poolSize=4,10"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+public class OsivLoadBenchmark {
+
+    @Param({"true", "false"})
+    String osiv;
+
+    @Param({"4"})
+    int poolSize;
+
+    @Param({"1000"})
+    int orders;
+
+    @Param({"/api/v3.1/orders?limit=100"})
+    String path;
+
+    ConfigurableApplicationContext context;
+    HttpClient client;
+    HttpRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("osiv-" + osiv + "-" + poolSize, Map.of(
+                "spring.main.web-application-type", "servlet",
+                "server.port", 0,
+                "spring.jpa.open-in-view", osiv,
+                "spring.datasource.hikari.maximum-pool-size", poolSize,
+                "jpashop.sql-budget.enabled", false));
+        BenchmarkData.seed(context, orders);
+        String port = context.getEnvironment().getProperty("local.server.port");
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+        request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).GET().build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int get() throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("응답 코드 " + response.statusCode());
+        }
+        return response.body().length;
+    }
+}
@@ -0,0 +1,86 @@
+package jpabook.jpashop.benchmark;
+
+import jpabook.jpashop.analytics.SalesColumns;
+import jpabook.jpashop.analytics.SalesGroupBy;
+import jpabook.jpashop.analytics.SalesQuery;
+import jpabook.jpashop.analytics.SalesSnapshot;
+import jpabook.jpashop.domain.OrderStatus;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 매출 스냅샷 집계 (DB 없이 SalesColumns 에 직접 적재)
+ * 주문상품 1000만 건 기준 스캔 + group by 가 몇 ms 인지 본다.
+ *
+ * ./gradlew jmh -Pjmh.args="SalesAnalyticsBenchmark -p lines=10000000 -p parallelism=1,8"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SalesAnalyticsBenchmark {
+
+    @Param({"10000000"})
+    int lines;
+
+    @Param({"1", "0"}) // 0 이면 CPU 코어 수
+    int parallelism;
+
+    ForkJoinPool pool;
+    SalesSnapshot snapshot;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        SplittableRandom random = new SplittableRandom(42);
+        int baseDay = (int) LocalDate.of(2022, 1, 1).toEpochDay();
+        byte order = (byte) OrderStatus.ORDER.ordinal();
+        byte cancel = (byte) OrderStatus.CANCEL.ordinal();
+
+        SalesColumns columns = new SalesColumns(lines);
+        for (int i = 0; i < lines; i++) {
+            columns.append(i / 3, baseDay + random.nextInt(365), random.nextInt(10_000),
+                    random.nextInt(1, 51) * 1000, random.nextInt(1, 6), random.nextInt(10) == 0 ? cancel : order);
+        }
+        snapshot = columns.snapshot();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    // 상품 1만 개로 group by
+    @Benchmark
+    public void byItem(Blackhole bh) {
+        bh.consume(snapshot.aggregate(query(SalesGroupBy.ITEM, null), pool));
+    }
+
+    // 한 달 구간만 일별로
+    @Benchmark
+    public void byDayInMonth(Blackhole bh) {
+        SalesQuery query = query(SalesGroupBy.DAY, OrderStatus.ORDER);
+        query.setFrom(LocalDate.of(2022, 3, 1));
+        query.setTo(LocalDate.of(2022, 3, 31));
+        bh.consume(snapshot.aggregate(query, pool));
+    }
+
+    @Benchmark
+    public void byStatus(Blackhole bh) {
+        bh.consume(snapshot.aggregate(query(SalesGroupBy.STATUS, null), pool));
+    }
+
+    private static SalesQuery query(SalesGroupBy groupBy, OrderStatus status) {
+        SalesQuery query = new SalesQuery();
+        query.setGroupBy(groupBy);
+        query.setStatus(status);
+        return query;
+    }
+}
@@ -0,0 +1,73 @@
+package jpabook.jpashop.benchmark;
+
+import jpabook.jpashop.service.ItemService;
+import jpabook.jpashop.service.OrderService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 인기 상품 하나에 주문이 몰릴 때 재고 차감 방식(jpashop.stock.mode)별 초당 주문 수
+ * optimistic 은 충돌하면 성공할 때까지 다시 주문한다. (재시도 비용까지 포함)
+ * shards > 0 이면 상품 재고를 샤딩해서 샤드 수만큼 주문이 동시에 차감할 수 있게 한다.
+ *
+ * ./gradlew jmh -Pjmh.args="StockContentionBenchmark -t 16 -p mode=ATOMIC,PESSIMISTIC"
+ * ./gradlew jmh -Pjmh.args="StockContentionBenchmark -t 64 -p mode=ATOMIC -p shards=0,16,64"
+ * 스레드 수는 JMH 의 -t 옵션으로 1 ~ 64 를 바꿔가며 잰다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+public class StockContentionBenchmark {
+
+    @Param({"ATOMIC", "OPTIMISTIC", "PESSIMISTIC"})
+    String mode;
+
+    @Param({"0"})
+    int shards;
+
+    ConfigurableApplicationContext context;
+    OrderService orderService;
+    Long memberId;
+    Long hotItemId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("stock-" + mode + "-" + shards, Map.of(
+                "jpashop.stock.mode", mode,
+                "spring.datasource.hikari.maximum-pool-size", 70)); // 64 스레드 + 여유
+        BenchmarkData.seed(context, 0);
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        memberId = jdbc.queryForObject("select min(member_id) from member", Long.class);
+        hotItemId = jdbc.queryForObject("select min(item_id) from item", Long.class);
+        jdbc.update("update item set stock_quantity = ? where item_id = ?", Integer.MAX_VALUE, hotItemId);
+        if (shards > 0) {
+            context.getBean(ItemService.class).enableStockSharding(hotItemId, shards);
+        }
+        orderService = context.getBean(OrderService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Long order() {
+        while (true) {
+            try {
+                return orderService.order(memberId, hotItemId, 1);
+            } catch (ObjectOptimisticLockingFailureException e) {
+                // 낙관적 락 충돌 -> 재시도
+            }
+        }
+    }
+}
@@ -1,108 +1,42 @@
 package jpabook.jpashop;
 
-import jpabook.jpashop.domain.*;
-import jpabook.jpashop.domain.Member;
-import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.datagen.DataGenerator;
+import jpabook.jpashop.datagen.DataGeneratorProperties;
+import jpabook.jpashop.service.MemberService;
+import jpabook.jpashop.service.OrderSummaryService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.PostConstruct;
-import javax.persistence.EntityManager;
 
 /**
- * 총 주문
- * userA
- *  Jpa Book1
- *  Jpa Book2
- * userB
- *  Spring Book1
- *  Spring Book2
+ * 시작할 때 jpashop.datagen 설정 크기만큼 데이터를 만든다.
+ * 예전처럼 em.persist()로 한 건씩 넣으면 부하 테스트할 만한 양을 만들 수 없기 때문에
+ * DataGenerator(JDBC batch insert, 멀티 스레드)를 사용한다.
+ * 기본값은 회원 2명, 책 4권, 주문 2건(주문당 상품 2개)
+ * JDBC로 넣은 주문은 주문 요약 읽기 모델, 회원 주문 통계에 반영되지 않기 때문에 끝나고 한 번 다시 만든다.
  */
 @Component
 @RequiredArgsConstructor
 public class InitDb {
 
-    private final InitService initService;
+    private final DataGenerator dataGenerator;
+    private final DataGeneratorProperties properties;
+    private final OrderSummaryService orderSummaryService;
+    private final MemberService memberService;
+
+    @Value("${jpashop.order-summary.rebuild-on-startup:true}")
+    private boolean rebuildOrderSummary;
 
     @PostConstruct
     public void init() {
-        initService.dbInit1();
-        initService.dbInit2();
-    }
-
-
-    /**
-     * 스프링 라이프 사이클 때문에 @Transactional 같은게 잘 안먹기 때문에
-     * 별도의 빈을 등록해서 사용해야 한다.
-     */
-    @Component
-    @Transactional
-    @RequiredArgsConstructor
-    static class InitService {
-
-        private final EntityManager em;
-
-        public void dbInit1() {
-            Member member = createMember("userA", "서울", "1", "1111");
-            em.persist(member);
-
-            Book book1 = createBook("JPA1 BOOK", 10000, 100);
-            em.persist(book1);
-
-            Book book2 = createBook("JPA2 BOOK", 20000, 100);
-            em.persist(book2);
-
-            OrderItem orderItem1 = OrderItem.createOrderItem(book1, 10000, 1);
-            OrderItem orderItem2 = OrderItem.createOrderItem(book2, 20000, 2);
-
-            Delivery delivery = createDelivery(member);
-
-            Order order = Order.createOrder(member, delivery, orderItem1, orderItem2);
-
-            em.persist(order);
-        }
-
-        public void dbInit2() {
-            Member member = createMember("userB", "광주", "2", "2222");
-            em.persist(member);
-
-            Book book1 = createBook("SPRING1 BOOK", 20000, 200);
-            em.persist(book1);
-
-            Book book2 = createBook("SPRING2 BOOK", 40000, 300);
-            em.persist(book2);
-
-            OrderItem orderItem1 = OrderItem.createOrderItem(book1, 20000, 3);
-            OrderItem orderItem2 = OrderItem.createOrderItem(book2, 40000, 4);
-
-            Delivery delivery = createDelivery(member);
-
-            Order order = Order.createOrder(member, delivery, orderItem1, orderItem2);
-
-            em.persist(order);
-        }
-
-        private static Member createMember(String name, String city, String street, String zipcode) {
-            Member member = new Member();
-            member.setName(name);
-            member.setAddress(new Address(city, street, zipcode));
-            return member;
-        }
-
-        private static Book createBook(String name, int price, int stockQuantity) {
-            Book book1 = new Book();
-            book1.setName(name);
-            book1.setPrice(price);
-            book1.setStockQuantity(stockQuantity);
-            return book1;
-        }
-
-        private static Delivery createDelivery(Member member) {
-            Delivery delivery = new Delivery();
-            delivery.setAddress(member.getAddress());
-            return delivery;
+        if (properties.isEnabled()) {
+            dataGenerator.generate(properties);
+            if (rebuildOrderSummary) {
+                orderSummaryService.rebuild();
+            }
+            memberService.rebuildOrderStats(); // JDBC로 넣은 회원 / 주문은 통계가 없다.
         }
     }
 }
-
@@ -0,0 +1,16 @@
+package jpabook.jpashop.analytics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 베스트셀러 한 줄 (quantity: 전체 판매량, 급상승은 최근 window 안의 주문 수량 근사치)
+ */
+@Getter
+@AllArgsConstructor
+public class BestSeller {
+    private final int rank;
+    private final Long itemId;
+    private final String itemName;
+    private final long quantity;
+}
@@ -0,0 +1,210 @@
+package jpabook.jpashop.analytics;
+
+import jpabook.jpashop.service.event.OrderCanceledEvent;
+import jpabook.jpashop.service.event.OrderPlacedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 베스트셀러 (판매량 순위) / 급상승 상품
+ * 홈 화면에서 매번 order_item 전체를 group by 하지 않도록 주문 / 취소 이벤트(커밋 후)로 메모리에서 바로 갱신한다.
+ *
+ * - 상품별 판매량: LongAdder (스레드마다 다른 셀에 더해서 인기 상품에 경합이 몰려도 락 X)
+ * - 순위: 전체 + 카테고리(category_item)별 TopN, 읽을 때는 순위 크기만큼만 복사 (DB X)
+ * - 급상승: 최근 window 동안의 주문 수량을 CountMinSketch 로 근사 (TrendingWindow)
+ *
+ * 이벤트는 커밋 후에 받기 때문에 서버가 재시작되거나 JDBC 로 직접 넣은 주문은 반영되지 않는다.
+ * 그래서 reconcile-interval 마다 원본 테이블에서 판매량과 카테고리를 다시 읽어서 통째로 바꾼다.
+ * (다시 읽는 쿼리가 도는 동안 들어온 이벤트는 예전 보드에 반영되고 다음 재계산 때 맞춰진다)
+ */
+@Slf4j
+@Component
+public class BestSellerBoard {
+
+    private static final String SOLD_SQL =
+            "select oi.item_id, sum(oi.count) from order_item oi" +
+                    " join orders o on o.order_id = oi.order_id" +
+                    " where o.status = 'ORDER'" +
+                    " group by oi.item_id";
+    private static final String ITEM_SQL = "select item_id, name from item";
+    private static final String CATEGORY_SQL = "select category_id, item_id from category_item";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int size;
+    private final TrendingWindow trendingWindow; // 끄면 null
+
+    private volatile Board board;
+
+    public BestSellerBoard(JdbcTemplate jdbcTemplate,
+                           @Value("${jpashop.best-sellers.size:10}") int size,
+                           @Value("${jpashop.best-sellers.trending.enabled:true}") boolean trendingEnabled,
+                           @Value("${jpashop.best-sellers.trending.slices:12}") int slices,
+                           @Value("${jpashop.best-sellers.trending.slice-seconds:300}") long sliceSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.size = size;
+        this.trendingWindow = trendingEnabled
+                ? new TrendingWindow(slices, sliceSeconds * 1000, 4, 1024, System::currentTimeMillis)
+                : null;
+        this.board = new Board(size * 2, Map.of());
+    }
+
+    @TransactionalEventListener
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        Board current = board;
+        for (OrderPlacedEvent.Line line : event.getLines()) {
+            current.names.put(line.getItemId(), line.getItemName());
+            current.add(line.getItemId(), line.getCount());
+            if (trendingWindow != null) {
+                if (trendingWindow.add(line.getItemId(), line.getCount())) {
+                    current.trending.rescore(trendingWindow::estimate); // 새 조각: 빠져나간 조각만큼 점수를 다시 매긴다.
+                }
+                current.trending.update(line.getItemId(), () -> trendingWindow.estimate(line.getItemId()));
+            }
+        }
+    }
+
+    @TransactionalEventListener
+    public void onOrderCanceled(OrderCanceledEvent event) {
+        Board current = board;
+        event.getItemQuantities().forEach((itemId, quantity) -> current.add(itemId, -quantity));
+    }
+
+    /**
+     * 판매량 상위 상품 (categoryId 가 null 이면 전체)
+     */
+    public List<BestSeller> bestSellers(Long categoryId, int limit) {
+        Board current = board;
+        TopN topN = categoryId == null ? current.overall : current.byCategory.get(categoryId);
+        if (topN == null) {
+            return Collections.emptyList();
+        }
+        long[][] top = topN.top(Math.min(limit, size));
+        List<BestSeller> result = new ArrayList<>(top[0].length);
+        for (int i = 0; i < top[0].length; i++) {
+            result.add(new BestSeller(i + 1, top[0][i], current.names.get(top[0][i]), top[1][i]));
+        }
+        return result;
+    }
+
+    /**
+     * 최근 window 안에서 많이 주문된 상품
+     * 후보(순위 크기 * 2)의 현재 추정치를 다시 구해서 정렬한다. -> 오래된 주문은 조각이 지나가면서 빠진다.
+     */
+    public List<BestSeller> trending(int limit) {
+        if (trendingWindow == null) {
+            return Collections.emptyList();
+        }
+        Board current = board;
+        List<long[]> candidates = new ArrayList<>();
+        for (long itemId : current.trending.itemIds()) {
+            long estimate = trendingWindow.estimate(itemId);
+            if (estimate > 0) {
+                candidates.add(new long[]{itemId, estimate});
+            }
+        }
+        candidates.sort((a, b) -> Long.compare(b[1], a[1]));
+
+        int n = Math.min(Math.min(limit, size), candidates.size());
+        List<BestSeller> result = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            long[] candidate = candidates.get(i);
+            result.add(new BestSeller(i + 1, candidate[0], current.names.get(candidate[0]), candidate[1]));
+        }
+        return result;
+    }
+
+    @Scheduled(fixedDelayString = "${jpashop.best-sellers.reconcile-interval:300000}")
+    public void scheduledReconcile() {
+        try {
+            int corrected = reconcile();
+            if (corrected > 0) {
+                log.info("베스트셀러 재계산: 판매량이 달랐던 상품 {}개", corrected);
+            }
+        } catch (RuntimeException e) {
+            log.warn("베스트셀러 재계산 실패", e);
+        }
+    }
+
+    /**
+     * 원본 테이블에서 판매량, 상품 이름, 카테고리를 다시 읽어서 보드를 통째로 바꾼다.
+     * @return 메모리 판매량과 달랐던 상품 수
+     */
+    public synchronized int reconcile() {
+        Map<Long, Long> sold = new HashMap<>();
+        jdbcTemplate.query(SOLD_SQL, rs -> {
+            sold.put(rs.getLong(1), rs.getLong(2));
+        });
+        Map<Long, List<Long>> categories = new HashMap<>();
+        jdbcTemplate.query(CATEGORY_SQL, rs -> {
+            categories.computeIfAbsent(rs.getLong(2), k -> new ArrayList<>()).add(rs.getLong(1));
+        });
+
+        Board previous = board;
+        Board next = new Board(size * 2, categories);
+        jdbcTemplate.query(ITEM_SQL, rs -> {
+            next.names.put(rs.getLong(1), rs.getString(2));
+        });
+        sold.forEach(next::add);
+        for (long itemId : previous.trending.itemIds()) { // 급상승 후보는 그대로 넘긴다.
+            next.trending.update(itemId, () -> trendingWindow == null ? 0 : trendingWindow.estimate(itemId));
+        }
+        board = next;
+
+        int corrected = 0;
+        for (Map.Entry<Long, LongAdder> entry : previous.sold.entrySet()) {
+            if (entry.getValue().sum() != sold.getOrDefault(entry.getKey(), 0L)) {
+                corrected++;
+            }
+        }
+        for (Long itemId : sold.keySet()) {
+            if (!previous.sold.containsKey(itemId)) {
+                corrected++;
+            }
+        }
+        return corrected;
+    }
+
+    /**
+     * 판매량 + 순위 한 벌 (재계산할 때 통째로 바꾼다)
+     */
+    private static final class Board {
+        static final long[] NO_CATEGORIES = new long[0];
+
+        final ConcurrentHashMap<Long, LongAdder> sold = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<Long, String> names = new ConcurrentHashMap<>();
+        final Map<Long, long[]> categoriesOfItem = new HashMap<>(); // 만든 뒤로는 읽기만
+        final Map<Long, TopN> byCategory = new HashMap<>(); // 만든 뒤로는 읽기만
+        final TopN overall;
+        final TopN trending;
+
+        Board(int capacity, Map<Long, List<Long>> categories) {
+            overall = new TopN(capacity);
+            trending = new TopN(capacity);
+            categories.forEach((itemId, categoryIds) -> {
+                categoriesOfItem.put(itemId, categoryIds.stream().mapToLong(Long::longValue).toArray());
+                categoryIds.forEach(categoryId -> byCategory.computeIfAbsent(categoryId, k -> new TopN(capacity)));
+            });
+        }
+
+        void add(long itemId, long delta) {
+            LongAdder adder = sold.computeIfAbsent(itemId, k -> new LongAdder());
+            adder.add(delta);
+            overall.update(itemId, adder::sum);
+            for (long categoryId : categoriesOfItem.getOrDefault(itemId, NO_CATEGORIES)) {
+                byCategory.get(categoryId).update(itemId, adder::sum);
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package jpabook.jpashop.analytics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-Min Sketch: 상품 수와 상관없이 고정 크기(depth * width) 카운터로 상품별 빈도를 근사한다.
+ * 해시 충돌로 실제보다 크게 나올 수는 있어도 작게 나오지는 않는다. (행마다 다른 해시, 그중 최솟값)
+ * 카운터는 AtomicLongArray 라 락 없이 동시에 더한다.
+ */
+final class CountMinSketch {
+
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+            0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x27D4EB2F165667C5L, 0x94D049BB133111EBL};
+
+    private final int depth;
+    private final int mask;
+    private final AtomicLongArray counters;
+
+    CountMinSketch(int depth, int width) {
+        if (depth < 1 || depth > SEEDS.length || Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("depth는 1 ~ " + SEEDS.length + ", width는 2의 거듭제곱이어야 합니다.");
+        }
+        this.depth = depth;
+        this.mask = width - 1;
+        this.counters = new AtomicLongArray(depth * width);
+    }
+
+    void add(long key, long delta) {
+        for (int row = 0; row < depth; row++) {
+            counters.addAndGet(index(row, key), delta);
+        }
+    }
+
+    long estimate(long key) {
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters.get(index(row, key)));
+        }
+        return min;
+    }
+
+    void clear() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+    }
+
+    private int index(int row, long key) {
+        long hash = (key + row) * SEEDS[row];
+        hash ^= hash >>> 31;
+        return row * (mask + 1) + ((int) hash & mask);
+    }
+}
@@ -0,0 +1,62 @@
+package jpabook.jpashop.analytics;
+
+/**
+ * 키가 [minKey, minKey + range) 안에 있을 때 쓰는 배열 집계 (해시 X)
+ * 주문일, 주문 상태, id 범위가 좁은 상품은 이쪽이 훨씬 빠르다.
+ */
+final class DenseAccumulator implements SalesAccumulator {
+
+    private final long minKey;
+    private final long[] revenues;
+    private final long[] quantities;
+    private final long[] lines;
+
+    DenseAccumulator(long minKey, int range) {
+        this.minKey = minKey;
+        this.revenues = new long[range];
+        this.quantities = new long[range];
+        this.lines = new long[range];
+    }
+
+    @Override
+    public void add(long key, long revenue, long quantity, long lineCount) {
+        int index = (int) (key - minKey);
+        revenues[index] += revenue;
+        quantities[index] += quantity;
+        lines[index] += lineCount;
+    }
+
+    @Override
+    public void merge(SalesAccumulator other) {
+        if (!(other instanceof DenseAccumulator)) {
+            SalesAccumulator.super.merge(other);
+            return;
+        }
+        DenseAccumulator dense = (DenseAccumulator) other;
+        for (int i = 0; i < lines.length; i++) {
+            revenues[i] += dense.revenues[i];
+            quantities[i] += dense.quantities[i];
+            lines[i] += dense.lines[i];
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (long count : lines) {
+            if (count > 0) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void forEach(Visitor visitor) {
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i] > 0) {
+                visitor.visit(minKey + i, revenues[i], quantities[i], lines[i]);
+            }
+        }
+    }
+}
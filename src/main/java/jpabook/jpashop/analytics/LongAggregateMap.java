@@ -0,0 +1,91 @@
+package jpabook.jpashop.analytics;
+
+/**
+ * long 키 -> (매출, 수량, 주문상품 수) 합계 open addressing 해시맵
+ * 키 범위가 넓어서 배열을 쓸 수 없을 때 스캔 루프에서 박싱 없이 더하기 위해 HashMap 대신 쓴다.
+ */
+final class LongAggregateMap implements SalesAccumulator {
+
+    private long[] keys;
+    private boolean[] used;
+    private long[] revenues;
+    private long[] quantities;
+    private long[] lines;
+    private int size;
+
+    LongAggregateMap() {
+        this(64);
+    }
+
+    LongAggregateMap(int expected) {
+        allocate(Integer.highestOneBit(Math.max(expected, 8) * 2 - 1) << 1);
+    }
+
+    @Override
+    public void add(long key, long revenue, long quantity, long lineCount) {
+        int slot = slotOf(key);
+        if (!used[slot]) {
+            if ((size + 1) * 2 > keys.length) { // 절반 이상 차면 두 배로
+                rehash();
+                slot = slotOf(key);
+            }
+            used[slot] = true;
+            keys[slot] = key;
+            size++;
+        }
+        revenues[slot] += revenue;
+        quantities[slot] += quantity;
+        lines[slot] += lineCount;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void forEach(Visitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                visitor.visit(keys[i], revenues[i], quantities[i], lines[i]);
+            }
+        }
+    }
+
+    private int slotOf(long key) {
+        int mask = keys.length - 1;
+        int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask; // 연속된 id, 날짜도 고르게 퍼지도록
+        while (used[slot] && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        boolean[] oldUsed = used;
+        long[] oldRevenues = revenues;
+        long[] oldQuantities = quantities;
+        long[] oldLines = lines;
+
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int slot = slotOf(oldKeys[i]);
+                used[slot] = true;
+                keys[slot] = oldKeys[i];
+                revenues[slot] = oldRevenues[i];
+                quantities[slot] = oldQuantities[i];
+                lines[slot] = oldLines[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        used = new boolean[capacity];
+        revenues = new long[capacity];
+        quantities = new long[capacity];
+        lines = new long[capacity];
+    }
+}
@@ -0,0 +1,23 @@
+package jpabook.jpashop.analytics;
+
+/**
+ * 스캔 구간 하나의 group by 결과 (키별 매출, 수량, 주문상품 수 합계)
+ * 키 범위가 좁으면 배열(DenseAccumulator), 넓으면 해시맵(LongAggregateMap) 을 쓴다.
+ * 스레드 하나 전용이고 같은 쿼리 안에서는 같은 구현끼리만 합친다.
+ */
+interface SalesAccumulator {
+
+    void add(long key, long revenue, long quantity, long lines);
+
+    default void merge(SalesAccumulator other) {
+        other.forEach(this::add);
+    }
+
+    int size();
+
+    void forEach(Visitor visitor);
+
+    interface Visitor {
+        void visit(long key, long revenue, long quantity, long lines);
+    }
+}
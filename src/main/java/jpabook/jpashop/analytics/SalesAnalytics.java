@@ -0,0 +1,171 @@
+package jpabook.jpashop.analytics;
+
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.service.event.OrderCanceledEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PreDestroy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 매출 분석용 메모리 스냅샷
+ * 영업 시간에 order_item, orders 에 group by 를 돌리면 주문 트랜잭션이 느려지기 때문에
+ * 주문상품을 컬럼별 primitive 배열(SalesColumns)로 메모리에 올려두고 ForkJoinPool 로 병렬 스캔해서 집계한다. (엔티티 X, 영속성 컨텍스트 X)
+ *
+ * 갱신은 증분으로만 한다.
+ * 1. 마지막으로 반영한 주문 id 이후의 주문만 JDBC로 읽어서 뒤에 붙인다.
+ *    id 는 persist 할 때 받고 커밋은 그 뒤라서 (대량 주문, 락 대기) 이미 반영한 주문보다 작은 id 가 늦게 커밋될 수 있다.
+ *    그래서 갱신마다 마지막 주문 id 부터 rescan-window 만큼 거꾸로 id 만 다시 확인하고,
+ *    빠진 주문이 있으면 그 주문부터 뒤를 잘라내고 다시 읽는다. (rescan-window 보다 더 밀린 주문은 rebuild 로 잡는다)
+ * 2. 취소는 커밋 후에 (OrderCanceledEvent) 주문 id만 큐에 넣어두고 갱신할 때 상태 배열만 바꾼다.
+ * 어긋났다고 의심되면 rebuild()로 처음부터 다시 읽는다.
+ */
+@Slf4j
+@Component
+public class SalesAnalytics {
+
+    private static final String LOAD_SQL =
+            "select o.order_id, o.order_date, o.status, oi.item_id, oi.order_price, oi.count" +
+                    " from orders o" +
+                    " join order_item oi on oi.order_id = o.order_id" +
+                    " where o.order_id > ?" +
+                    " order by o.order_id";
+    private static final String WINDOW_SQL =
+            "select distinct oi.order_id from order_item oi" +
+                    " where oi.order_id > ? and oi.order_id <= ?" +
+                    " order by oi.order_id";
+    private static final int FETCH_SIZE = 10_000;
+    private static final byte CANCEL = (byte) OrderStatus.CANCEL.ordinal();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ForkJoinPool pool;
+    private final long rescanWindow;
+    private final Queue<Long> canceledOrderIds = new ConcurrentLinkedQueue<>();
+
+    private SalesColumns columns = new SalesColumns(); // refresh / rebuild (synchronized) 에서만 쓴다.
+    private volatile SalesSnapshot snapshot = SalesSnapshot.EMPTY;
+
+    public SalesAnalytics(JdbcTemplate jdbcTemplate,
+                          @Value("${jpashop.analytics.parallelism:0}") int parallelism,
+                          @Value("${jpashop.analytics.rescan-window:50000}") long rescanWindow) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.rescanWindow = rescanWindow;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    public SalesReport query(SalesQuery query) {
+        return snapshot.aggregate(query, pool);
+    }
+
+    public SalesSnapshot snapshot() {
+        return snapshot;
+    }
+
+    @Scheduled(fixedDelayString = "${jpashop.analytics.refresh-interval:10000}")
+    public void scheduledRefresh() {
+        try {
+            int appended = refresh();
+            if (appended > 0) {
+                log.debug("매출 스냅샷 주문상품 {}건 추가 (전체 {}건)", appended, snapshot.size());
+            }
+        } catch (RuntimeException e) {
+            log.warn("매출 스냅샷 갱신 실패", e);
+        }
+    }
+
+    /**
+     * 새 주문(늦게 커밋된 주문 포함)을 붙이고 쌓인 취소를 반영한다.
+     * @return 늘어난 주문상품 수
+     */
+    public synchronized int refresh() {
+        int before = columns.size();
+        Long lateOrderId = findLateOrderId();
+        if (lateOrderId != null) {
+            int dropped = columns.truncateAfter(lateOrderId - 1);
+            log.debug("늦게 커밋된 주문 {} 부터 다시 읽는다. (주문상품 {}건)", lateOrderId, dropped);
+        }
+        long lastOrderId = columns.lastOrderId();
+
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(LOAD_SQL);
+            ps.setFetchSize(FETCH_SIZE);
+            ps.setLong(1, lastOrderId);
+            return ps;
+        }, (ResultSetExtractor<Void>) rs -> {
+            append(rs);
+            return null;
+        });
+
+        Long orderId;
+        while ((orderId = canceledOrderIds.poll()) != null) {
+            columns.updateStatus(orderId, CANCEL); // 아직 스냅샷에 없는 주문이면 읽을 때 취소 상태로 읽힌다.
+        }
+
+        snapshot = columns.snapshot();
+        return columns.size() - before;
+    }
+
+    /**
+     * 스냅샷을 버리고 처음부터 다시 읽는다.
+     * 다시 읽는 동안에도 조회는 이전 스냅샷으로 한다.
+     */
+    public synchronized int rebuild() {
+        columns = new SalesColumns(Math.max(columns.size(), 1024));
+        return refresh();
+    }
+
+    /**
+     * 취소된 주문을 다음 갱신 때 반영하도록 큐에 넣는다. (커밋된 뒤에 받는다)
+     */
+    @TransactionalEventListener
+    public void onOrderCanceled(OrderCanceledEvent event) {
+        canceledOrderIds.addAll(event.getOrderIds());
+    }
+
+    // 반영한 마지막 주문 id 이하에서 스냅샷에 없는 가장 작은 주문 id (없으면 null)
+    private Long findLateOrderId() {
+        long lastOrderId = columns.lastOrderId();
+        if (lastOrderId == 0) {
+            return null;
+        }
+        return jdbcTemplate.query(WINDOW_SQL, rs -> {
+            while (rs.next()) {
+                long orderId = rs.getLong(1);
+                if (!columns.containsOrder(orderId)) {
+                    return orderId;
+                }
+            }
+            return null;
+        }, Math.max(0, lastOrderId - rescanWindow), lastOrderId);
+    }
+
+    // 주문 id 순으로 붙인다.
+    private void append(ResultSet rs) throws SQLException {
+        while (rs.next()) {
+            LocalDateTime orderDate = rs.getTimestamp(2).toLocalDateTime();
+            columns.append(rs.getLong(1),
+                    (int) orderDate.toLocalDate().toEpochDay(),
+                    rs.getLong(4),
+                    rs.getInt(5),
+                    rs.getInt(6),
+                    (byte) OrderStatus.valueOf(rs.getString(3)).ordinal());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package jpabook.jpashop.analytics;
+
+import java.util.Arrays;
+
+/**
+ * 주문상품(order_item + orders) 을 컬럼별 primitive 배열로 쌓아두는 저장소
+ * 주문상품 1건 = 각 배열의 같은 인덱스 (객체 X, 박싱 X) -> 1000만 건이어도 배열 6개
+ *
+ * 주문 id 순서로만 append 한다. -> orderIds 가 정렬되어 있어서 이진 탐색으로 주문을 찾는다.
+ * 쓰기(append, 상태 변경)는 한 스레드(SalesAnalytics.refresh)만 하고
+ * 읽기는 snapshot() 으로 꺼낸 SalesSnapshot 으로 한다.
+ * 배열이 꽉 차면 새 배열로 복사하기 때문에 이전 스냅샷이 보던 배열과 길이(size)는 바뀌지 않는다.
+ * 뒤를 잘라낼 때(truncateAfter)도 새 배열로 복사한다. (잘라낸 자리에 다시 쓰면 이전 스냅샷이 보던 값이 바뀐다)
+ */
+public final class SalesColumns {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] orderIds;
+    private int[] epochDays; // 주문일 (LocalDate.toEpochDay)
+    private long[] itemIds;
+    private int[] prices; // 주문 가격
+    private int[] counts; // 주문 수량
+    private byte[] statuses; // OrderStatus.ordinal()
+    private int size;
+
+    // group by 할 때 배열로 집계할 수 있는지 판단하는 키 범위
+    private int minEpochDay = Integer.MAX_VALUE;
+    private int maxEpochDay = Integer.MIN_VALUE;
+    private long minItemId = Long.MAX_VALUE;
+    private long maxItemId = Long.MIN_VALUE;
+
+    public SalesColumns() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public SalesColumns(int capacity) {
+        int initial = Math.max(capacity, 16);
+        orderIds = new long[initial];
+        epochDays = new int[initial];
+        itemIds = new long[initial];
+        prices = new int[initial];
+        counts = new int[initial];
+        statuses = new byte[initial];
+    }
+
+    public void append(long orderId, int epochDay, long itemId, int price, int count, byte status) {
+        if (size > 0 && orderId < orderIds[size - 1]) {
+            throw new IllegalArgumentException("주문 id 순서로만 추가할 수 있습니다. orderId=" + orderId);
+        }
+        if (size == orderIds.length) {
+            grow();
+        }
+        orderIds[size] = orderId;
+        epochDays[size] = epochDay;
+        itemIds[size] = itemId;
+        prices[size] = price;
+        counts[size] = count;
+        statuses[size] = status;
+        size++;
+
+        minEpochDay = Math.min(minEpochDay, epochDay);
+        maxEpochDay = Math.max(maxEpochDay, epochDay);
+        minItemId = Math.min(minItemId, itemId);
+        maxItemId = Math.max(maxItemId, itemId);
+    }
+
+    /**
+     * 주문의 모든 주문상품 상태를 바꾼다. (취소)
+     * @return 바뀐 주문상품 수, 스냅샷에 없는 주문이면 0
+     */
+    public int updateStatus(long orderId, byte status) {
+        int index = Arrays.binarySearch(orderIds, 0, size, orderId);
+        if (index < 0) {
+            return 0;
+        }
+        int from = index;
+        while (from > 0 && orderIds[from - 1] == orderId) {
+            from--;
+        }
+        int to = index + 1;
+        while (to < size && orderIds[to] == orderId) {
+            to++;
+        }
+        Arrays.fill(statuses, from, to, status); // byte 쓰기는 원자적이라 스캔 중인 스냅샷도 깨진 값을 보지 않는다.
+        return to - from;
+    }
+
+    public boolean containsOrder(long orderId) {
+        return Arrays.binarySearch(orderIds, 0, size, orderId) >= 0;
+    }
+
+    /**
+     * orderId 보다 큰 주문의 주문상품을 버린다. (늦게 커밋된 주문을 순서대로 다시 붙이기 위해)
+     * @return 버린 주문상품 수
+     */
+    public int truncateAfter(long orderId) {
+        int index = Arrays.binarySearch(orderIds, 0, size, orderId + 1);
+        int cut = index < 0 ? -index - 1 : index;
+        while (cut > 0 && orderIds[cut - 1] > orderId) {
+            cut--;
+        }
+        int dropped = size - cut;
+        if (dropped == 0) {
+            return 0;
+        }
+
+        int capacity = orderIds.length;
+        orderIds = Arrays.copyOf(orderIds, capacity);
+        epochDays = Arrays.copyOf(epochDays, capacity);
+        itemIds = Arrays.copyOf(itemIds, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        size = cut;
+
+        minEpochDay = Integer.MAX_VALUE;
+        maxEpochDay = Integer.MIN_VALUE;
+        minItemId = Long.MAX_VALUE;
+        maxItemId = Long.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            minEpochDay = Math.min(minEpochDay, epochDays[i]);
+            maxEpochDay = Math.max(maxEpochDay, epochDays[i]);
+            minItemId = Math.min(minItemId, itemIds[i]);
+            maxItemId = Math.max(maxItemId, itemIds[i]);
+        }
+        return dropped;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long lastOrderId() {
+        return size == 0 ? 0 : orderIds[size - 1];
+    }
+
+    public SalesSnapshot snapshot() {
+        return new SalesSnapshot(orderIds, epochDays, itemIds, prices, counts, statuses, size,
+                minEpochDay, maxEpochDay, minItemId, maxItemId);
+    }
+
+    private void grow() {
+        int capacity = orderIds.length + (orderIds.length >> 1); // 1.5배
+        orderIds = Arrays.copyOf(orderIds, capacity);
+        epochDays = Arrays.copyOf(epochDays, capacity);
+        itemIds = Arrays.copyOf(itemIds, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+    }
+}
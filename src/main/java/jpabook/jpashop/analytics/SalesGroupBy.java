@@ -0,0 +1,26 @@
+package jpabook.jpashop.analytics;
+
+import jpabook.jpashop.domain.OrderStatus;
+
+import java.time.LocalDate;
+
+/**
+ * 매출 집계 기준
+ * 스캔할 때는 long 키로 묶고 결과를 만들 때만 실제 값으로 바꾼다.
+ */
+public enum SalesGroupBy {
+    ITEM, // 상품 id
+    DAY, // 주문일
+    STATUS; // 주문 상태
+
+    Object toKey(long key) {
+        switch (this) {
+            case DAY:
+                return LocalDate.ofEpochDay(key);
+            case STATUS:
+                return OrderStatus.values()[(int) key];
+            default:
+                return key;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package jpabook.jpashop.analytics;
+
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+
+/**
+ * 매출 집계 조건 (없는 조건은 전체)
+ */
+@Getter @Setter
+public class SalesQuery {
+
+    private SalesGroupBy groupBy = SalesGroupBy.ITEM;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate from; // 주문일 시작 (포함)
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate to; // 주문일 끝 (포함)
+
+    private OrderStatus status;
+    private Long itemId;
+    private int limit = 100; // 결과 행 수, 0 이면 전체
+}
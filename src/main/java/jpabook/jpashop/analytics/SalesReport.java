@@ -0,0 +1,20 @@
+package jpabook.jpashop.analytics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 매출 집계 응답
+ */
+@Getter
+@AllArgsConstructor
+public class SalesReport {
+    private final SalesGroupBy groupBy;
+    private final int snapshotLines; // 스냅샷 전체 주문상품 수
+    private final long matchedLines; // 조건에 맞은 주문상품 수
+    private final long lastOrderId; // 스냅샷에 반영된 마지막 주문 id
+    private final long elapsedMicros; // 스캔 시간
+    private final List<SalesRow> rows;
+}
@@ -0,0 +1,16 @@
+package jpabook.jpashop.analytics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 집계 결과 한 행 (key는 groupBy에 따라 상품 id, 주문일, 주문 상태)
+ */
+@Getter
+@AllArgsConstructor
+public class SalesRow {
+    private final Object key;
+    private final long revenue; // 주문 가격 * 수량 합
+    private final long quantity; // 수량 합
+    private final long lines; // 주문상품 수
+}
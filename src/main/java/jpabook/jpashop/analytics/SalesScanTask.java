@@ -0,0 +1,144 @@
+package jpabook.jpashop.analytics;
+
+import jpabook.jpashop.domain.OrderStatus;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 스냅샷의 [from, to) 구간을 스캔해서 집계한다.
+ * 구간이 THRESHOLD 보다 크면 반으로 나눠서 한쪽은 fork, 한쪽은 직접 계산한 뒤 합친다.
+ */
+final class SalesScanTask extends RecursiveTask<SalesAccumulator> {
+
+    static final int THRESHOLD = 1 << 18; // 구간 하나에 26만 건 정도 (너무 잘게 나누면 결과 합치는 비용이 더 크다)
+    static final int DENSE_LIMIT = 1 << 16; // 키 범위가 이보다 좁으면 배열로 집계
+
+    private final SalesSnapshot snapshot;
+    private final Filter filter;
+    private final int from;
+    private final int to;
+
+    SalesScanTask(SalesSnapshot snapshot, Filter filter, int from, int to) {
+        this.snapshot = snapshot;
+        this.filter = filter;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected SalesAccumulator compute() {
+        if (to - from <= THRESHOLD) {
+            return scan();
+        }
+        int mid = (from + to) >>> 1;
+        SalesScanTask left = new SalesScanTask(snapshot, filter, from, mid);
+        left.fork();
+        SalesAccumulator right = new SalesScanTask(snapshot, filter, mid, to).compute();
+        SalesAccumulator result = left.join();
+        if (result.size() < right.size()) { // 작은 쪽을 큰 쪽에 합친다.
+            right.merge(result);
+            return right;
+        }
+        result.merge(right);
+        return result;
+    }
+
+    private SalesAccumulator scan() {
+        int[] epochDays = snapshot.epochDays;
+        long[] itemIds = snapshot.itemIds;
+        int[] prices = snapshot.prices;
+        int[] counts = snapshot.counts;
+        byte[] statuses = snapshot.statuses;
+
+        SalesAccumulator result = filter.newAccumulator();
+        for (int i = from; i < to; i++) {
+            int day = epochDays[i];
+            if (day < filter.fromDay || day > filter.toDay) {
+                continue;
+            }
+            byte status = statuses[i];
+            if (filter.status >= 0 && status != filter.status) {
+                continue;
+            }
+            long itemId = itemIds[i];
+            if (filter.hasItemId && itemId != filter.itemId) {
+                continue;
+            }
+            long key;
+            switch (filter.groupBy) {
+                case DAY:
+                    key = day;
+                    break;
+                case STATUS:
+                    key = status;
+                    break;
+                default:
+                    key = itemId;
+            }
+            result.add(key, (long) prices[i] * counts[i], counts[i], 1);
+        }
+        return result;
+    }
+
+    /**
+     * SalesQuery 를 스캔 루프에서 바로 비교할 수 있는 primitive 값으로 바꿔둔 것
+     */
+    static final class Filter {
+        final SalesGroupBy groupBy;
+        final int fromDay;
+        final int toDay;
+        final byte status; // -1 이면 전체
+        final boolean hasItemId;
+        final long itemId;
+        final long denseMinKey;
+        final int denseRange; // -1 이면 해시맵
+
+        private Filter(SalesGroupBy groupBy, int fromDay, int toDay, byte status, boolean hasItemId, long itemId,
+                       long denseMinKey, int denseRange) {
+            this.groupBy = groupBy;
+            this.fromDay = fromDay;
+            this.toDay = toDay;
+            this.status = status;
+            this.hasItemId = hasItemId;
+            this.itemId = itemId;
+            this.denseMinKey = denseMinKey;
+            this.denseRange = denseRange;
+        }
+
+        static Filter of(SalesQuery query, SalesSnapshot snapshot) {
+            SalesGroupBy groupBy = query.getGroupBy() == null ? SalesGroupBy.ITEM : query.getGroupBy();
+            int fromDay = query.getFrom() == null ? Integer.MIN_VALUE : (int) query.getFrom().toEpochDay();
+            int toDay = query.getTo() == null ? Integer.MAX_VALUE : (int) query.getTo().toEpochDay();
+
+            // 조건과 스냅샷에 실제로 있는 값의 범위를 겹쳐서 키 범위를 구한다.
+            long minKey;
+            long maxKey;
+            switch (groupBy) {
+                case DAY:
+                    minKey = Math.max(fromDay, snapshot.minEpochDay);
+                    maxKey = Math.min(toDay, snapshot.maxEpochDay);
+                    break;
+                case STATUS:
+                    minKey = 0;
+                    maxKey = OrderStatus.values().length - 1;
+                    break;
+                default:
+                    minKey = query.getItemId() != null ? query.getItemId() : snapshot.minItemId;
+                    maxKey = query.getItemId() != null ? query.getItemId() : snapshot.maxItemId;
+            }
+            int denseRange = maxKey < minKey ? 0 // 조건에 맞는 값이 없다.
+                    : maxKey - minKey < DENSE_LIMIT ? (int) (maxKey - minKey + 1)
+                    : -1;
+
+            return new Filter(groupBy, fromDay, toDay,
+                    query.getStatus() == null ? -1 : (byte) query.getStatus().ordinal(),
+                    query.getItemId() != null,
+                    query.getItemId() == null ? 0 : query.getItemId(),
+                    minKey, denseRange);
+        }
+
+        SalesAccumulator newAccumulator() {
+            return denseRange >= 0 ? new DenseAccumulator(denseMinKey, denseRange) : new LongAggregateMap();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package jpabook.jpashop.analytics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 특정 시점의 SalesColumns 읽기 전용 뷰 (배열 참조 + 길이)
+ * size 이후는 보지 않기 때문에 SalesColumns 가 계속 append 해도 이 스냅샷의 결과는 바뀌지 않는다. (취소 상태 변경만 반영될 수 있다)
+ */
+public final class SalesSnapshot {
+
+    static final SalesSnapshot EMPTY = new SalesColumns(16).snapshot();
+
+    final long[] orderIds;
+    final int[] epochDays;
+    final long[] itemIds;
+    final int[] prices;
+    final int[] counts;
+    final byte[] statuses;
+    final int size;
+    final int minEpochDay;
+    final int maxEpochDay;
+    final long minItemId;
+    final long maxItemId;
+
+    SalesSnapshot(long[] orderIds, int[] epochDays, long[] itemIds, int[] prices, int[] counts, byte[] statuses, int size,
+                  int minEpochDay, int maxEpochDay, long minItemId, long maxItemId) {
+        this.orderIds = orderIds;
+        this.epochDays = epochDays;
+        this.itemIds = itemIds;
+        this.prices = prices;
+        this.counts = counts;
+        this.statuses = statuses;
+        this.size = size;
+        this.minEpochDay = minEpochDay;
+        this.maxEpochDay = maxEpochDay;
+        this.minItemId = minItemId;
+        this.maxItemId = maxItemId;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long lastOrderId() {
+        return size == 0 ? 0 : orderIds[size - 1];
+    }
+
+    /**
+     * 조건에 맞는 주문상품을 groupBy 기준으로 집계한다.
+     * 구간을 반씩 나눠서 ForkJoinPool 에서 병렬로 스캔하고 (SalesScanTask) 구간별 결과를 합친다.
+     * 키 범위가 좁으면 (주문일, 상태, id가 몰려있는 상품) 해시맵 대신 배열에 바로 더한다.
+     * 주문일 순으로 정렬(DAY)하거나 매출 내림차순으로 정렬해서 limit 만큼 돌려준다.
+     */
+    public SalesReport aggregate(SalesQuery query, ForkJoinPool pool) {
+        long start = System.nanoTime();
+        SalesScanTask.Filter filter = SalesScanTask.Filter.of(query, this);
+        SalesAccumulator aggregated = pool.invoke(new SalesScanTask(this, filter, 0, size));
+
+        List<long[]> groups = new ArrayList<>(aggregated.size()); // [key, 매출, 수량, 주문상품 수]
+        aggregated.forEach((key, revenue, quantity, lines) -> groups.add(new long[]{key, revenue, quantity, lines}));
+        groups.sort(filter.groupBy == SalesGroupBy.DAY
+                ? Comparator.comparingLong(g -> g[0])
+                : Comparator.<long[]>comparingLong(g -> g[1]).reversed());
+
+        long matched = 0;
+        for (long[] group : groups) {
+            matched += group[3];
+        }
+        int limit = query.getLimit() > 0 ? Math.min(query.getLimit(), groups.size()) : groups.size();
+        List<SalesRow> rows = new ArrayList<>(limit);
+        for (long[] group : groups.subList(0, limit)) {
+            rows.add(new SalesRow(filter.groupBy.toKey(group[0]), group[1], group[2], group[3]));
+        }
+        long elapsedMicros = (System.nanoTime() - start) / 1_000;
+        return new SalesReport(filter.groupBy, size, matched, lastOrderId(), elapsedMicros, rows);
+    }
+}
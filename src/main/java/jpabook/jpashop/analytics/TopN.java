@@ -0,0 +1,114 @@
+package jpabook.jpashop.analytics;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * 판매량 상위 capacity 개 상품을 판매량 내림차순 배열로 들고 있는다. (카테고리 하나 분량)
+ * capacity 가 작아서 (보여줄 수 * 2) 힙 대신 정렬된 배열에 삽입 정렬로 자리만 옮긴다. -> 읽을 때 정렬이 필요 없다.
+ * 취소로 순위 안 상품의 판매량이 줄면 밖에 있던 상품이 더 클 수 있어서 보여줄 수보다 여유 있게 들고 있고
+ * 그래도 어긋나는 건 BestSellerBoard 의 주기적인 재계산(reconcile)이 바로잡는다.
+ */
+final class TopN {
+
+    private final long[] itemIds;
+    private final long[] counts;
+    private int size;
+
+    TopN(int capacity) {
+        itemIds = new long[capacity];
+        counts = new long[capacity];
+    }
+
+    /**
+     * 상품의 현재 판매량을 반영한다. (0 이하면 순위에서 뺀다)
+     * 판매량은 락을 잡은 뒤에 읽는다. -> 동시에 더한 스레드 중 마지막으로 들어온 쪽이 최신 합계를 쓴다.
+     */
+    synchronized void update(long itemId, LongSupplier currentCount) {
+        long count = currentCount.getAsLong();
+        int index = indexOf(itemId);
+        if (index < 0) {
+            if (count <= 0) {
+                return;
+            }
+            if (size < itemIds.length) {
+                index = size++;
+            } else if (count > counts[size - 1]) {
+                index = size - 1; // 꼴찌를 밀어낸다.
+            } else {
+                return;
+            }
+            itemIds[index] = itemId;
+        } else if (count <= 0) {
+            System.arraycopy(itemIds, index + 1, itemIds, index, size - index - 1);
+            System.arraycopy(counts, index + 1, counts, index, size - index - 1);
+            size--;
+            return;
+        }
+        counts[index] = count;
+
+        while (index > 0 && counts[index] > counts[index - 1]) {
+            swap(index, index - 1);
+            index--;
+        }
+        while (index < size - 1 && counts[index] < counts[index + 1]) {
+            swap(index, index + 1);
+            index++;
+        }
+    }
+
+    /**
+     * 들고 있는 상품 전부의 점수를 다시 구해서 정렬한다. (0 이하면 뺀다)
+     * 급상승 순위는 조각이 넘어가면 예전 점수가 window 에서 빠지는데 update 로는 주문이 들어온 상품만 바뀌기 때문에
+     * 새 조각이 열릴 때 부른다. (안 그러면 안 팔리는 상품의 예전 점수가 꼴찌 자리를 막고 있는다)
+     */
+    synchronized void rescore(LongUnaryOperator currentCount) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            long count = currentCount.applyAsLong(itemIds[i]);
+            if (count > 0) {
+                itemIds[kept] = itemIds[i];
+                counts[kept] = count;
+                kept++;
+            }
+        }
+        size = kept;
+        for (int i = 1; i < size; i++) {
+            for (int j = i; j > 0 && counts[j] > counts[j - 1]; j--) {
+                swap(j, j - 1);
+            }
+        }
+    }
+
+    /**
+     * 상위 limit 개의 [상품 id, 판매량]
+     */
+    synchronized long[][] top(int limit) {
+        int n = Math.min(limit, size);
+        return new long[][]{Arrays.copyOf(itemIds, n), Arrays.copyOf(counts, n)};
+    }
+
+    // 순위에 들어있는 상품 id (TrendingWindow 후보)
+    synchronized long[] itemIds() {
+        return Arrays.copyOf(itemIds, size);
+    }
+
+    private int indexOf(long itemId) {
+        for (int i = 0; i < size; i++) {
+            if (itemIds[i] == itemId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void swap(int a, int b) {
+        long itemId = itemIds[a];
+        itemIds[a] = itemIds[b];
+        itemIds[b] = itemId;
+        long count = counts[a];
+        counts[a] = counts[b];
+        counts[b] = count;
+    }
+}
@@ -0,0 +1,76 @@
+package jpabook.jpashop.analytics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * 최근 window 동안의 상품별 주문 수량 (급상승 상품)
+ * 시간 조각(slice)마다 CountMinSketch 하나를 두고 링으로 돌려쓴다.
+ * 새 조각으로 넘어가면 가장 오래된 스케치를 비우고 재사용한다. -> 메모리는 조각 수 * 스케치 크기로 고정
+ */
+final class TrendingWindow {
+
+    private final long sliceMillis;
+    private final CountMinSketch[] sketches;
+    private final AtomicLongArray sliceOf; // 스케치가 담고 있는 조각 번호
+    private final AtomicLong clearing = new AtomicLong(-1);
+    private final LongSupplier clock;
+
+    TrendingWindow(int slices, long sliceMillis, int depth, int width, LongSupplier clock) {
+        this.sliceMillis = sliceMillis;
+        this.sketches = new CountMinSketch[slices];
+        for (int i = 0; i < slices; i++) {
+            sketches[i] = new CountMinSketch(depth, width);
+        }
+        this.sliceOf = new AtomicLongArray(slices);
+        for (int i = 0; i < slices; i++) {
+            sliceOf.set(i, -1);
+        }
+        this.clock = clock;
+    }
+
+    /**
+     * 지금 조각에 더한다. 이 자리를 다른 스레드가 비우는 중이면 (clear 는 금방 끝난다) 기다렸다가 더한다.
+     * @return 이 호출이 새 조각을 열었으면 true (순위의 점수를 다시 매길 때)
+     */
+    boolean add(long itemId, long quantity) {
+        long slice = clock.getAsLong() / sliceMillis;
+        int index = (int) (slice % sketches.length);
+        boolean rotated = false;
+        while (sliceOf.get(index) < slice) {
+            if (clearing.compareAndSet(-1, index)) {
+                try {
+                    if (sliceOf.get(index) < slice) { // 이 자리의 예전 조각을 비운다.
+                        sketches[index].clear();
+                        sliceOf.set(index, slice);
+                        rotated = true;
+                    }
+                } finally {
+                    clearing.set(-1);
+                }
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+        if (sliceOf.get(index) == slice) { // 너무 늦게 들어와서 이미 다음 바퀴 조각이면 window 밖이라 버린다.
+            sketches[index].add(itemId, quantity);
+        }
+        return rotated;
+    }
+
+    /**
+     * 최근 window 안의 조각들만 더한다.
+     */
+    long estimate(long itemId) {
+        long current = clock.getAsLong() / sliceMillis;
+        long total = 0;
+        for (int i = 0; i < sketches.length; i++) {
+            long slice = sliceOf.get(i);
+            if (slice > current - sketches.length && slice <= current) {
+                total += sketches[i].estimate(itemId);
+            }
+        }
+        return total;
+    }
+}
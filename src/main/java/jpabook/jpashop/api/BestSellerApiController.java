@@ -0,0 +1,38 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.analytics.BestSeller;
+import jpabook.jpashop.analytics.BestSellerBoard;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * 베스트셀러 / 급상승 상품 (메모리 순위, DB 조회 X)
+ */
+@RestController
+@RequiredArgsConstructor
+public class BestSellerApiController {
+
+    private final BestSellerBoard bestSellerBoard;
+
+    @GetMapping("/api/v1/best-sellers")
+    public List<BestSeller> bestSellers(@RequestParam(value = "categoryId", required = false) Long categoryId,
+                                        @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return bestSellerBoard.bestSellers(categoryId, limit);
+    }
+
+    @GetMapping("/api/v1/best-sellers/trending")
+    public List<BestSeller> trending(@RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return bestSellerBoard.trending(limit);
+    }
+
+    // 원본 테이블 기준으로 바로 다시 계산 (보통은 주기적으로 돈다)
+    @PostMapping("/api/v1/best-sellers/reconcile")
+    public int reconcile() {
+        return bestSellerBoard.reconcile();
+    }
+}
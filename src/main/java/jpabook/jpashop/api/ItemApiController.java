@@ -0,0 +1,61 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.service.ItemService;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+
+@RestController
+@RequiredArgsConstructor
+public class ItemApiController {
+
+    private final ItemService itemService;
+
+    /**
+     * 상품 재고 조회 (샤딩된 상품은 샤드 합)
+     */
+    @GetMapping("/api/v1/items/{id}/stock")
+    public ItemStockDto stock(@PathVariable("id") Long id) {
+        Item item = itemService.findOne(id);
+        return new ItemStockDto(item.getId(), itemService.getStockQuantity(item), item.getStockShards());
+    }
+
+    /**
+     * 인기 상품 재고 샤딩 켜기
+     * 주문이 상품 row 하나에 줄을 서지 않도록 재고를 shards 개 row로 나눈다.
+     */
+    @PostMapping("/api/v1/items/{id}/stock-shards")
+    public ItemStockDto enableStockSharding(@PathVariable("id") Long id,
+                                            @RequestBody @Valid StockShardingRequest request) {
+        itemService.enableStockSharding(id, request.getShards());
+        return stock(id);
+    }
+
+    /**
+     * 재고 샤딩 끄기 (샤드 합을 상품 재고로 되돌린다)
+     */
+    @DeleteMapping("/api/v1/items/{id}/stock-shards")
+    public ItemStockDto disableStockSharding(@PathVariable("id") Long id) {
+        itemService.disableStockSharding(id);
+        return stock(id);
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class ItemStockDto {
+        private Long itemId;
+        private int stockQuantity;
+        private int stockShards;
+    }
+
+    @Data
+    static class StockShardingRequest {
+        @Min(1)
+        private int shards;
+    }
+}
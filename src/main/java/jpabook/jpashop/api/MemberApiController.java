@@ -1,7 +1,11 @@
 package jpabook.jpashop.api;
 
 import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.repository.member.MemberStatsDto;
 import jpabook.jpashop.service.MemberService;
+import jpabook.jpashop.service.query.MemberDto;
+import jpabook.jpashop.service.query.MemberOrdersDto;
+import jpabook.jpashop.service.query.MemberQueryService;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
@@ -10,13 +14,15 @@ import org.springframework.web.bind.annotation.*;
 import javax.validation.Valid;
 import javax.validation.constraints.NotEmpty;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController // @Controller + @ResponseBody
 @RequiredArgsConstructor
 public class MemberApiController {
 
+    private static final int MAX_LIMIT = 100;
+
     private final MemberService memberService;
+    private final MemberQueryService memberQueryService;
 
     /**
      * 회원 조회 API V1
@@ -28,7 +34,7 @@ public class MemberApiController {
      */
     @GetMapping("/api/v1/members")
     public List<Member> membersV1() {
-        return memberService.findMembers();
+        return memberQueryService.findMemberEntities();
     }
 
     /**
@@ -38,13 +44,36 @@ public class MemberApiController {
      */
     @GetMapping("/api/v2/members")
     public Result memberV2() {
-        List<Member> findMembers = memberService.findMembers();
-        List<MemberDto> collect = findMembers.stream()
-                .map(m -> new MemberDto(m.getName()))
-                .collect(Collectors.toList());
+        List<MemberDto> collect = memberQueryService.findMembers(); // DTO 변환까지 읽기 전용 트랜잭션 안에서
         return new Result(collect.size(), collect);
     }
 
+    /**
+     * 회원 주문 통계 + 주문 목록 페이지
+     * member.getOrders() 로 컬렉션을 통째로 로딩하면 주문이 수천 건인 회원은 조회할 때마다 전부 읽는다.
+     * 통계는 주문 / 취소할 때 미리 더해둔 member_order_stats 에서, 주문 목록은 주문 요약을 회원별로 페이징해서 읽는다.
+     * -> 주문 수와 상관없이 SQL 2번
+     */
+    @GetMapping("/api/v2/members/{id}/orders")
+    public MemberOrdersDto memberOrdersV2(
+            @PathVariable("id") Long id,
+            @RequestParam(value = "offset", defaultValue = "0") int offset,
+            @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        return memberQueryService.findOrders(id, Math.max(offset, 0), Math.max(1, Math.min(limit, MAX_LIMIT)));
+    }
+
+    /**
+     * 회원 한 페이지의 주문 통계 (회원 id 순)
+     * 회원마다 통계를 따로 조회하지 않고 member left join member_order_stats 쿼리 한 번
+     */
+    @GetMapping("/api/v2/members/stats")
+    public Result<List<MemberStatsDto>> memberStatsV2(
+            @RequestParam(value = "offset", defaultValue = "0") int offset,
+            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        List<MemberStatsDto> stats = memberQueryService.findMemberStats(Math.max(offset, 0), Math.max(1, Math.min(limit, MAX_LIMIT)));
+        return new Result<>(stats.size(), stats);
+    }
+
     /**
      * 회원 등록 API V1
      * 엔티티에서 @NotEmpty 같은 검증 어노테이션을 넣으면 안됨
@@ -105,12 +134,6 @@ public class MemberApiController {
         private T data;
     }
 
-    @Data
-    @AllArgsConstructor
-    static class MemberDto {
-        private String name;
-    }
-
     @Data
     @AllArgsConstructor
     static class UpdateMemberResponse {
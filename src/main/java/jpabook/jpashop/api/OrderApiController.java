@@ -1,25 +1,31 @@
 package jpabook.jpashop.api;
 
-import jpabook.jpashop.domain.Address;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jpabook.jpashop.domain.Order;
-import jpabook.jpashop.domain.OrderItem;
 import jpabook.jpashop.domain.OrderStatus;
-import jpabook.jpashop.repository.OrderRepository;
 import jpabook.jpashop.repository.OrderSearch;
-import jpabook.jpashop.repository.order.query.OrderFlatDto;
-import jpabook.jpashop.repository.order.query.OrderItemQueryDto;
 import jpabook.jpashop.repository.order.query.OrderQueryDto;
-import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import jpabook.jpashop.repository.order.summary.OrderSummaryCheckResult;
+import jpabook.jpashop.service.OrderSummaryService;
+import jpabook.jpashop.service.query.OrderDto;
+import jpabook.jpashop.service.query.OrderQueryService;
+import lombok.AllArgsConstructor;
 import lombok.Data;
-import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.time.LocalDateTime;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * 일대다(OneToMany) 관계 조회 및 최적화하는 방법
@@ -28,8 +34,14 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class OrderApiController {
 
-    private final OrderRepository orderRepository;
-    private final OrderQueryRepository orderQueryRepository;
+    private final OrderQueryService orderQueryService;
+    private final OrderSummaryService orderSummaryService;
+    private final ObjectMapper objectMapper;
+
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final int STREAM_FETCH_SIZE = 1000;
+    private static final int EXPORT_CHUNK_SIZE = 500; // jpashop.in-list.chunk-size 와 맞춘다.
+    private static final int MAX_LIMIT = 200; // 한 번에 조회할 수 있는 주문 수 (spring.data.web.pageable.max-page-size 와 맞춘다.)
 
     /**
      * 주문조회 v1: 엔티티 직접 노출
@@ -40,19 +52,10 @@ public class OrderApiController {
      */
     @GetMapping("/api/v1/orders")
     public List<Order> ordersV1() {
-        List<Order> all = orderRepository.findAllByString(new OrderSearch());
-        for (Order order : all) {
-            // 프록시 강제 초기화, Hibernate5Module 때문에 없는 객체는 나타내지 않기 때문
-            // 프록시는 영속성 컨텍스트에서 데이터가 있으면 영속성 컨텍스트에서 데이터를 초기화하고, 없으면 DB 조회해서 데이터 초기화하는데..
-            // OSIV 를 FALSE 하면 트랜잭션이 끝나는 순간 데이터베이스 커넥션도 끊기기 때문에 지연로딩이 불가능하다.
-            // 즉 프록시 초기화를 할 수 없다. .LazyInitializationException 발생
-            order.getMember().getName();
-            order.getDelivery().getAddress();
-            List<OrderItem> orderItems = order.getOrderItems();
-            orderItems.stream().forEach(o -> o.getItem().getName());
-        }
-
-        return all;
+        // 프록시는 영속성 컨텍스트에서 데이터가 있으면 영속성 컨텍스트에서 데이터를 초기화하고, 없으면 DB 조회해서 데이터 초기화하는데..
+        // OSIV 를 FALSE 하면 트랜잭션이 끝나는 순간 데이터베이스 커넥션도 끊기기 때문에 컨트롤러에서는 프록시 초기화를 할 수 없다.
+        // -> 프록시 강제 초기화는 OrderQueryService 트랜잭션 안에서 한다.
+        return orderQueryService.findOrderEntities();
     }
 
     /**
@@ -66,11 +69,7 @@ public class OrderApiController {
      */
     @GetMapping("/api/v2/orders")
     public List<OrderDto> ordersV2() {
-        List<Order> orders = orderRepository.findAllByString(new OrderSearch());
-        List<OrderDto> result = orders.stream()
-                .map(o -> new OrderDto(o))
-                .collect(Collectors.toList());
-        return result;
+        return orderQueryService.findOrdersLazy();
     }
 
     /**
@@ -78,13 +77,16 @@ public class OrderApiController {
      * v2 버전과 코드는 보면 똑같다.
      * 근데 패치조인으로 인해서 성능 최적화가 됐다!!
      * 참고로 컬렉션 패치 조인은 1개만 사용해야 한다.
+     * 컬렉션 페치 조인은 페이징이 안되기 때문에 XToOne 만 페치 조인해서 페이징하고, 그 주문들의 컬렉션만 한 번에 페치 조인한다. (fetch plan full)
      */
     @GetMapping("/api/v3/orders")
-    public List<OrderDto> ordersV3() {
-        List<Order> orders = orderRepository.findAllWithItem();
-        return orders.stream()
-                .map(o -> new OrderDto(o))
-                .collect(Collectors.toList());
+    public List<OrderDto> ordersV3(
+            @RequestParam(value = "offset", defaultValue = "0") int offset,
+            @RequestParam(value = "limit", defaultValue = "100") int limit,
+            OrderSearch orderSearch
+    ) {
+        checkPage(offset, limit);
+        return orderQueryService.findOrdersWithItem(orderSearch, offset, limit);
     }
 
     /**
@@ -92,16 +94,42 @@ public class OrderApiController {
      *  1. XToOne 관계는 모두 페치조인 한다.-> 쿼리 수 최적화
      *  2. 컬렉션은 지연 로딩으로 조회한다.
      *  3. 지연 로딩 성능 최적화를 위해 hibernate.default_batch_fetch_size 또는 @BatchSize를 적용한다.
+     *  -> fetch plan withItems: 컬렉션을 plan 의 batch size 만큼씩 IN 절로 미리 페치 조인한다. (상품까지)
      */
     @GetMapping("/api/v3.1/orders")
     public List<OrderDto> ordersV3_page(
             @RequestParam(value = "offset", defaultValue = "0") int offset,
             @RequestParam(value = "limit", defaultValue = "100") int limit
     ) {
-        List<Order> orders = orderRepository.findAllWithMemberDelivery(offset, limit);
-        return orders.stream()
-                .map(o -> new OrderDto(o))
-                .collect(Collectors.toList());
+        checkPage(offset, limit);
+        return orderQueryService.findOrdersPage(offset, limit);
+    }
+
+    /**
+     * 주문 조회 v3.1 키셋 페이징 : offset 대신 커서로 페이징
+     * offset은 뒤 페이지로 갈수록 DB가 앞의 row를 읽고 버려야 해서 느려진다.
+     * 마지막으로 받은 order_id 다음부터 조회하기 때문에 1페이지든 5만 페이지든 응답 속도가 같다.
+     * 컬렉션은 v3.1과 동일하게 withItems fetch plan 으로 조회한다.
+     * 다음 페이지가 없으면 nextCursor는 null
+     */
+    @GetMapping("/api/v3.1/orders/keyset")
+    public KeysetResult<List<OrderDto>> ordersV3_keyset(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "100") int limit,
+            OrderSearch orderSearch
+    ) {
+        checkLimit(limit);
+        Long lastOrderId = OrderCursor.decode(cursor);
+
+        // 한 건 더 조회해서 다음 페이지가 있는지 확인한다. (count 쿼리 없이)
+        List<OrderDto> orders = orderQueryService.findOrdersAfter(lastOrderId, orderSearch, limit + 1);
+        boolean hasNext = orders.size() > limit;
+        if (hasNext) {
+            orders = orders.subList(0, limit);
+        }
+
+        String nextCursor = hasNext ? OrderCursor.encode(orders.get(orders.size() - 1).getOrderId()) : null;
+        return new KeysetResult<>(orders, nextCursor);
     }
 
     /**
@@ -112,7 +140,7 @@ public class OrderApiController {
      */
     @GetMapping("/api/v4/orders")
     public List<OrderQueryDto> ordersV4() {
-        return orderQueryRepository.findOrderQueryDtos();
+        return orderQueryService.findOrderQueryDtos();
     }
 
     /**
@@ -122,7 +150,7 @@ public class OrderApiController {
      */
     @GetMapping("/api/v5/orders")
     public List<OrderQueryDto> ordersV5() {
-        return orderQueryRepository.findAllByDto_optimization();
+        return orderQueryService.findOrderQueryDtosOptimized();
     }
 
     /**
@@ -134,51 +162,91 @@ public class OrderApiController {
      */
     @GetMapping("/api/v6/orders")
     public List<OrderQueryDto> ordersV6() {
-        List<OrderFlatDto> flats = orderQueryRepository.findAllByDto_flat();
+        return orderQueryService.findOrderQueryDtosFlat();
+    }
 
-        return flats.stream()
-                .collect(Collectors.groupingBy(o -> new OrderQueryDto(o.getOrderId(), o.getName(), o.getOrderDate(), o.getOrderStatus(), o.getAddress()),
-                        Collectors.mapping(o -> new OrderItemQueryDto(o.getOrderId(), o.getItemName(), o.getOrderPrice(), o.getCount()), Collectors.toList())))
-                .entrySet().stream()
-                .map(e -> new OrderQueryDto(e.getKey().getOrderId(), e.getKey().getName(), e.getKey().getOrderDate(), e.getKey().getOrderStatus(), e.getKey().getAddress(), e.getValue()))
-                .collect(Collectors.toList());
+    /**
+     * 주문 조회 v6 스트리밍: v6 플랫 조회를 NDJSON(한 줄에 주문 1건)으로 내려준다.
+     * 전체 row를 List로 모은 다음 groupingBy 하는 v6와 달리 커서로 읽으면서 주문이 완성될 때마다 바로 쓴다.
+     * 메모리 사용량은 주문 1건 분량이고, 첫 바이트가 나가는 시간도 전체 row 수와 상관없다.
+     */
+    @GetMapping("/api/v6/orders/stream")
+    public ResponseEntity<StreamingResponseBody> ordersV6_stream() {
+        StreamingResponseBody body = out -> orderQueryService.streamOrderQueryDtos(STREAM_FETCH_SIZE, o -> writeLine(out, o));
+        return ResponseEntity.ok()
+                .contentType(APPLICATION_NDJSON)
+                .body(body);
     }
 
-    @Data
-    static class OrderDto {
-
-        private Long orderId;
-        private String name;
-        private LocalDateTime orderDate;
-        private OrderStatus orderStatus;
-        private Address address;
-        //        private List<OrderItem> orderItems; // 엔티티를 이렇게 반환해서는 안된다. -> dto로 바꿔야한다.
-        private List<OrderItemDto> orderItems;
-
-        public OrderDto(Order order) {
-            orderId = order.getId();
-            name = order.getMember().getName();
-            orderDate = order.getOrderDate();
-            orderStatus = order.getStatus();
-            address = order.getDelivery().getAddress();
-//            order.getOrderItems().stream().forEach(o -> o.getItem().getName());
-//            orderItems = order.getOrderItems();
-            orderItems = order.getOrderItems().stream()
-                    .map(orderItem -> new OrderItemDto(orderItem))
-                    .collect(Collectors.toList());
+    /**
+     * 주문 내보내기: 전체 주문을 NDJSON(한 줄에 주문 1건)으로 내려준다. (주문상품 포함, v3와 같은 모양)
+     * StatelessSession 커서로 읽고 주문상품은 청크마다 IN 절로 붙인다. -> 주문 수와 상관없이 영속성 컨텍스트, 힙이 늘지 않는다.
+     */
+    @GetMapping("/api/v1/orders/export")
+    public ResponseEntity<StreamingResponseBody> exportOrders(@RequestParam(value = "status", required = false) OrderStatus status) {
+        StreamingResponseBody body = out -> orderQueryService.exportOrders(status, EXPORT_CHUNK_SIZE, o -> writeLine(out, o));
+        return ResponseEntity.ok()
+                .contentType(APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    /**
+     * 주문 조회 v7: 읽기 모델(order_summary, order_summary_line) 조회
+     * 회원 이름, 배송 주소, 상품 이름을 주문할 때 미리 펼쳐서 저장해뒀기 때문에 조인 없이 테이블 하나씩만 읽는다.
+     * 주문 요약 1번 + 주문상품 IN 절 (v5와 같은 모양)
+     */
+    @GetMapping("/api/v7/orders")
+    public List<OrderQueryDto> ordersV7() {
+        return orderQueryService.findOrderSummaries();
+    }
+
+    // 읽기 모델을 원본 테이블에서 다시 만든다.
+    @PostMapping("/api/v7/orders/summary/rebuild")
+    public RebuildResult rebuildOrderSummary() {
+        return new RebuildResult(orderSummaryService.rebuild());
+    }
+
+    // 읽기 모델과 원본 테이블 비교
+    @GetMapping("/api/v7/orders/summary/check")
+    public OrderSummaryCheckResult checkOrderSummary() {
+        return orderSummaryService.check();
+    }
+
+    private void writeLine(OutputStream out, Object line) {
+        try {
+            // writeValue(out, ..)는 스트림을 닫아버리기 때문에 bytes로 변환해서 직접 쓴다.
+            out.write(objectMapper.writeValueAsBytes(line));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // 클라이언트가 연결을 끊으면 커서도 같이 닫힌다.
         }
     }
 
-    @Data
-    static class OrderItemDto{
-
-        private String itemName; // 상품명
-        private int orderPrice; // 주문 가격
-        private int count; // 주문 수량
-        public OrderItemDto(OrderItem orderItem) {
-            itemName = orderItem.getItem().getName();
-            orderPrice = orderItem.getOrderPrice();
-            count = orderItem.getCount();
+    // offset 페이징 검증 -> 음수 offset 이나 너무 큰 limit 이 리포지토리까지 가지 않게 400
+    private static void checkPage(int offset, int limit) {
+        if (offset < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "offset은 0 이상이어야 합니다.");
         }
+        checkLimit(limit);
+    }
+
+    // 한 페이지 크기 검증 -> 범위를 벗어나면 400 (상한이 없으면 limit + 1 이 넘치거나 전체 조회가 된다.)
+    private static void checkLimit(int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit은 1 이상 " + MAX_LIMIT + " 이하여야 합니다.");
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class RebuildResult {
+        private int orders;
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class KeysetResult<T> {
+        private T data;
+        private String nextCursor;
     }
 }
@@ -0,0 +1,142 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.exception.NotEnoughStockException;
+import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.service.OrderCancelResult;
+import jpabook.jpashop.service.OrderCommand;
+import jpabook.jpashop.service.OrderLine;
+import jpabook.jpashop.service.OrderResult;
+import jpabook.jpashop.service.OrderService;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 주문 생성 API (조회는 OrderApiController)
+ */
+@RestController
+@RequiredArgsConstructor
+public class OrderCommandApiController {
+
+    private final OrderService orderService;
+
+    /**
+     * 대량 주문 API
+     * 주문 여러 건을 한 트랜잭션에서 저장하고 주문별 결과를 요청 순서대로 돌려준다.
+     * 재고 부족 같은 주문별 실패는 해당 주문만 실패하고 전체를 롤백하지 않는다.
+     */
+    @PostMapping("/api/v1/orders/bulk")
+    public BulkOrderResponse bulkOrders(@RequestBody @Valid BulkOrderRequest request) {
+        List<OrderCommand> commands = request.getOrders().stream()
+                .map(o -> new OrderCommand(o.getMemberId(), o.getLines().stream()
+                        .map(l -> new OrderLine(l.getItemId(), l.getCount()))
+                        .collect(Collectors.toList())))
+                .collect(Collectors.toList());
+
+        List<OrderResult> results = orderService.orderBulk(commands);
+        int succeeded = (int) results.stream().filter(OrderResult::isSuccess).count();
+        return new BulkOrderResponse(results.size(), succeeded, results.size() - succeeded, results);
+    }
+
+    /**
+     * 장바구니 주문 API
+     * 장바구니의 상품 여러 개를 주문 하나, 배송 하나로 주문한다. (재고가 하나라도 모자라면 주문 전체 실패)
+     */
+    @PostMapping("/api/v1/orders/checkout")
+    public CheckoutResponse checkout(@RequestBody @Valid OrderRequest request) {
+        List<OrderLine> lines = request.getLines().stream()
+                .map(l -> new OrderLine(l.getItemId(), l.getCount()))
+                .collect(Collectors.toList());
+        return new CheckoutResponse(orderService.checkout(request.getMemberId(), lines));
+    }
+
+    /**
+     * 대량 주문 취소 API
+     * orderIds 가 있으면 그 주문들을, 없으면 filter 조건(회원 이름, 상품 이름, 주문일)에 맞는 주문 상태의 주문을 모두 취소한다.
+     * filter 에 조건이 없거나 맞는 주문이 너무 많으면 400
+     * 배송완료된 주문은 취소하지 않고 completedOrderIds 로 돌려준다.
+     */
+    @PostMapping("/api/v1/orders/cancel")
+    public OrderCancelResult cancelOrders(@RequestBody @Valid CancelOrdersRequest request) {
+        if (request.getOrderIds() != null) {
+            return orderService.cancelOrders(request.getOrderIds());
+        }
+        if (request.getFilter() == null) {
+            throw new IllegalArgumentException("orderIds 또는 filter 가 필요합니다.");
+        }
+        return orderService.cancelOrders(request.getFilter());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ErrorResponse badRequest(IllegalArgumentException e) {
+        return new ErrorResponse(e.getMessage());
+    }
+
+    @ExceptionHandler(NotEnoughStockException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ErrorResponse notEnoughStock(NotEnoughStockException e) {
+        return new ErrorResponse(e.getMessage());
+    }
+
+    @Data
+    static class BulkOrderRequest {
+        @NotEmpty
+        @Size(max = 10000)
+        private List<@Valid OrderRequest> orders;
+    }
+
+    @Data
+    static class OrderRequest {
+        @NotNull
+        private Long memberId;
+        @NotEmpty
+        private List<@Valid OrderLineRequest> lines;
+    }
+
+    @Data
+    static class OrderLineRequest {
+        @NotNull
+        private Long itemId;
+        @Min(1)
+        private int count;
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class BulkOrderResponse {
+        private int total;
+        private int succeeded;
+        private int failed;
+        private List<OrderResult> results;
+    }
+
+    @Data
+    static class CancelOrdersRequest {
+        @Size(max = OrderService.MAX_CANCEL_ORDERS)
+        private List<Long> orderIds;
+        private OrderSearch filter;
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class CheckoutResponse {
+        private Long orderId;
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class ErrorResponse {
+        private String message;
+    }
+}
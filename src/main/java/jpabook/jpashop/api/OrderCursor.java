@@ -0,0 +1,43 @@
+package jpabook.jpashop.api;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 키셋 페이징용 커서
+ * 클라이언트는 커서의 내용을 알 필요가 없도록 마지막 order_id를 Base64로 감싸서 내려준다. (opaque cursor)
+ * 나중에 정렬 기준이 바뀌어도 API 스펙은 그대로 유지할 수 있다.
+ */
+final class OrderCursor {
+
+    private static final String PREFIX = "o:";
+
+    private OrderCursor() {
+    }
+
+    static String encode(Long lastOrderId) {
+        if (lastOrderId == null) {
+            return null;
+        }
+        String raw = PREFIX + lastOrderId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Long decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!raw.startsWith(PREFIX)) {
+                throw new IllegalArgumentException(raw);
+            }
+            return Long.valueOf(raw.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) { // NumberFormatException 포함
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "잘못된 커서입니다.", e);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.analytics.SalesAnalytics;
+import jpabook.jpashop.analytics.SalesQuery;
+import jpabook.jpashop.analytics.SalesReport;
+import jpabook.jpashop.analytics.SalesSnapshot;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * 매출 집계 (메모리 스냅샷, DB 조회 X)
+ * /api/v1/analytics/sales?groupBy=DAY&from=2022-01-01&to=2022-01-31&status=ORDER
+ */
+@RestController
+@RequiredArgsConstructor
+public class SalesAnalyticsApiController {
+
+    private final SalesAnalytics salesAnalytics;
+
+    @GetMapping("/api/v1/analytics/sales")
+    public SalesReport sales(@ModelAttribute SalesQuery query) {
+        return salesAnalytics.query(query);
+    }
+
+    /**
+     * 스냅샷 바로 갱신 (full=true 면 처음부터 다시 읽는다)
+     */
+    @PostMapping("/api/v1/analytics/sales/refresh")
+    public RefreshResult refresh(@RequestParam(value = "full", defaultValue = "false") boolean full) {
+        int appended = full ? salesAnalytics.rebuild() : salesAnalytics.refresh();
+        SalesSnapshot snapshot = salesAnalytics.snapshot();
+        return new RefreshResult(appended, snapshot.size(), snapshot.lastOrderId());
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class RefreshResult {
+        private int appendedLines;
+        private int snapshotLines;
+        private long lastOrderId;
+    }
+}
@@ -1,16 +1,27 @@
 package jpabook.jpashop.controller;
 
+import jpabook.jpashop.analytics.BestSellerBoard;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.RequestMapping;
 
 @Slf4j
 @Controller
+@RequiredArgsConstructor
 public class HomeController {
 
+    private static final int BEST_SELLERS = 5;
+
+    private final BestSellerBoard bestSellerBoard;
+
     @RequestMapping("/")
-    public String home() {
+    public String home(Model model) {
         log.info("home controller");
+        // 메모리 순위만 읽는다. (order_item 집계 X)
+        model.addAttribute("bestSellers", bestSellerBoard.bestSellers(null, BEST_SELLERS));
+        model.addAttribute("trending", bestSellerBoard.trending(BEST_SELLERS));
         return "home";
     }
 }
@@ -50,6 +50,7 @@ public class ItemController {
     public String list(Model model) {
         List<Item> items = itemService.findItems();
         model.addAttribute("items", items);
+        model.addAttribute("stockQuantities", itemService.getStockQuantities(items)); // 샤딩된 상품은 샤드 합
         return "items/itemList";
     }
 
@@ -62,7 +63,7 @@ public class ItemController {
         bookForm.setName(item.getName());
         bookForm.setPrice(item.getPrice());
         bookForm.setAuthor(item.getAuthor());
-        bookForm.setStockQuantity(item.getStockQuantity());
+        bookForm.setStockQuantity(itemService.getStockQuantity(item));
         bookForm.setIsbn(item.getIsbn());
 
         model.addAttribute("form", bookForm);
@@ -1,13 +1,17 @@
 package jpabook.jpashop.controller;
 
 import jpabook.jpashop.domain.Member;
-import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.repository.OrderListDto;
 import jpabook.jpashop.repository.OrderSearch;
 import jpabook.jpashop.service.ItemService;
 import jpabook.jpashop.service.MemberService;
 import jpabook.jpashop.service.OrderService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -42,14 +46,29 @@ public class OrderController {
         return "redirect:/orders";
     }
 
+    /**
+     * 주문 목록: DTO 한 페이지 조회 (페이지 크기와 상관없이 쿼리 1번 + count + 합계)
+     * 검색 결과가 첫 페이지에 다 들어가면 count, 합계 쿼리는 생략된다.
+     * /orders?page=0&size=20&sort=orderDate,desc (정렬 속성은 OrderRepository.SORTABLE)
+     */
     @GetMapping("/orders")
-    public String orderList(@ModelAttribute("orderSearch") OrderSearch orderSearch, Model model) {
-        List<Order> orders = orderService.findOrders(orderSearch);
+    public String orderList(@ModelAttribute("orderSearch") OrderSearch orderSearch,
+                            @PageableDefault(size = 20) Pageable pageable,
+                            Model model) {
+        Page<OrderListDto> orders = orderService.findOrders(orderSearch, pageable);
         model.addAttribute("orders", orders);
+        model.addAttribute("totals", orderService.findOrderTotals(orderSearch, orders)); // 목록은 한 페이지지만 합계는 전체
 
         return "order/orderList";
     }
 
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ResponseBody
+    public String badRequest(IllegalArgumentException e) {
+        return e.getMessage(); // 허용하지 않는 정렬 속성
+    }
+
     @PostMapping("/orders/{orderId}/cancel")
     public String cancelOrder(@PathVariable("orderId") Long orderId) {
         orderService.cancelOrder(orderId);
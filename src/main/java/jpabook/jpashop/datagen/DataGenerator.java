@@ -0,0 +1,255 @@
+package jpabook.jpashop.datagen;
+
+import jpabook.jpashop.domain.DeliveryStatus;
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 부하 테스트, 벤치마크용 대량 데이터 생성기
+ *
+ * em.persist()로 한 건씩 넣으면 영속성 컨텍스트, 더티 체킹, 시퀀스 조회 비용 때문에 수백만 건은 몇 시간이 걸린다.
+ * 그래서 JPA를 거치지 않고 JDBC batch insert로 바로 넣는다.
+ * - id는 시퀀스에서 필요한 만큼 한 번에 예약해두고 직접 부여한다. (이후 JPA가 쓰는 id와 겹치지 않음)
+ * - 주문은 고정 크기 파티션으로 나눠서 여러 스레드가 동시에 넣는다.
+ * - 파티션마다 seed에서 파생된 난수를 쓰기 때문에 스레드 수, 실행 순서와 상관없이 결과가 같다.
+ */
+@Slf4j
+@Component
+@EnableConfigurationProperties(DataGeneratorProperties.class)
+@DependsOn("entityManagerFactory") // 스키마가 먼저 만들어져 있어야 한다.
+public class DataGenerator {
+
+    private static final int ORDER_PARTITION_SIZE = 10_000;
+    private static final LocalDateTime BASE_DATE = LocalDateTime.of(2022, 1, 1, 0, 0);
+    private static final int DATE_RANGE_MINUTES = 365 * 24 * 60;
+    private static final String[] CITIES = {"서울", "부산", "광주", "대구", "대전", "인천", "울산", "수원"};
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public DataGenerator(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    public void generate(DataGeneratorProperties props) {
+        if (props.getOrders() > 0 && (props.getMembers() < 1 || props.getItems() < 1)) {
+            throw new IllegalArgumentException("주문을 만들려면 회원과 상품이 1개 이상 있어야 합니다.");
+        }
+        long start = System.currentTimeMillis();
+
+        long memberBase = reserveIds("member", props.getMembers());
+        long itemBase = reserveIds("item", props.getItems());
+        int categories = categoryCount(props.getCategoryDepth(), props.getCategoryFanout());
+        long categoryBase = reserveIds("category", categories);
+        long deliveryBase = reserveIds("delivery", props.getOrders());
+        long orderBase = reserveIds("orders", props.getOrders());
+        long orderItemBase = reserveIds("order_item", (long) props.getOrders() * props.getItemsPerOrder());
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(props.getThreads(), 1));
+        try {
+            // 1단계: 주문이 참조하는 회원, 상품, 카테고리
+            List<Future<?>> futures = new ArrayList<>();
+            futures.add(executor.submit(() -> insertMembers(props, memberBase)));
+            futures.add(executor.submit(() -> insertItems(props, itemBase)));
+            await(futures);
+            insertCategories(props, categoryBase, itemBase);
+
+            // 2단계: 주문 파티션 병렬 처리
+            futures.clear();
+            for (int from = 0; from < props.getOrders(); from += ORDER_PARTITION_SIZE) {
+                int partitionStart = from;
+                int partitionEnd = Math.min(from + ORDER_PARTITION_SIZE, props.getOrders());
+                futures.add(executor.submit(() -> insertOrders(props, partitionStart, partitionEnd,
+                        memberBase, itemBase, deliveryBase, orderBase, orderItemBase)));
+            }
+            await(futures);
+        } finally {
+            executor.shutdown();
+        }
+
+        log.info("데이터 생성 완료: 회원 {}, 상품 {}, 카테고리 {}, 주문 {}, 주문상품 {} ({} ms)",
+                props.getMembers(), props.getItems(), categories, props.getOrders(),
+                (long) props.getOrders() * props.getItemsPerOrder(), System.currentTimeMillis() - start);
+    }
+
+    private void insertMembers(DataGeneratorProperties props, long memberBase) {
+        SplittableRandom random = new SplittableRandom(props.getSeed());
+        List<Object[]> rows = new ArrayList<>(props.getBatchSize());
+        for (int i = 0; i < props.getMembers(); i++) {
+            rows.add(new Object[]{memberBase + i, "user" + (i + 1),
+                    CITIES[random.nextInt(CITIES.length)], String.valueOf(random.nextInt(1, 1000)), zipcode(random)});
+            flushIfFull(rows, props, "insert into member (member_id, name, city, street, zipcode) values (?, ?, ?, ?, ?)");
+        }
+        flush(rows, "insert into member (member_id, name, city, street, zipcode) values (?, ?, ?, ?, ?)");
+    }
+
+    private void insertItems(DataGeneratorProperties props, long itemBase) {
+        String sql = "insert into item (dtype, item_id, name, price, stock_quantity, stock_shards, version, author, isbn, artist, etc, director, actor)" +
+                " values (?, ?, ?, ?, ?, 0, 0, ?, ?, ?, ?, ?, ?)";
+        SplittableRandom random = new SplittableRandom(props.getSeed() + 1);
+        List<Object[]> rows = new ArrayList<>(props.getBatchSize());
+        for (int i = 0; i < props.getItems(); i++) {
+            long id = itemBase + i;
+            int price = random.nextInt(1, 51) * 1000;
+            int stock = random.nextInt(10_000, 100_000);
+            if (i < props.getBooks()) {
+                rows.add(new Object[]{"B", id, "BOOK" + (i + 1), price, stock, "author" + random.nextInt(1, 100), "isbn-" + id, null, null, null, null});
+            } else if (i < props.getBooks() + props.getAlbums()) {
+                rows.add(new Object[]{"A", id, "ALBUM" + (i + 1), price, stock, null, null, "artist" + random.nextInt(1, 100), null, null, null});
+            } else {
+                rows.add(new Object[]{"M", id, "MOVIE" + (i + 1), price, stock, null, null, null, null, "director" + random.nextInt(1, 100), "actor" + random.nextInt(1, 100)});
+            }
+            flushIfFull(rows, props, sql);
+        }
+        flush(rows, sql);
+    }
+
+    /**
+     * fanout 갈래로 depth 단계까지 카테고리 트리를 만들고, 상품은 리프 카테고리에 골고루 나눠 담는다.
+     */
+    private void insertCategories(DataGeneratorProperties props, long categoryBase, long itemBase) {
+        List<Object[]> categories = new ArrayList<>();
+        List<Long> parents = new ArrayList<>();
+        parents.add(null);
+        long next = categoryBase;
+        for (int depth = 1; depth <= props.getCategoryDepth(); depth++) {
+            List<Long> current = new ArrayList<>();
+            for (Long parent : parents) {
+                for (int f = 0; f < props.getCategoryFanout(); f++) {
+                    long id = next++;
+                    categories.add(new Object[]{id, "CATEGORY" + depth + "-" + (id - categoryBase + 1), parent});
+                    current.add(id);
+                }
+            }
+            parents = current;
+        }
+        flush(categories, "insert into category (category_id, name, parent_id) values (?, ?, ?)");
+
+        if (parents.isEmpty() || parents.get(0) == null) {
+            return; // depth 0
+        }
+        List<Object[]> mappings = new ArrayList<>();
+        for (int i = 0; i < props.getItems(); i++) {
+            mappings.add(new Object[]{parents.get(i % parents.size()), itemBase + i});
+        }
+        flush(mappings, "insert into category_item (category_id, item_id) values (?, ?)");
+    }
+
+    private void insertOrders(DataGeneratorProperties props, int from, int to,
+                              long memberBase, long itemBase, long deliveryBase, long orderBase, long orderItemBase) {
+        String deliverySql = "insert into delivery (delivery_id, city, street, zipcode, status) values (?, ?, ?, ?, ?)";
+        String orderSql = "insert into orders (order_id, member_id, delivery_id, order_date, status, total_price) values (?, ?, ?, ?, ?, ?)";
+        String orderItemSql = "insert into order_item (order_item_id, order_id, item_id, order_price, count) values (?, ?, ?, ?, ?)";
+
+        // 파티션 번호로 seed를 파생시켜서 어느 스레드가 실행해도 같은 결과
+        SplittableRandom random = new SplittableRandom(props.getSeed() * 31 + from / ORDER_PARTITION_SIZE);
+        List<Object[]> deliveries = new ArrayList<>(props.getBatchSize());
+        List<Object[]> orders = new ArrayList<>(props.getBatchSize());
+        List<Object[]> orderItems = new ArrayList<>(props.getBatchSize() * props.getItemsPerOrder());
+
+        for (int i = from; i < to; i++) {
+            long orderId = orderBase + i;
+            long deliveryId = deliveryBase + i;
+            long memberId = memberBase + random.nextInt(props.getMembers());
+            OrderStatus status = random.nextInt(10) == 0 ? OrderStatus.CANCEL : OrderStatus.ORDER;
+            DeliveryStatus deliveryStatus = status == OrderStatus.ORDER && random.nextInt(3) == 0 ? DeliveryStatus.COMP : DeliveryStatus.READY;
+            LocalDateTime orderDate = BASE_DATE.plusMinutes(random.nextInt(DATE_RANGE_MINUTES));
+
+            deliveries.add(new Object[]{deliveryId, CITIES[random.nextInt(CITIES.length)], String.valueOf(random.nextInt(1, 1000)), zipcode(random), deliveryStatus.name()});
+            int totalPrice = 0;
+            for (int l = 0; l < props.getItemsPerOrder(); l++) {
+                long orderItemId = orderItemBase + (long) i * props.getItemsPerOrder() + l;
+                long itemId = itemBase + random.nextInt(props.getItems());
+                int orderPrice = random.nextInt(1, 51) * 1000;
+                int count = random.nextInt(1, 6);
+                totalPrice += orderPrice * count;
+                orderItems.add(new Object[]{orderItemId, orderId, itemId, orderPrice, count});
+            }
+            orders.add(new Object[]{orderId, memberId, deliveryId, Timestamp.valueOf(orderDate), status.name(), totalPrice});
+
+            if (orders.size() >= props.getBatchSize()) {
+                flushOrders(deliveries, orders, orderItems, deliverySql, orderSql, orderItemSql);
+            }
+        }
+        flushOrders(deliveries, orders, orderItems, deliverySql, orderSql, orderItemSql);
+    }
+
+    // FK 순서대로: delivery -> orders -> order_item
+    private void flushOrders(List<Object[]> deliveries, List<Object[]> orders, List<Object[]> orderItems,
+                             String deliverySql, String orderSql, String orderItemSql) {
+        flush(deliveries, deliverySql);
+        flush(orders, orderSql);
+        flush(orderItems, orderItemSql);
+    }
+
+    private void flushIfFull(List<Object[]> rows, DataGeneratorProperties props, String sql) {
+        if (rows.size() >= props.getBatchSize()) {
+            flush(rows, sql);
+        }
+    }
+
+    private void flush(List<Object[]> rows, String sql) {
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, rows);
+            rows.clear();
+        }
+    }
+
+    /**
+     * 시퀀스에서 count 개의 id를 한 번에 예약한다.
+     * 시퀀스를 (첫 id + count) 부터 다시 시작하게 해서 이후 JPA가 받는 id와 겹치지 않게 한다.
+     */
+    private long reserveIds(String table, long count) {
+        String sequence = sequenceOf(table);
+        Long first = jdbcTemplate.queryForObject("select next value for " + sequence, Long.class);
+        jdbcTemplate.execute("alter sequence " + sequence + " restart with " + (first + count));
+        return first;
+    }
+
+    // 테이블마다 시퀀스가 따로 있다. (BlockSequenceGenerator)
+    // pooled-lo 라서 시퀀스 값 v는 v부터 블록 크기만큼을 뜻한다. -> 다시 시작한 값부터 JPA가 블록을 받아간다.
+    private static String sequenceOf(String table) {
+        return table + "_seq";
+    }
+
+    private static int categoryCount(int depth, int fanout) {
+        int total = 0;
+        int level = 1;
+        for (int d = 1; d <= depth; d++) {
+            level *= fanout;
+            total += level;
+        }
+        return total;
+    }
+
+    private static String zipcode(SplittableRandom random) {
+        return String.format("%05d", random.nextInt(100_000));
+    }
+
+    private static void await(List<Future<?>> futures) {
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("데이터 생성이 중단되었습니다.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("데이터 생성 실패", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package jpabook.jpashop.datagen;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 데이터 생성기 설정
+ * 같은 seed와 크기면 스레드 수와 상관없이 항상 같은 데이터가 만들어진다. (빈 DB 기준 id까지 동일)
+ */
+@Getter @Setter
+@ConfigurationProperties("jpashop.datagen")
+public class DataGeneratorProperties {
+
+    private boolean enabled = true;
+    private long seed = 42;
+
+    private int members = 2;
+    private int books = 4;
+    private int albums = 0;
+    private int movies = 0;
+
+    private int orders = 2;
+    private int itemsPerOrder = 2;
+
+    private int categoryDepth = 2;
+    private int categoryFanout = 2;
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int batchSize = 1000;
+
+    public int getItems() {
+        return books + albums + movies;
+    }
+}
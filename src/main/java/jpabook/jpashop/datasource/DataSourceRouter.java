@@ -0,0 +1,133 @@
+package jpabook.jpashop.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 커넥션을 원본 / 복제본 중 어디서 가져올지 고른다.
+ * 1. 읽기 전용 트랜잭션이 아니면 원본 (트랜잭션 밖의 지연 로딩도 원본)
+ * 2. 상태가 좋고 지연이 max-lag 이하이고, 요청한 사용자의 마지막 쓰기까지 복제된 복제본을 돌아가면서 쓴다.
+ * 3. 그런 복제본이 없거나 복제본 커넥션을 못 얻으면 원본 (그 복제본은 다음 상태 확인까지 빠진다)
+ *
+ * 경로별 커넥션 획득 수: jpashop.datasource.connections{route=primary|replica 이름, reason}
+ * 풀 메트릭: hikaricp.connections.*{pool=primary|replica-이름}
+ */
+@Slf4j
+public class DataSourceRouter implements DisposableBean {
+
+    public static final String PRIMARY = "primary";
+
+    private final HikariDataSource primary;
+    private final List<ReplicaDataSource> replicas;
+    private final boolean readYourWrites;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final Counter primaryWrites;
+    private final Counter primaryNoReplica;
+    private final Counter primaryFallback;
+    private final Map<String, Counter> replicaReads;
+
+    DataSourceRouter(HikariDataSource primary, List<ReplicaDataSource> replicas, boolean readYourWrites, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.readYourWrites = readYourWrites;
+        this.primaryWrites = routeCounter(meterRegistry, PRIMARY, "write");
+        this.primaryNoReplica = routeCounter(meterRegistry, PRIMARY, "no-replica");
+        this.primaryFallback = routeCounter(meterRegistry, PRIMARY, "fallback");
+        this.replicaReads = this.replicas.stream()
+                .collect(Collectors.toMap(ReplicaDataSource::getName, r -> routeCounter(meterRegistry, r.getName(), "read")));
+    }
+
+    private static Counter routeCounter(MeterRegistry meterRegistry, String route, String reason) {
+        return Counter.builder("jpashop.datasource.connections")
+                .tag("route", route)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    public Connection getConnection() throws SQLException {
+        return getConnection(DataSource::getConnection);
+    }
+
+    public Connection getConnection(String username, String password) throws SQLException {
+        return getConnection(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    private Connection getConnection(ConnectionOpener opener) throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            primaryWrites.increment();
+            registerWriteMarker();
+            return opener.open(primary);
+        }
+
+        long lastWrite = readYourWrites ? ReadYourWrites.lastWriteMillis() : 0;
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+            ReplicaDataSource replica = replicas.get((start + i) % size);
+            if (!replica.canServe(lastWrite)) {
+                continue;
+            }
+            try {
+                Connection connection = opener.open(replica.getDataSource());
+                replicaReads.get(replica.getName()).increment();
+                return connection;
+            } catch (SQLFeatureNotSupportedException e) {
+                throw e; // 복제본 장애가 아니다. (HikariCP 는 계정을 바꿔서 커넥션을 주지 않는다.)
+            } catch (SQLException e) {
+                log.warn("복제본 {} 커넥션 실패, 다음 상태 확인까지 제외: {}", replica.getName(), e.getMessage());
+                replica.markDown();
+                primaryFallback.increment();
+            }
+        }
+        primaryNoReplica.increment();
+        return opener.open(primary);
+    }
+
+    @FunctionalInterface
+    private interface ConnectionOpener {
+        Connection open(DataSource dataSource) throws SQLException;
+    }
+
+    // 쓰기 트랜잭션이 커밋되면 사용자의 마지막 쓰기 시각을 남긴다. (커넥션은 트랜잭션마다 한 번 얻는다)
+    private void registerWriteMarker() {
+        if (readYourWrites
+                && TransactionSynchronizationManager.isActualTransactionActive()
+                && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    ReadYourWrites.markWrite(System.currentTimeMillis());
+                }
+            });
+        }
+    }
+
+    DataSource getPrimary() {
+        return primary;
+    }
+
+    List<ReplicaDataSource> getReplicas() {
+        return replicas;
+    }
+
+    @Override
+    public void destroy() {
+        replicas.forEach(r -> r.getDataSource().close());
+        primary.close();
+    }
+}
@@ -0,0 +1,102 @@
+package jpabook.jpashop.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 읽기 / 쓰기 DataSource 분리 (jpashop.datasource.routing.enabled=true)
+ * spring.datasource 는 원본, jpashop.datasource.routing.replicas 는 읽기 전용 복제본
+ * 빈으로 등록하는 DataSource 는 하나(LazyConnectionDataSourceProxy)만 두고 풀은 DataSourceRouter 가 가진다.
+ * (DataSource 빈이 여러 개면 p6spy 가 각각 감싸서 SQL 로그가 두 번 찍힌다)
+ */
+@Configuration
+@EnableConfigurationProperties(DataSourceRoutingProperties.class)
+@ConditionalOnProperty(prefix = "jpashop.datasource.routing", name = "enabled", havingValue = "true")
+public class DataSourceRoutingConfig {
+
+    @Bean
+    DataSourceRouter dataSourceRouter(DataSourceProperties dataSourceProperties, DataSourceRoutingProperties properties,
+                                      Environment environment, MeterRegistry meterRegistry) {
+        MicrometerMetricsTrackerFactory metrics = new MicrometerMetricsTrackerFactory(meterRegistry);
+
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary)); // 원본 풀 설정은 그대로
+        if (!StringUtils.hasText(primary.getPoolName())) {
+            primary.setPoolName(DataSourceRouter.PRIMARY);
+        }
+        primary.setMetricsTrackerFactory(metrics);
+
+        List<ReplicaDataSource> replicas = properties.getReplicas().stream()
+                .map(replica -> new ReplicaDataSource(replica.getName(), replicaPool(replica, dataSourceProperties, metrics)))
+                .collect(Collectors.toList());
+        return new DataSourceRouter(primary, replicas, properties.isReadYourWrites(), meterRegistry);
+    }
+
+    private static HikariDataSource replicaPool(DataSourceRoutingProperties.Replica replica, DataSourceProperties dataSourceProperties,
+                                                MicrometerMetricsTrackerFactory metrics) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setPoolName("replica-" + replica.getName());
+        pool.setJdbcUrl(replica.getUrl());
+        pool.setUsername(replica.getUsername());
+        pool.setPassword(replica.getPassword());
+        pool.setDriverClassName(dataSourceProperties.determineDriverClassName());
+        pool.setMaximumPoolSize(replica.getMaximumPoolSize());
+        pool.setReadOnly(true);
+        pool.setInitializationFailTimeout(-1); // 복제본이 떠 있지 않아도 애플리케이션은 뜬다. (원본에서 읽는다)
+        pool.setMetricsTrackerFactory(metrics);
+        return pool;
+    }
+
+    @Bean
+    @Primary
+    DataSource dataSource(DataSourceRouter router) {
+        return new LazyConnectionDataSourceProxy(new RoutingDataSource(router));
+    }
+
+    /**
+     * 하이버네이트 기본(스프링 설정)은 세션이 커넥션을 처음 얻은 뒤 세션이 끝날 때까지 쥐고 있는다.
+     * OSIV 에서는 요청 동안 세션이 살아있어서, 먼저 읽기 전용 트랜잭션이 복제본 커넥션을 얻으면 뒤의 쓰기 트랜잭션도 복제본으로 간다.
+     * -> 트랜잭션이 끝날 때마다 커넥션을 돌려주고 다음 트랜잭션에서 다시 고른다.
+     */
+    @Bean
+    HibernatePropertiesCustomizer releaseConnectionAfterTransaction() {
+        return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+
+    @Bean
+    ReplicaHealthChecker replicaHealthChecker(DataSourceRouter router, DataSourceRoutingProperties properties, MeterRegistry meterRegistry) {
+        ReplicaHealthChecker checker = new ReplicaHealthChecker(router, properties.getMaxLag().toMillis(), meterRegistry, System::currentTimeMillis);
+        checker.createHeartbeatTable();
+        return checker;
+    }
+
+    @Bean
+    FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(DataSourceRoutingProperties properties) {
+        FilterRegistrationBean<ReadYourWritesFilter> registration = new FilterRegistrationBean<>(
+                new ReadYourWritesFilter((int) properties.getReadYourWritesWindow().toSeconds()));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 20); // SqlBudgetFilter 안쪽, OSIV 바깥
+        return registration;
+    }
+}
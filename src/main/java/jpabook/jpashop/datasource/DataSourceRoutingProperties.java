@@ -0,0 +1,50 @@
+package jpabook.jpashop.datasource;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter @Setter
+@ConfigurationProperties("jpashop.datasource.routing")
+public class DataSourceRoutingProperties {
+
+    /**
+     * 읽기 전용 트랜잭션을 복제본으로 보낼지 (끄면 spring.datasource 하나만 쓴다)
+     */
+    private boolean enabled = false;
+
+    private List<Replica> replicas = new ArrayList<>();
+
+    /**
+     * 복제 지연이 이보다 크면 그 복제본으로 읽지 않는다.
+     */
+    private Duration maxLag = Duration.ofSeconds(2);
+
+    /**
+     * 복제본 상태 / 지연 확인 주기 (ms)
+     */
+    private long healthCheckInterval = 1000;
+
+    /**
+     * 자기가 커밋한 쓰기가 복제되기 전에는 읽기 전용 트랜잭션도 원본에서 읽는다. (쿠키로 다음 요청까지 이어진다)
+     */
+    private boolean readYourWrites = true;
+
+    /**
+     * 마지막 쓰기 시각 쿠키 유지 시간, 이보다 오래 지연된 복제본은 어차피 max-lag 으로 빠진다.
+     */
+    private Duration readYourWritesWindow = Duration.ofSeconds(30);
+
+    @Getter @Setter
+    public static class Replica {
+        private String name;
+        private String url;
+        private String username = "sa";
+        private String password = "";
+        private int maximumPoolSize = 10;
+    }
+}
@@ -0,0 +1,60 @@
+package jpabook.jpashop.datasource;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 요청한 사용자가 마지막으로 커밋한 시각 (ReadYourWritesFilter 가 쿠키에서 꺼내 요청 스레드에 둔다)
+ * 쓰기 트랜잭션이 커밋되면 갱신하고 같은 응답에 쿠키로 내려서 다음 요청(redirect 후 목록 조회 등)까지 이어간다.
+ * 요청 스레드가 아니면(스케줄러, 배치) 아무 것도 하지 않는다.
+ */
+public final class ReadYourWrites {
+
+    public static final String COOKIE_NAME = "jpashop-last-write";
+
+    private static final ThreadLocal<Context> CONTEXT = new ThreadLocal<>();
+
+    private ReadYourWrites() {
+    }
+
+    static void begin(long lastWriteMillis, HttpServletResponse response, int cookieMaxAgeSeconds) {
+        CONTEXT.set(new Context(lastWriteMillis, response, cookieMaxAgeSeconds));
+    }
+
+    static void clear() {
+        CONTEXT.remove();
+    }
+
+    // 마지막 쓰기 시각, 모르면 0
+    public static long lastWriteMillis() {
+        Context context = CONTEXT.get();
+        return context == null ? 0 : context.lastWriteMillis;
+    }
+
+    static void markWrite(long commitMillis) {
+        Context context = CONTEXT.get();
+        if (context == null) {
+            return;
+        }
+        context.lastWriteMillis = Math.max(context.lastWriteMillis, commitMillis);
+        if (!context.response.isCommitted()) {
+            Cookie cookie = new Cookie(COOKIE_NAME, String.valueOf(context.lastWriteMillis));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge(context.cookieMaxAgeSeconds);
+            context.response.addCookie(cookie);
+        }
+    }
+
+    private static class Context {
+        private long lastWriteMillis;
+        private final HttpServletResponse response;
+        private final int cookieMaxAgeSeconds;
+
+        private Context(long lastWriteMillis, HttpServletResponse response, int cookieMaxAgeSeconds) {
+            this.lastWriteMillis = lastWriteMillis;
+            this.response = response;
+            this.cookieMaxAgeSeconds = cookieMaxAgeSeconds;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package jpabook.jpashop.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.Getter;
+
+/**
+ * 복제본 커넥션 풀 하나와 마지막으로 확인한 상태
+ * replicatedUpTo: 복제본에서 읽힌 하트비트 시각, 이 시각 전에 원본에 커밋된 쓰기는 모두 복제돼 있다.
+ */
+@Getter
+class ReplicaDataSource {
+
+    private final String name;
+    private final HikariDataSource dataSource;
+
+    private volatile boolean healthy; // 첫 확인 전에는 원본에서 읽는다.
+    private volatile long replicatedUpTo;
+    private volatile long lagMillis = -1;
+
+    ReplicaDataSource(String name, HikariDataSource dataSource) {
+        this.name = name;
+        this.dataSource = dataSource;
+    }
+
+    void markUp(long replicatedUpTo, long lagMillis, long maxLagMillis) {
+        this.replicatedUpTo = replicatedUpTo;
+        this.lagMillis = lagMillis;
+        this.healthy = lagMillis <= maxLagMillis;
+    }
+
+    void markDown() {
+        healthy = false;
+        lagMillis = -1;
+    }
+
+    // 이 시각 이후의 쓰기까지 복제돼 있어서 읽을 수 있는지
+    boolean canServe(long lastWriteMillis) {
+        return healthy && replicatedUpTo >= lastWriteMillis;
+    }
+}
@@ -0,0 +1,76 @@
+package jpabook.jpashop.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.function.LongSupplier;
+
+/**
+ * 복제본 상태 / 지연 확인
+ * 원본의 replication_heartbeat 에 지금 시각을 쓰고 바로 각 복제본에서 읽는다.
+ * 복제본에 보이는 값이 T 면 T 전에 원본에 커밋된 쓰기는 복제본에도 있다. -> replicatedUpTo, 지연 = 지금 - T
+ * 복제본에 연결이 안 되거나 하트비트 테이블이 아직 없으면 빠지고 원본에서 읽는다.
+ *
+ * 메트릭: jpashop.datasource.replica.lag{replica} (ms, 모르면 -1), jpashop.datasource.replica.healthy{replica}
+ */
+@Slf4j
+public class ReplicaHealthChecker {
+
+    private final DataSourceRouter router;
+    private final JdbcTemplate primary;
+    private final long maxLagMillis;
+    private final LongSupplier clock;
+
+    ReplicaHealthChecker(DataSourceRouter router, long maxLagMillis, MeterRegistry meterRegistry, LongSupplier clock) {
+        this.router = router;
+        this.primary = new JdbcTemplate(router.getPrimary());
+        this.maxLagMillis = maxLagMillis;
+        this.clock = clock;
+        for (ReplicaDataSource replica : router.getReplicas()) {
+            Gauge.builder("jpashop.datasource.replica.lag", replica, ReplicaDataSource::getLagMillis)
+                    .tag("replica", replica.getName())
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+            Gauge.builder("jpashop.datasource.replica.healthy", replica, r -> r.isHealthy() ? 1 : 0)
+                    .tag("replica", replica.getName())
+                    .register(meterRegistry);
+        }
+    }
+
+    void createHeartbeatTable() {
+        primary.execute("create table if not exists replication_heartbeat (id int primary key, beat_millis bigint not null)");
+        if (primary.update("update replication_heartbeat set beat_millis = ? where id = 1", clock.getAsLong()) == 0) {
+            primary.update("insert into replication_heartbeat (id, beat_millis) values (1, ?)", clock.getAsLong());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${jpashop.datasource.routing.health-check-interval:1000}")
+    public void check() {
+        try {
+            primary.update("update replication_heartbeat set beat_millis = ? where id = 1", clock.getAsLong());
+        } catch (RuntimeException e) {
+            log.warn("원본 하트비트 기록 실패: {}", e.getMessage());
+            return; // 복제본 상태는 지난번 값 유지
+        }
+
+        for (ReplicaDataSource replica : router.getReplicas()) {
+            try {
+                Long beat = new JdbcTemplate(replica.getDataSource())
+                        .queryForObject("select beat_millis from replication_heartbeat where id = 1", Long.class);
+                boolean wasHealthy = replica.isHealthy();
+                replica.markUp(beat, Math.max(0, clock.getAsLong() - beat), maxLagMillis);
+                if (wasHealthy != replica.isHealthy()) {
+                    log.info("복제본 {} {} (지연 {}ms)", replica.getName(), replica.isHealthy() ? "사용" : "제외", replica.getLagMillis());
+                }
+            } catch (RuntimeException e) {
+                if (replica.isHealthy()) {
+                    log.warn("복제본 {} 상태 확인 실패, 제외: {}", replica.getName(), e.getMessage());
+                }
+                replica.markDown();
+            }
+        }
+    }
+}
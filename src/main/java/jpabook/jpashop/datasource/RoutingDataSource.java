@@ -0,0 +1,28 @@
+package jpabook.jpashop.datasource;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * DataSourceRouter 가 고른 풀에서 커넥션을 가져온다.
+ * 트랜잭션 시작 시점에는 아직 읽기 전용 여부가 TransactionSynchronizationManager 에 없기 때문에
+ * 반드시 LazyConnectionDataSourceProxy 로 감싸서 첫 SQL을 실행할 때 커넥션을 얻도록 한다. (DataSourceRoutingConfig)
+ */
+@RequiredArgsConstructor
+class RoutingDataSource extends AbstractDataSource {
+
+    private final DataSourceRouter router;
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return router.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return router.getConnection(username, password);
+    }
+}
@@ -3,6 +3,8 @@ package jpabook.jpashop.domain;
 import jpabook.jpashop.domain.item.Item;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.ArrayList;
@@ -11,16 +13,18 @@ import java.util.List;
 import static javax.persistence.FetchType.*;
 
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "category")
 @Getter @Setter
 public class Category {
 
-    @Id @GeneratedValue
+    @Id @GeneratedValue(generator = "block_seq")
     @Column(name = "category_id")
     private Long id;
 
     private String name;
 
     @ManyToMany
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "category_items")
     @JoinTable(name = "category_item",
             joinColumns = @JoinColumn(name = "category_id"),
             inverseJoinColumns = @JoinColumn(name = "item_id")
@@ -32,6 +36,7 @@ public class Category {
     private Category parent;
 
     @OneToMany(mappedBy = "parent")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "category_child") // 카테고리 트리
     private List<Category> child = new ArrayList<>();
 
     //==연관관계 메서드==//
@@ -3,6 +3,8 @@ package jpabook.jpashop.domain;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.LazyToOne;
+import org.hibernate.annotations.LazyToOneOption;
 
 import javax.persistence.*;
 
@@ -10,11 +12,14 @@ import javax.persistence.*;
 @Getter @Setter
 public class Delivery {
 
-    @Id @GeneratedValue
+    @Id @GeneratedValue(generator = "block_seq")
     @Column(name = "delivery_id")
     private Long id;
 
+    // 외래키가 orders 에 있어서 프록시를 만들 수 없다. (null 인지 모르니까) -> 바이트코드 향상 + NO_PROXY 로 필드 지연 로딩
+    // 향상이 없으면 배송을 조회할 때마다 주문을 한 번씩 더 조회한다.
     @OneToOne( fetch = FetchType.LAZY, mappedBy = "delivery")
+    @LazyToOne(LazyToOneOption.NO_PROXY)
     @JsonIgnore // 양방향 관계에는 꼭 한쪽에 JsonIgnore을 걸어줘야 한다.
     private Order order;
 
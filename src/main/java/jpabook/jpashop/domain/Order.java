@@ -15,12 +15,25 @@ import java.util.List;
 import static javax.persistence.FetchType.*;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_status_id", columnList = "status, order_id"), // 상태 필터 + 키셋 페이징용
+        @Index(name = "idx_orders_order_date", columnList = "orderDate") // 주문일 검색 (논리 컬럼 이름, 물리 이름은 order_date)
+})
+// fetch plan 에서 쓰는 엔티티 그래프 (FetchPlanRegistry)
+@NamedEntityGraphs({
+        @NamedEntityGraph(name = "Order.summary", attributeNodes = {
+                @NamedAttributeNode("member"),
+                @NamedAttributeNode("delivery")
+        }),
+        @NamedEntityGraph(name = "Order.items",
+                attributeNodes = @NamedAttributeNode(value = "orderItems", subgraph = "orderItems.item"),
+                subgraphs = @NamedSubgraph(name = "orderItems.item", attributeNodes = @NamedAttributeNode("item")))
+})
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 public class Order {
 
-    @Id @GeneratedValue
+    @Id @GeneratedValue(generator = "block_seq")
     @Column(name = "order_id")
     private Long id;
 
@@ -45,6 +58,11 @@ public class Order {
     @Enumerated(EnumType.STRING)
     private OrderStatus status; // 주문상태 [ORDER, CANCEL]
 
+    // 주문상품을 추가할 때마다 같이 더해둔다. -> 목록, 집계에서 orderItems 컬렉션을 로딩하지 않아도 된다.
+    @Column(name = "total_price")
+    @Setter(AccessLevel.NONE)
+    private int totalPrice;
+
     //==연관관계 메서드(양방향 관계)==//
     // 연관관계 편의 메서드의 위치는 핵심적으로 컨트롤하는쪽에 있는 것이 좋다.
     public void setMember(Member member) {
@@ -55,6 +73,7 @@ public class Order {
     public void addOrderItem(OrderItem orderItem) {
         orderItems.add(orderItem);
         orderItem.setOrder(this);
+        totalPrice += orderItem.getTotalPrice();
     }
 
     public void setDelivery(Delivery delivery) {
@@ -83,25 +102,32 @@ public class Order {
      * 주문 취소
      */
     public void cancel() {
+        markCanceled();
+        for (OrderItem orderItem : orderItems) {
+            orderItem.cancel();
+        }
+    }
+
+    /**
+     * 주문 상태만 취소로 변경 (재고 원복은 호출하는 쪽에서 처리)
+     */
+    public void markCanceled() {
         if (delivery.getStatus() == DeliveryStatus.COMP) {
             throw new IllegalStateException("이미 배송완료된 상품은 취소가 불가능합니다.");
         }
+        if (status == OrderStatus.CANCEL) {
+            throw new IllegalStateException("이미 취소된 주문입니다.");
+        }
 
         this.setStatus(OrderStatus.CANCEL);
-        for (OrderItem orderItem : orderItems) {
-            orderItem.cancel();
-        }
     }
 
     //==조회로직==//
     /**
      * 전체 주문 가격 조회
+     * 취소해도 주문 금액은 그대로 남는다. (합계를 낼 때 취소 주문은 뺀다. OrderRepository.findTotals)
      */
     public int getTotalPrice() {
-        int totalPrice= 0;
-        for (OrderItem orderItem : orderItems) {
-            totalPrice += orderItem.getTotalPrice();
-        }
         return totalPrice;
     }
 
@@ -0,0 +1,80 @@
+package jpabook.jpashop.domain.id;
+
+import io.micrometer.core.instrument.Metrics;
+import org.hibernate.HibernateException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.PersistentIdentifierGenerator;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * 엔티티(테이블)마다 시퀀스를 따로 두고 (테이블명_seq) pooled-lo 블록 단위로 id를 나눠준다.
+ * 블록 크기는 하이버네이트 설정으로 정한다. (spring.jpa.properties)
+ * - jpashop.id.default-block-size: 기본 블록 크기
+ * - jpashop.id.block-size.시퀀스명: 시퀀스별 블록 크기 (ex. jpashop.id.block-size.orders_seq)
+ *
+ * 시퀀스 조회는 id 를 받는 세션의 커넥션에서 한다. (IdBlockDispenser)
+ * 블록이 너무 작으면 주문마다 시퀀스 왕복이 생겨서 블록을 쓰는 의미가 없으니 MIN_BLOCK_SIZE 이상만 받는다.
+ */
+public class BlockSequenceGenerator extends SequenceStyleGenerator {
+
+    public static final String NAME = "block_seq";
+    public static final String DEFAULT_BLOCK_SIZE = "jpashop.id.default-block-size";
+    public static final String BLOCK_SIZE_PREFIX = "jpashop.id.block-size.";
+    public static final int MIN_BLOCK_SIZE = 10;
+
+    private String sequenceName;
+    private int blockSize;
+    private volatile IdBlockDispenser dispenser;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws HibernateException {
+        String table = params.getProperty(PersistentIdentifierGenerator.TABLE);
+        sequenceName = params.getProperty(SEQUENCE_PARAM, table.toLowerCase(Locale.ROOT) + "_seq");
+
+        Map<?, ?> settings = serviceRegistry.getService(ConfigurationService.class).getSettings();
+        int defaultBlockSize = ConfigurationHelper.getInt(DEFAULT_BLOCK_SIZE, settings, 50);
+        blockSize = ConfigurationHelper.getInt(BLOCK_SIZE_PREFIX + sequenceName, settings, defaultBlockSize);
+        if (blockSize < MIN_BLOCK_SIZE) {
+            throw new HibernateException("id 블록 크기는 " + MIN_BLOCK_SIZE + " 이상이어야 합니다. sequence=" + sequenceName);
+        }
+
+        params.setProperty(SEQUENCE_PARAM, sequenceName);
+        params.setProperty(INCREMENT_PARAM, String.valueOf(blockSize)); // DDL: increment by blockSize
+        params.setProperty(OPT_PARAM, StandardOptimizerDescriptor.POOLED_LO.getExternalName());
+        super.configure(type, params, serviceRegistry);
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) throws HibernateException {
+        // 표준 시퀀스 조회 (SequenceStructure) 를 이 세션의 커넥션으로 한다.
+        return dispenser().next(() -> getDatabaseStructure().buildCallback(session).getNextValue().makeValue().longValue());
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    private IdBlockDispenser dispenser() {
+        IdBlockDispenser result = dispenser;
+        if (result == null) {
+            synchronized (this) {
+                result = dispenser;
+                if (result == null) {
+                    result = new IdBlockDispenser(sequenceName, blockSize, Metrics.globalRegistry);
+                    dispenser = result;
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,124 @@
+package jpabook.jpashop.domain.id;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.hibernate.HibernateException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * 시퀀스에서 받아온 id 블록을 락 없이 나눠준다. (pooled-lo: 시퀀스 값 v -> v ~ v + blockSize - 1)
+ * 블록의 절반을 꺼낸 스레드가 다음 블록을 미리 받아두기 때문에 나머지 스레드는 보통 시퀀스 왕복을 기다리지 않는다.
+ *
+ * 시퀀스 조회는 호출한 스레드가 자기 커넥션으로 한다. (sequence 는 호출마다 넘겨받는다)
+ * 다른 스레드나 풀에서 커넥션을 따로 빌리면 풀이 꽉 찼을 때 커넥션을 쥔 채 블록을 기다리는 스레드끼리 서로 막힌다.
+ * 기다리는 스레드는 이미 커넥션을 쥐고 시퀀스를 조회 중인 스레드만 기다린다.
+ *
+ * 블록 하나는 next 에서 꺼낸 스레드만 current 에 올릴 수 있어서 같은 블록이 두 번 쓰이지 않는다.
+ * 경쟁에서 진 블록은 버려진다. (id 에 빈 구간이 생길 뿐 중복은 없다)
+ */
+class IdBlockDispenser {
+
+    private final String sequenceName;
+    private final int blockSize;
+
+    private final AtomicReference<Block> current = new AtomicReference<>(Block.EMPTY);
+    private final AtomicReference<CompletableFuture<Block>> next = new AtomicReference<>();
+
+    private final Counter refills;
+    private final Timer waits;
+
+    IdBlockDispenser(String sequenceName, int blockSize, MeterRegistry meterRegistry) {
+        this.sequenceName = sequenceName;
+        this.blockSize = blockSize;
+        this.refills = meterRegistry.counter("jpashop.id.block.refills", "sequence", sequenceName);
+        this.waits = meterRegistry.timer("jpashop.id.block.waits", "sequence", sequenceName);
+    }
+
+    /**
+     * @param sequence 블록 첫 번호 조회 (시퀀스 왕복), 호출한 스레드의 커넥션을 쓴다.
+     */
+    long next(LongSupplier sequence) {
+        while (true) {
+            Block block = current.get();
+            long id = block.cursor.getAndIncrement();
+            if (id < block.end) {
+                if (id == block.prefetchAt) {
+                    prefetch(sequence);
+                }
+                return id;
+            }
+
+            CompletableFuture<Block> pending = nextBlock(sequence);
+            Block fresh = await(pending);
+            if (next.compareAndSet(pending, null)) {
+                current.compareAndSet(block, fresh);
+            }
+        }
+    }
+
+    // 다음 블록 미리 받기, 실패해도 지금 꺼낸 id 는 돌려주고 블록이 바닥났을 때 다시 받는다.
+    private void prefetch(LongSupplier sequence) {
+        CompletableFuture<Block> pending = nextBlock(sequence);
+        if (pending.isCompletedExceptionally()) {
+            next.compareAndSet(pending, null);
+        }
+    }
+
+    // 받는 중인 블록이 없으면 이 스레드가 직접 받는다.
+    private CompletableFuture<Block> nextBlock(LongSupplier sequence) {
+        while (true) {
+            CompletableFuture<Block> pending = next.get();
+            if (pending != null) {
+                return pending;
+            }
+            CompletableFuture<Block> created = new CompletableFuture<>();
+            if (next.compareAndSet(null, created)) {
+                try {
+                    long start = sequence.getAsLong();
+                    refills.increment();
+                    created.complete(new Block(start, blockSize));
+                } catch (RuntimeException e) {
+                    created.completeExceptionally(e);
+                }
+                return created;
+            }
+        }
+    }
+
+    private Block await(CompletableFuture<Block> pending) {
+        boolean waited = !pending.isDone(); // 다른 스레드가 아직 받는 중이다.
+        long started = System.nanoTime();
+        try {
+            return pending.join();
+        } catch (CompletionException e) {
+            next.compareAndSet(pending, null); // 다음 호출에서 다시 시도
+            throw new HibernateException("id 블록을 가져오지 못했습니다. sequence=" + sequenceName, e.getCause());
+        } finally {
+            if (waited) {
+                waits.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private static final class Block {
+
+        static final Block EMPTY = new Block(0, 0);
+
+        final AtomicLong cursor;
+        final long end; // 미포함
+        final long prefetchAt;
+
+        Block(long start, int size) {
+            this.cursor = new AtomicLong(start);
+            this.end = start + size;
+            this.prefetchAt = start + size / 2;
+        }
+    }
+}
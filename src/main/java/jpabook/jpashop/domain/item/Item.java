@@ -4,6 +4,8 @@ import jpabook.jpashop.domain.Category;
 import jpabook.jpashop.exception.NotEnoughStockException;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.ArrayList;
@@ -13,16 +15,23 @@ import java.util.List;
 @Entity
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
 @DiscriminatorColumn(name = "dtype") // 구분자
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "item") // Book, Album, Movie 도 같은 영역에 캐시된다.
 @Getter @Setter
 public abstract class Item {
 
-    @Id @GeneratedValue
+    @Id @GeneratedValue(generator = "block_seq")
     @Column(name = "item_id")
     private Long id;
 
     private String name;
     private int price;
-    private int stockQuantity;
+    private int stockQuantity; // 샤딩된 상품은 0, 샤드 합은 ItemService.getStockQuantity()
+
+    @Column(name = "stock_shards")
+    private int stockShards; // 0이면 stockQuantity 컬럼 하나, N이면 item_stock_shard N개 row에 나눠 담는다. (ItemService.enableStockSharding)
+
+    @Version // 더티 체킹으로 재고를 바꿀 때 동시 주문의 갱신 손실을 막는다. (낙관적 락)
+    private Long version;
 
     @ManyToMany(mappedBy = "items")
     private List<Category> categories = new ArrayList<>();
@@ -30,11 +39,16 @@ public abstract class Item {
     //==비지니스 로직==//
     // 데이터를 가지고 있는 쪽에 비지니스 메서드가 있는 것이 좋다. -> 더 객체지향적이다. -> 응집력이 있다.
 
+    public boolean isStockSharded() {
+        return stockShards > 0;
+    }
+
     /**
      * stock 증가
      * @param quantity
      */
     public void addStock(int quantity) {
+        checkNotSharded();
         this.stockQuantity += quantity;
     }
 
@@ -43,6 +57,7 @@ public abstract class Item {
      * @param quantity
      */
     public void removeStock(int quantity) {
+        checkNotSharded();
         int restStock = this.stockQuantity - quantity;
         if (restStock < 0) {
             throw new NotEnoughStockException("need more stock");
@@ -51,4 +66,11 @@ public abstract class Item {
         this.stockQuantity = restStock;
     }
 
+    // 샤딩된 재고는 item_stock_shard 에서만 바뀐다. (StockManager)
+    private void checkNotSharded() {
+        if (isStockSharded()) {
+            throw new IllegalStateException("샤딩된 재고는 StockManager를 통해서만 변경할 수 있습니다.");
+        }
+    }
+
 }
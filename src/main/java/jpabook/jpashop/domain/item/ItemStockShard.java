@@ -0,0 +1,45 @@
+package jpabook.jpashop.domain.item;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+
+import static javax.persistence.FetchType.*;
+
+/**
+ * 인기 상품의 재고를 여러 row로 나눠 담는 하위 재고
+ * 주문마다 샤드 하나만 잠그기 때문에 같은 상품의 주문끼리 한 row를 두고 줄을 서지 않는다.
+ * 상품 재고 = 샤드 quantity 합
+ */
+@Entity
+@Table(name = "item_stock_shard",
+        uniqueConstraints = @UniqueConstraint(name = "uk_item_stock_shard", columnNames = {"item_id", "shard_no"}))
+@Getter @Setter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class ItemStockShard {
+
+    @Id @GeneratedValue(generator = "block_seq")
+    @Column(name = "item_stock_shard_id")
+    private Long id;
+
+    @ManyToOne(fetch = LAZY)
+    @JoinColumn(name = "item_id")
+    private Item item;
+
+    @Column(name = "shard_no")
+    private int shardNo;
+
+    private int quantity;
+
+    //==생성 메서드==//
+    public static ItemStockShard createShard(Item item, int shardNo, int quantity) {
+        ItemStockShard shard = new ItemStockShard();
+        shard.setItem(item);
+        shard.setShardNo(shardNo);
+        shard.setQuantity(quantity);
+        return shard;
+    }
+}
@@ -0,0 +1,8 @@
+/**
+ * 모든 엔티티의 id는 @GeneratedValue(generator = "block_seq") 로 테이블별 시퀀스에서 블록 단위로 받는다.
+ */
+@GenericGenerator(name = BlockSequenceGenerator.NAME, strategy = "jpabook.jpashop.domain.id.BlockSequenceGenerator")
+package jpabook.jpashop.domain;
+
+import jpabook.jpashop.domain.id.BlockSequenceGenerator;
+import org.hibernate.annotations.GenericGenerator;
@@ -0,0 +1,11 @@
+package jpabook.jpashop.exception;
+
+/**
+ * SQL 예산 초과 (jpashop.sql-budget.mode: fail, 테스트 / 개발용)
+ */
+public class SqlBudgetExceededException extends RuntimeException {
+
+    public SqlBudgetExceededException(String message) {
+        super(message);
+    }
+}
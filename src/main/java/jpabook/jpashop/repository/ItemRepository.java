@@ -2,9 +2,16 @@ package jpabook.jpashop.repository;
 
 import jpabook.jpashop.domain.item.Item;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.QueryHints;
+import org.hibernate.query.NativeQuery;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.persistence.Cache;
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
 import java.util.List;
 
 @Repository
@@ -25,7 +32,133 @@ public class ItemRepository {
         return em.find(Item.class, id);
     }
 
+    // 상품 목록은 쿼리 캐시 (item 테이블에 insert / update 가 있으면 무효화)
     public List<Item> findAll() {
-        return em.createQuery("select i from Item i", Item.class).getResultList();
+        return em.createQuery("select i from Item i", Item.class)
+                .setHint(QueryHints.CACHEABLE, true)
+                .getResultList();
+    }
+
+    // SELECT ... FOR UPDATE 로 조회 (비관적 락)
+    public Item findOneForUpdate(Long id) {
+        return em.find(Item.class, id, LockModeType.PESSIMISTIC_WRITE);
+    }
+
+    // id 순서로 조회 (잠그지 않는다)
+    public List<Item> findAllByIdIn(List<Long> ids) {
+        return em.createQuery("select i from Item i where i.id in :ids order by i.id", Item.class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
+    /**
+     * 샤딩 안 된 상품만 id 순서로 잠그면서 조회 (여러 상품을 잠글 때 트랜잭션끼리 순서가 같아야 데드락이 나지 않는다)
+     * 샤딩된 상품 row 는 잠그지 않는다. (재고는 샤드 row 에서 차감한다)
+     */
+    public List<Item> findAllUnshardedForUpdate(List<Long> ids) {
+        return em.createQuery("select i from Item i where i.id in :ids and i.stockShards = 0 order by i.id", Item.class)
+                .setParameter("ids", ids)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+    }
+
+    /**
+     * 재고가 충분할 때만 한 문장으로 차감한다. (읽고 - 계산하고 - 쓰는 사이에 다른 주문이 끼어들 틈이 없다)
+     * 샤딩된 상품은 건드리지 않는다. (ItemStockShardRepository)
+     * @return 차감된 row 수, 0이면 재고 부족 또는 샤딩된 상품
+     */
+    public int decreaseStock(Long itemId, int quantity) {
+        return updateStock(itemId,
+                "update item set stock_quantity = stock_quantity - :quantity, version = version + 1" +
+                        " where item_id = :itemId and stock_shards = 0 and stock_quantity >= :quantity", quantity);
+    }
+
+    // 엔티티를 로딩하지 않고 샤딩 여부만 조회
+    public boolean isStockSharded(Long itemId) {
+        return em.createQuery("select i.stockShards from Item i where i.id = :itemId", Integer.class)
+                .setParameter("itemId", itemId)
+                .getResultStream()
+                .anyMatch(shards -> shards > 0);
+    }
+
+    public int increaseStock(Long itemId, int quantity) {
+        return updateStock(itemId,
+                "update item set stock_quantity = stock_quantity + :quantity, version = version + 1" +
+                        " where item_id = :itemId and stock_shards = 0", quantity);
+    }
+
+    /**
+     * JPQL 벌크 update는 2차 캐시의 item 영역 전체를 비우기 때문에 (주문마다 모든 상품 캐시가 날아간다)
+     * 네이티브 쿼리의 쿼리 스페이스를 비워두고 바뀐 상품 하나만 캐시에서 뺀다.
+     * 쿼리 스페이스가 비어 있으면 자동 flush도 안 되기 때문에 쓰기 지연된 SQL은 먼저 flush 한다.
+     */
+    private int updateStock(Long itemId, String sql, int quantity) {
+        em.flush();
+        int updated = em.createNativeQuery(sql)
+                .setParameter("quantity", quantity)
+                .setParameter("itemId", itemId)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace("")
+                .executeUpdate();
+        evictFromCache(itemId);
+        refreshIfLoaded(itemId);
+        return updated;
+    }
+
+    /**
+     * 주문들의 주문상품 수량을 상품별로 합쳐서 한 문장으로 재고 원복 (샤딩된 상품 제외)
+     * 상품마다 update 한 번씩이 아니라 상품 row 마다 sum 서브쿼리로 한 번에 더한다.
+     */
+    public int restoreStockOfOrders(List<Long> orderIds) {
+        return em.createNativeQuery(
+                        "update item i" +
+                                " set stock_quantity = stock_quantity + (" +
+                                "   select sum(oi.count) from order_item oi where oi.item_id = i.item_id and oi.order_id in (:orderIds))," +
+                                " version = version + 1" +
+                                " where i.stock_shards = 0" +
+                                " and i.item_id in (select oi.item_id from order_item oi where oi.order_id in (:orderIds))")
+                .setParameter("orderIds", orderIds)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(Item.class) // 무효화할 캐시 범위를 item 으로 한정
+                .executeUpdate();
+    }
+
+    /**
+     * 주문들의 샤딩된 상품별 [상품 id, 샤드 수, 수량 합]
+     */
+    public List<Object[]> findShardedQuantitiesOfOrders(List<Long> orderIds) {
+        return em.createQuery(
+                        "select i.id, i.stockShards, sum(oi.count) from OrderItem oi" +
+                                " join oi.item i" +
+                                " where oi.order.id in :orderIds and i.stockShards > 0" +
+                                " group by i.id, i.stockShards", Object[].class)
+                .setParameter("orderIds", orderIds)
+                .getResultList();
+    }
+
+    /**
+     * 2차 캐시에서 상품을 뺀다. (네이티브 update 처럼 영속성 컨텍스트를 거치지 않고 상품 row 를 바꾼 뒤)
+     * 트랜잭션이 끝나기 전에 옛 값 (또는 롤백될 값) 이 다시 캐시에 올라갈 수 있어서 트랜잭션이 끝난 뒤에 한 번 더 뺀다.
+     */
+    public void evictFromCache(Long itemId) {
+        Cache cache = em.getEntityManagerFactory().getCache();
+        cache.evict(Item.class, itemId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.evict(Item.class, itemId);
+                }
+            });
+        }
+    }
+
+    // 벌크 update는 영속성 컨텍스트를 거치지 않기 때문에 이미 로딩된 엔티티가 있으면 DB 값으로 다시 읽는다.
+    // getReference()는 영속성 컨텍스트에 있으면 그 엔티티를, 없으면 초기화 안된 프록시를 준다. (쿼리 X)
+    public void refreshIfLoaded(Long itemId) {
+        Item item = em.getReference(Item.class, itemId);
+        if (Hibernate.isInitialized(item)) {
+            em.refresh(item);
+        }
     }
 }
@@ -0,0 +1,138 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.item.ItemStockShard;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+@Repository
+@RequiredArgsConstructor
+public class ItemStockShardRepository {
+
+    private final EntityManager em;
+
+    public void save(ItemStockShard shard) {
+        em.persist(shard);
+    }
+
+    /**
+     * 상품의 샤드를 shard_no 순서로 잠그고 조회
+     * 여러 샤드를 잠글 때는 항상 이 순서를 지켜야 데드락이 나지 않는다.
+     */
+    public List<ItemStockShard> findAllForUpdate(Long itemId) {
+        return em.createQuery(
+                        "select s from ItemStockShard s" +
+                                " where s.item.id = :itemId" +
+                                " order by s.shardNo", ItemStockShard.class)
+                .setParameter("itemId", itemId)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+    }
+
+    /**
+     * 샤드 합 (샤딩된 상품의 재고), 잠그지 않는다.
+     */
+    public int sumQuantity(Long itemId) {
+        return em.createQuery("select coalesce(sum(s.quantity), 0) from ItemStockShard s where s.item.id = :itemId", Long.class)
+                .setParameter("itemId", itemId)
+                .getSingleResult()
+                .intValue();
+    }
+
+    /**
+     * 상품별 샤드 합 (상품 목록용, 쿼리 한 번)
+     */
+    public Map<Long, Integer> sumQuantities(List<Long> itemIds) {
+        return em.createQuery(
+                        "select s.item.id, sum(s.quantity) from ItemStockShard s" +
+                                " where s.item.id in :itemIds" +
+                                " group by s.item.id", Object[].class)
+                .setParameter("itemIds", itemIds)
+                .getResultStream()
+                .collect(Collectors.toMap(row -> (Long) row[0], row -> ((Long) row[1]).intValue()));
+    }
+
+    public List<Long> findShardedItemIds() {
+        return em.createQuery("select i.id from Item i where i.stockShards > 0 order by i.id", Long.class)
+                .getResultList();
+    }
+
+    /**
+     * 무작위 샤드 하나에서 차감하고, 모자라면 옆 샤드를 차례로 시도한다.
+     * 어느 샤드 하나로도 모자라면 전체 샤드를 잠그고 여러 샤드에서 나눠 뺀다.
+     */
+    public void take(Long itemId, int shards, int quantity) {
+        int start = ThreadLocalRandom.current().nextInt(shards);
+        for (int i = 0; i < shards; i++) {
+            if (decrease(itemId, (start + i) % shards, quantity) == 1) {
+                return;
+            }
+        }
+        takeAcrossShards(itemId, quantity);
+    }
+
+    /**
+     * 무작위 샤드 하나에 되돌린다. (치우침은 재분배에서 맞춘다)
+     */
+    public void give(Long itemId, int shards, int quantity) {
+        int shardNo = ThreadLocalRandom.current().nextInt(shards);
+        em.createQuery(
+                        "update ItemStockShard s set s.quantity = s.quantity + :quantity" +
+                                " where s.item.id = :itemId and s.shardNo = :shardNo")
+                .setParameter("quantity", quantity)
+                .setParameter("itemId", itemId)
+                .setParameter("shardNo", shardNo)
+                .executeUpdate();
+    }
+
+    /**
+     * total을 샤드에 고르게 나눠 담는다. (앞쪽 샤드가 나머지를 하나씩 더 가진다)
+     */
+    public void redistribute(List<ItemStockShard> lockedShards, int total) {
+        int size = lockedShards.size();
+        for (int i = 0; i < size; i++) {
+            lockedShards.get(i).setQuantity(total / size + (i < total % size ? 1 : 0));
+        }
+    }
+
+    public void deleteAll(Long itemId) {
+        em.createQuery("delete from ItemStockShard s where s.item.id = :itemId")
+                .setParameter("itemId", itemId)
+                .executeUpdate();
+    }
+
+    private int decrease(Long itemId, int shardNo, int quantity) {
+        return em.createQuery(
+                        "update ItemStockShard s set s.quantity = s.quantity - :quantity" +
+                                " where s.item.id = :itemId and s.shardNo = :shardNo and s.quantity >= :quantity")
+                .setParameter("quantity", quantity)
+                .setParameter("itemId", itemId)
+                .setParameter("shardNo", shardNo)
+                .executeUpdate();
+    }
+
+    private void takeAcrossShards(Long itemId, int quantity) {
+        List<ItemStockShard> shards = findAllForUpdate(itemId);
+        int total = shards.stream().mapToInt(ItemStockShard::getQuantity).sum();
+        if (total < quantity) {
+            throw new NotEnoughStockException("need more stock");
+        }
+
+        int rest = quantity;
+        for (ItemStockShard shard : shards) {
+            int taken = Math.min(shard.getQuantity(), rest);
+            shard.setQuantity(shard.getQuantity() - taken);
+            rest -= taken;
+            if (rest == 0) {
+                break;
+            }
+        }
+    }
+}
@@ -32,6 +32,12 @@ public class MemberRepository {
                 .getResultList();
     }
 
+    public List<Member> findAllByIdIn(List<Long> ids) {
+        return em.createQuery("select m from Member m where m.id in :ids", Member.class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
     public List<Member> findByName(String name) {
         return em.createQuery("select m from Member m where m.name = :name", Member.class)
                 .setParameter("name", name)
@@ -0,0 +1,24 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 주문 목록 화면 한 줄 (OrderRepository.findAll)
+ * 엔티티 대신 필요한 컬럼만 조회하기 때문에 화면에서 지연 로딩이 일어나지 않는다.
+ */
+@Data
+@AllArgsConstructor
+public class OrderListDto {
+    private Long orderId;
+    private String memberName;
+    private String itemName; // 대표 상품 (첫 번째 주문상품)
+    private int itemCount; // 주문상품 수
+    private int orderPrice; // 주문 금액 합 (orders.total_price)
+    private int count; // 주문 수량 합
+    private OrderStatus status;
+    private LocalDateTime orderDate;
+}
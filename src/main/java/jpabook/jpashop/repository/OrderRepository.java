@@ -1,20 +1,42 @@
 package jpabook.jpashop.repository;
 
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.OrderSpecifier;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.JPQLQuery;
+import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderStatus;
 import jpabook.jpashop.domain.QMember;
 import jpabook.jpashop.domain.QOrder;
+import jpabook.jpashop.domain.QOrderItem;
+import jpabook.jpashop.domain.item.QItem;
+import jpabook.jpashop.repository.support.FetchPlan;
+import jpabook.jpashop.repository.support.FetchPlanRegistry;
+import jpabook.jpashop.repository.support.InListLoader;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.FlushMode;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.StringUtils;
 
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import static jpabook.jpashop.domain.QMember.*;
 import static jpabook.jpashop.domain.QOrder.*;
@@ -22,12 +44,18 @@ import static jpabook.jpashop.domain.QOrder.*;
 @Repository
 public class OrderRepository {
 
+    private static final String FETCH_GRAPH = "javax.persistence.fetchgraph";
+
     private final EntityManager em;
     private final JPAQueryFactory query;
+    private final FetchPlanRegistry fetchPlans;
+    private final InListLoader inListLoader;
 
-    public OrderRepository(EntityManager em) {
+    public OrderRepository(EntityManager em, FetchPlanRegistry fetchPlans, InListLoader inListLoader) {
         this.em = em;
         this.query = new JPAQueryFactory(em);
+        this.fetchPlans = fetchPlans;
+        this.inListLoader = inListLoader;
     }
 
     public void save(Order order) {
@@ -42,15 +70,135 @@ public class OrderRepository {
      * QueryDsl 소개
      * 장점: 컴파일 시점에 오류를 다 잡을 수 있다.
      *      동적 쿼리 가능
+     *
+     * 주문 목록 화면 검색: 엔티티 대신 화면에 필요한 컬럼만 DTO로 한 페이지 조회한다.
+     * 대표 상품 이름, 주문상품 수, 수량 합은 스칼라 서브쿼리로 같이 가져와서 페이지 크기와 상관없이 쿼리 1번 (+ count)
+     * count 쿼리는 첫 페이지가 다 차지 않았거나 마지막 페이지면 실행하지 않는다. (PageableExecutionUtils)
+     * 정렬은 SORTABLE 에 있는 속성만 허용하고 같은 값이면 주문 id 역순으로 (페이지끼리 겹치거나 빠지지 않게)
      */
-    public List<Order> findAll(OrderSearch orderSearch) {
+    public Page<OrderListDto> findAll(OrderSearch orderSearch, Pageable pageable) {
+        QOrderItem firstLine = new QOrderItem("firstLine");
+        QOrderItem minLine = new QOrderItem("minLine");
+        QOrderItem countLine = new QOrderItem("countLine");
+        QOrderItem quantityLine = new QOrderItem("quantityLine");
+        QItem firstItem = new QItem("firstItem");
+
+        JPQLQuery<String> itemName = JPAExpressions.select(firstItem.name)
+                .from(firstLine)
+                .join(firstLine.item, firstItem)
+                .where(firstLine.id.eq(JPAExpressions.select(minLine.id.min())
+                        .from(minLine)
+                        .where(minLine.order.eq(order))));
+        JPQLQuery<Long> itemCount = JPAExpressions.select(countLine.count())
+                .from(countLine)
+                .where(countLine.order.eq(order));
+        JPQLQuery<Integer> quantity = JPAExpressions.select(quantityLine.count.sum())
+                .from(quantityLine)
+                .where(quantityLine.order.eq(order));
+
+        BooleanExpression[] conditions = searchConditions(orderSearch, orderSearch.getOrderStatus());
+        List<OrderListDto> content = query.select(order.id, member.name, itemName, itemCount, order.totalPrice, quantity, order.status, order.orderDate)
+                .from(order)
+                .join(order.member, member)
+                .where(conditions)
+                .orderBy(orderSpecifiers(pageable.getSort()))
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch()
+                .stream()
+                .map(t -> new OrderListDto(
+                        t.get(0, Long.class),
+                        t.get(1, String.class),
+                        t.get(2, String.class),
+                        intValue(t.get(3, Number.class)), // count, sum 결과 타입은 Long
+                        t.get(4, Integer.class),
+                        intValue(t.get(5, Number.class)),
+                        t.get(6, OrderStatus.class),
+                        t.get(7, LocalDateTime.class)))
+                .collect(Collectors.toList());
+
+        JPAQuery<Long> countQuery = query.select(order.count())
+                .from(order)
+                .join(order.member, member)
+                .where(conditions);
+        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchOne);
+    }
 
-        return query.select(order)
+    // 정렬 가능한 속성 (요청 파라미터 sort=orderDate,desc) -> 정렬 컬럼
+    private static final Map<String, ComparableExpressionBase<?>> SORTABLE = Map.of(
+            "id", order.id,
+            "orderDate", order.orderDate,
+            "orderPrice", order.totalPrice,
+            "status", order.status,
+            "memberName", member.name);
+
+    /**
+     * 정렬 속성 검사는 서비스에서 먼저 한다. (@Repository 안에서 던지면 InvalidDataAccessApiUsageException 으로 바뀌어서 400 으로 못 돌려준다.)
+     */
+    public static void checkSortable(Sort sort) {
+        for (Sort.Order sortOrder : sort) {
+            if (!SORTABLE.containsKey(sortOrder.getProperty())) {
+                throw new IllegalArgumentException("정렬할 수 없는 속성입니다. sort=" + sortOrder.getProperty() + " " + SORTABLE.keySet());
+            }
+        }
+    }
+
+    private static OrderSpecifier<?>[] orderSpecifiers(Sort sort) {
+        checkSortable(sort);
+        List<OrderSpecifier<?>> specifiers = new ArrayList<>();
+        boolean byId = false;
+        for (Sort.Order sortOrder : sort) {
+            ComparableExpressionBase<?> path = SORTABLE.get(sortOrder.getProperty());
+            specifiers.add(sortOrder.isAscending() ? path.asc() : path.desc());
+            byId |= path == order.id;
+        }
+        if (!byId) {
+            specifiers.add(order.id.desc()); // 같은 값끼리 순서 고정
+        }
+        return specifiers.toArray(new OrderSpecifier<?>[0]);
+    }
+
+    private static int intValue(Number number) {
+        return number == null ? 0 : number.intValue();
+    }
+
+    /**
+     * 검색 조건에 맞는 주문 전체(limit 없이)의 건수, 금액 합계를 주문 상태별 집계 쿼리 한 번으로 구한다.
+     * 주문 금액은 orders.total_price 에 저장돼 있어서 order_item 을 읽지 않는다.
+     * 취소된 주문은 금액 합계에서 뺀다. (취소해도 total_price 는 그대로 남는다)
+     */
+    public OrderTotals findTotals(OrderSearch orderSearch) {
+        List<Tuple> byStatus = query.select(order.status, order.count(), order.totalPrice.sum())
                 .from(order)
                 .join(order.member, member)
-                .where(statusEq(orderSearch.getOrderStatus()), nameLike(orderSearch.getMemberName()))
-                .limit(1000)
+                .where(searchConditions(orderSearch, orderSearch.getOrderStatus()))
+                .groupBy(order.status)
                 .fetch();
+
+        long orderCount = 0;
+        long canceledCount = 0;
+        long totalPrice = 0;
+        for (Tuple row : byStatus) {
+            long count = row.get(1, Long.class);
+            orderCount += count;
+            if (row.get(order.status) == OrderStatus.CANCEL) {
+                canceledCount += count;
+            } else {
+                totalPrice += row.get(2, Number.class).longValue(); // sum(int)는 Long
+            }
+        }
+        return new OrderTotals(orderCount, canceledCount, totalPrice);
+    }
+
+    // 검색 조건 (null 인 조건은 where 에서 무시된다.)
+    private static BooleanExpression[] searchConditions(OrderSearch orderSearch, OrderStatus status) {
+        return new BooleanExpression[]{
+                statusEq(status),
+                nameLike(orderSearch.getMemberName()),
+                itemNameContains(orderSearch.getItemName()),
+                orderDateGoe(orderSearch.getOrderDateFrom()),
+                orderDateLoe(orderSearch.getOrderDateTo())
+        };
     }
 
     private static BooleanExpression nameLike(String memberName) {
@@ -60,12 +208,45 @@ public class OrderRepository {
         return member.name.like(memberName);
     }
 
-    private BooleanExpression statusEq(OrderStatus statusCond) {
+    private static BooleanExpression statusEq(OrderStatus statusCond) {
         if (statusCond == null) {
             return null;
         }
         return order.status.eq(statusCond);
     }
+
+    // 주문상품 중 하나라도 상품 이름에 포함되면 (조인하면 주문이 주문상품 수만큼 늘어나기 때문에 exists)
+    private static BooleanExpression itemNameContains(String itemName) {
+        if (!StringUtils.hasText(itemName)) {
+            return null;
+        }
+        QOrderItem searchLine = new QOrderItem("searchLine");
+        QItem searchItem = new QItem("searchItem");
+        return JPAExpressions.selectOne()
+                .from(searchLine)
+                .join(searchLine.item, searchItem)
+                .where(searchLine.order.eq(order), searchItem.name.contains(itemName))
+                .exists();
+    }
+
+    private static BooleanExpression orderDateGoe(LocalDate from) {
+        return from == null ? null : order.orderDate.goe(from.atStartOfDay());
+    }
+
+    // 그 날짜 하루 전체를 포함한다.
+    private static BooleanExpression orderDateLoe(LocalDate to) {
+        return to == null ? null : order.orderDate.lt(to.plusDays(1).atStartOfDay());
+    }
+    /**
+     * 조회 API 전용 엔티티 조회 (OrderQueryService)
+     * 읽기 전용으로 읽으면 변경 감지용 스냅샷을 만들지 않고, FlushMode.MANUAL 이라 쿼리 전에 flush 검사도 하지 않는다.
+     * 대신 이렇게 읽은 엔티티는 값을 바꿔도 update 가 나가지 않으니 수정 로직에서는 쓰면 안된다.
+     */
+    private static <T> TypedQuery<T> readOnly(TypedQuery<T> query) {
+        return query.setHint(QueryHints.READ_ONLY, true)
+                .setHint(QueryHints.FLUSH_MODE, FlushMode.MANUAL);
+    }
+
     /**
      * JPA String
      * 권장하는 방법 아님 (실수할 가능성이 많음)
@@ -109,7 +290,7 @@ public class OrderRepository {
             jpql += " m.name like :name";
         }
 
-        TypedQuery<Order> query = em.createQuery(jpql, Order.class).setMaxResults(1000);
+        TypedQuery<Order> query = readOnly(em.createQuery(jpql, Order.class)).setMaxResults(1000);
 
         if (orderSearch.getOrderStatus() != null) {
             query = query.setParameter("status", orderSearch.getOrderStatus());
@@ -155,36 +336,92 @@ public class OrderRepository {
         return query.getResultList();
     }
 
-    // LAZY 로딩의 N+1 문제 해결 방법 : JPQL의 fetch join
-    public List<Order> findAllWithMemberDelivery() {
-        return em.createQuery("select o from Order o " +
-                " join fetch o.member m" +
-                " join fetch o.delivery d", Order.class).getResultList();
+    /**
+     * 주문 엔티티 조회는 여기로 모으고, 무엇을 같이 읽을지는 fetch plan 이름으로 정한다. (FetchPlanRegistry)
+     * 1. 루트 쿼리: 검색 조건 + 정렬 + 페이징, XToOne 만 엔티티 그래프로 페치 조인한다. -> XToOne 은 페치 조인해도 SQL 에서 페이징 된다.
+     * 2. 컬렉션: plan 의 컬렉션 그래프로 두 번째 쿼리에서 페치 조인한다.
+     *    컬렉션을 루트 쿼리에서 페치 조인하면 페이징이 메모리에서 일어나기 때문에(out of memory) 루트 쿼리와 나눈다.
+     *    두 번째 쿼리는 이미 영속성 컨텍스트에 있는 주문의 컬렉션을 채우기만 한다.
+     * 메트릭은 읽은 그래프를 쓰는 곳(OrderQueryService)에서 FetchPlanRegistry.record 로 남긴다. (지연 로딩까지 세야 해서)
+     */
+    public List<Order> findAll(OrderSearch orderSearch, String planName, long offset, int limit) {
+        FetchPlan plan = fetchPlans.get(planName);
+        return load(plan, rootQuery(plan, searchConditions(orderSearch, orderSearch.getOrderStatus()))
+                .orderBy(order.id.desc())
+                .offset(offset)
+                .limit(limit)
+                .fetch(), null);
     }
 
-    // XToOne 관계는 페치 조인을 하더라도 페이징이 잘 된다.
-    public List<Order> findAllWithMemberDelivery(int offset, int limit) {
-        return em.createQuery("select o from Order o " +
-                " join fetch o.member m" +
-                " join fetch o.delivery d", Order.class)
-                .setFirstResult(offset)
-                .setMaxResults(limit)
-                .getResultList();
+    /**
+     * 페이징 없이 검색 조건에 맞는 주문 전체
+     * SUBSELECT plan 은 id 목록 대신 같은 검색 조건으로 컬렉션을 읽는다.
+     */
+    public List<Order> findAll(OrderSearch orderSearch, String planName) {
+        FetchPlan plan = fetchPlans.get(planName);
+        BooleanExpression[] conditions = searchConditions(orderSearch, orderSearch.getOrderStatus());
+        return load(plan, rootQuery(plan, conditions)
+                .orderBy(order.id.desc())
+                .fetch(), conditions);
+    }
+
+    /**
+     * 키셋(seek) 페이징
+     * offset 방식은 DB가 offset 만큼의 row를 읽고 버려야 해서 뒤 페이지로 갈수록 느려진다.
+     * 마지막으로 조회한 order_id 이후부터 PK 순서로 읽으면 몇 번째 페이지든 인덱스에서 바로 시작 위치를 찾는다.
+     */
+    public List<Order> findAllAfter(Long lastOrderId, OrderStatus status, String planName, int limit) {
+        FetchPlan plan = fetchPlans.get(planName);
+        return load(plan, rootQuery(plan, idGt(lastOrderId), statusEq(status))
+                .orderBy(order.id.asc())
+                .limit(limit)
+                .fetch(), null);
     }
 
+    private JPAQuery<Order> rootQuery(FetchPlan plan, BooleanExpression... conditions) {
+        return withGraph(query.selectFrom(order)
+                .join(order.member, member)
+                .where(conditions), plan.getRootGraph());
+    }
 
-    // JPA distinct 기능
-    // 1. DB SQL에 distinct 추가
-    // 2. 엔티티 중복된게 있으면 중복 제거 해서 컬렉션에 담아줌.
-    // 단점으로 oneToMany에 대해서 페치 조인을 하면 페이징이 불가능하다..!!!! 메모리에서 페이징 처리를 해서 out of memory 날 가능성이 높다..
-    public List<Order> findAllWithItem() {
-        return em.createQuery(
-                "select distinct o from Order o" +
-                        " join fetch o.member m" +
-                        " join fetch o.delivery d " +
-                        " join fetch o.orderItems oi " +
-                        " join fetch  oi.item i", Order.class)
-                .getResultList();
+    /**
+     * conditions 가 있으면 (페이징 없는 SUBSELECT) 루트 쿼리와 같은 조건으로, 없으면 읽은 주문 id 로 컬렉션을 읽는다.
+     */
+    private List<Order> load(FetchPlan plan, List<Order> orders, BooleanExpression[] conditions) {
+        if (orders.isEmpty() || plan.getCollectionFetch() == FetchPlan.CollectionFetch.NONE) {
+            return orders;
+        }
+
+        List<Long> orderIds = orders.stream().map(Order::getId).collect(Collectors.toList());
+        if (plan.getCollectionFetch() == FetchPlan.CollectionFetch.BATCH) {
+            inListLoader.load(orderIds, plan.getBatchSize(), false, ids -> fetchCollections(plan, order.id.in(ids)));
+        } else if (conditions != null) {
+            fetchCollections(plan, conditions);
+        } else {
+            fetchCollections(plan, order.id.in(orderIds));
+        }
+        return orders;
+    }
+
+    // 결과는 버린다. 페치 조인으로 이미 관리 중인 주문의 컬렉션이 초기화된다. (중복 row 도 상관없어서 distinct X)
+    private List<Order> fetchCollections(FetchPlan plan, BooleanExpression... conditions) {
+        return withGraph(query.selectFrom(order)
+                .join(order.member, member)
+                .where(conditions), plan.getCollectionGraph())
+                .fetch();
+    }
+
+    private <T> JPAQuery<T> withGraph(JPAQuery<T> query, String graphName) {
+        return query.setHint(FETCH_GRAPH, em.getEntityGraph(graphName))
+                .setHint(QueryHints.READ_ONLY, true)
+                .setHint(QueryHints.FLUSH_MODE, FlushMode.MANUAL);
+    }
+
+    private BooleanExpression idGt(Long lastOrderId) {
+        if (lastOrderId == null) {
+            return null;
+        }
+        return order.id.gt(lastOrderId);
     }
 
 
@@ -201,4 +438,58 @@ public class OrderRepository {
 //    }
 
 
+
+    /**
+     * 취소할 주문 id (주문 상태인 것만, 주문 상태 외의 검색 조건)
+     */
+    public List<Long> findIdsToCancel(OrderSearch orderSearch, int limit) {
+        return query.select(order.id)
+                .from(order)
+                .join(order.member, member)
+                .where(searchConditions(orderSearch, OrderStatus.ORDER))
+                .orderBy(order.id.asc())
+                .limit(limit)
+                .fetch();
+    }
+
+    /**
+     * 주문 취소 검증용 [주문 id, 주문 상태, 배송 상태] 조회
+     * 주문 row를 잠가서 같은 주문을 동시에 취소해도 재고가 두 번 원복되지 않는다.
+     */
+    public List<Object[]> findCancelStatesForUpdate(List<Long> orderIds) {
+        return em.createQuery(
+                        "select o.id, o.status, d.status from Order o" +
+                                " join o.delivery d" +
+                                " where o.id in :orderIds" +
+                                " order by o.id", Object[].class)
+                .setParameter("orderIds", orderIds)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+    }
+
+    /**
+     * 주문들의 상품별 [상품 id, 수량 합]
+     */
+    public List<Object[]> findItemQuantitiesOfOrders(List<Long> orderIds) {
+        return em.createQuery(
+                        "select oi.item.id, sum(oi.count) from OrderItem oi" +
+                                " where oi.order.id in :orderIds" +
+                                " group by oi.item.id", Object[].class)
+                .setParameter("orderIds", orderIds)
+                .getResultList();
+    }
+
+    // 벌크 연산: 영속성 컨텍스트를 거치지 않는다.
+    public int markCanceled(List<Long> orderIds) {
+        return em.createQuery("update Order o set o.status = :status where o.id in :orderIds")
+                .setParameter("status", OrderStatus.CANCEL)
+                .setParameter("orderIds", orderIds)
+                .executeUpdate();
+    }
+
+    // 벌크 연산 후에 영속성 컨텍스트에 남은 엔티티가 DB와 달라지지 않도록 비운다. (@Modifying(clearAutomatically = true) 와 같은 역할)
+    public void flushAndClear() {
+        em.flush();
+        em.clear();
+    }
 }
@@ -3,10 +3,29 @@ package jpabook.jpashop.repository;
 import jpabook.jpashop.domain.OrderStatus;
 import lombok.Getter;
 import lombok.Setter;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.util.StringUtils;
+
+import java.time.LocalDate;
 
 @Getter @Setter
 public class OrderSearch {
 
     private String memberName;
     private OrderStatus orderStatus; // 주문상태 [ORDER, CANCEL]
+    private String itemName; // 주문상품 중 하나라도 이름에 포함되면
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate orderDateFrom; // 주문일 (이 날짜 포함)
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate orderDateTo; // 주문일 (이 날짜 포함)
+
+    // 주문상태 말고 주문을 좁히는 조건이 하나라도 있는지 (조건 없는 대량 취소 방지)
+    public boolean hasConditions() {
+        return StringUtils.hasText(memberName)
+                || StringUtils.hasText(itemName)
+                || orderDateFrom != null
+                || orderDateTo != null;
+    }
 }
@@ -0,0 +1,16 @@
+package jpabook.jpashop.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 검색 조건에 맞는 주문 전체의 건수 / 금액 합계
+ * 취소된 주문은 건수에는 들어가고 (canceledCount 로 따로), 금액 합계에서는 빠진다. (취소해도 total_price 는 남는다)
+ */
+@Getter
+@AllArgsConstructor
+public class OrderTotals {
+    private final long orderCount;
+    private final long canceledCount;
+    private final long totalPrice; // 취소 주문 제외
+}
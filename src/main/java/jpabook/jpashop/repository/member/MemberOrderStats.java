@@ -0,0 +1,43 @@
+package jpabook.jpashop.repository.member;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 회원별 주문 통계 (member_order_stats)
+ * Member.orders 컬렉션을 통째로 로딩하지 않고 주문 수, 누적 금액, 마지막 주문일을 보여주기 위해
+ * 주문 / 취소할 때 같은 트랜잭션에서 더하고 뺀다. (MemberOrderStatsRepository)
+ */
+@Entity
+@Table(name = "member_order_stats")
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class MemberOrderStats {
+
+    @Id
+    @Column(name = "member_id")
+    private Long memberId; // 회원 id를 그대로 쓴다.
+
+    private long orderCount; // 주문 상태인 주문 수
+    private long canceledCount; // 취소된 주문 수
+    private long totalSpent; // 취소되지 않은 주문 금액 합
+    private LocalDateTime lastOrderDate; // 마지막 주문일 (취소 포함)
+
+    public static MemberOrderStats empty(Long memberId) {
+        MemberOrderStats stats = new MemberOrderStats();
+        stats.memberId = memberId;
+        return stats;
+    }
+
+    public static MemberOrderStats firstOrder(Long memberId, int totalPrice, LocalDateTime orderDate) {
+        MemberOrderStats stats = empty(memberId);
+        stats.orderCount = 1;
+        stats.totalSpent = totalPrice;
+        stats.lastOrderDate = orderDate;
+        return stats;
+    }
+}
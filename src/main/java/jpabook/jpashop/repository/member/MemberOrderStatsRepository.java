@@ -0,0 +1,125 @@
+package jpabook.jpashop.repository.member;
+
+import jpabook.jpashop.domain.Order;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.query.NativeQuery;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.util.List;
+
+/**
+ * 회원별 주문 통계
+ * 읽고 고쳐서 저장하면 같은 회원의 동시 주문끼리 덮어쓰기 때문에 update ... set x = x + ? 로 DB에서 더한다.
+ */
+@Repository
+@RequiredArgsConstructor
+public class MemberOrderStatsRepository {
+
+    private final EntityManager em;
+
+    public void save(MemberOrderStats stats) {
+        em.persist(stats);
+    }
+
+    public MemberOrderStats findOne(Long memberId) {
+        return em.find(MemberOrderStats.class, memberId);
+    }
+
+    /**
+     * 주문 1건 반영
+     * 통계 row 는 가입할 때 (MemberService.join) 나 rebuild 에서 만든다.
+     * 그 밖에서 만든 회원이라 row 가 없으면 회원 row 를 잠그고 다시 update 해본 뒤에 만든다.
+     * -> 같은 회원의 첫 주문이 동시에 들어와도 둘 다 persist 해서 키가 겹치지 않는다. (뒤에 온 쪽은 앞의 커밋을 보고 update 한다)
+     */
+    public void recordOrder(Order order) {
+        if (addOrder(order) == 0) {
+            em.lock(order.getMember(), LockModeType.PESSIMISTIC_WRITE);
+            if (addOrder(order) == 0) {
+                em.persist(MemberOrderStats.firstOrder(order.getMember().getId(), order.getTotalPrice(), order.getOrderDate()));
+            }
+        }
+    }
+
+    private int addOrder(Order order) {
+        return em.createQuery(
+                        "update MemberOrderStats s" +
+                                " set s.orderCount = s.orderCount + 1," +
+                                " s.totalSpent = s.totalSpent + :totalPrice," +
+                                " s.lastOrderDate = case when s.lastOrderDate is null or s.lastOrderDate < :orderDate then :orderDate else s.lastOrderDate end" +
+                                " where s.memberId = :memberId")
+                .setParameter("totalPrice", (long) order.getTotalPrice())
+                .setParameter("orderDate", order.getOrderDate())
+                .setParameter("memberId", order.getMember().getId())
+                .executeUpdate();
+    }
+
+    public void recordCancel(Order order) {
+        em.createQuery(
+                        "update MemberOrderStats s" +
+                                " set s.orderCount = s.orderCount - 1," +
+                                " s.canceledCount = s.canceledCount + 1," +
+                                " s.totalSpent = s.totalSpent - :totalPrice" +
+                                " where s.memberId = :memberId")
+                .setParameter("totalPrice", (long) order.getTotalPrice())
+                .setParameter("memberId", order.getMember().getId())
+                .executeUpdate();
+    }
+
+    /**
+     * 대량 취소: 주문들을 회원별로 묶어서 update 한 번으로 뺀다. (아직 주문 상태인 주문 id만 넘겨야 한다)
+     */
+    public int recordCancels(List<Long> orderIds) {
+        return em.createNativeQuery(
+                        "update member_order_stats s" +
+                                " set order_count = order_count - (" +
+                                "   select count(*) from orders o where o.member_id = s.member_id and o.order_id in (:orderIds))," +
+                                " canceled_count = canceled_count + (" +
+                                "   select count(*) from orders o where o.member_id = s.member_id and o.order_id in (:orderIds))," +
+                                " total_spent = total_spent - (" +
+                                "   select coalesce(sum(o.total_price), 0) from orders o where o.member_id = s.member_id and o.order_id in (:orderIds))" +
+                                " where s.member_id in (select o.member_id from orders o where o.order_id in (:orderIds))")
+                .setParameter("orderIds", orderIds)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(MemberOrderStats.class)
+                .executeUpdate();
+    }
+
+    /**
+     * orders 에서 통계를 통째로 다시 만든다. (JDBC로 넣은 데이터, 어긋난 통계)
+     */
+    public int rebuild() {
+        em.createNativeQuery("delete from member_order_stats")
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(MemberOrderStats.class)
+                .executeUpdate();
+        return em.createNativeQuery(
+                        "insert into member_order_stats (member_id, order_count, canceled_count, total_spent, last_order_date)" +
+                                " select m.member_id," +
+                                "   count(case when o.status = 'ORDER' then 1 end)," +
+                                "   count(case when o.status = 'CANCEL' then 1 end)," +
+                                "   coalesce(sum(case when o.status = 'ORDER' then o.total_price else 0 end), 0)," +
+                                "   max(o.order_date)" +
+                                " from member m" +
+                                " left join orders o on o.member_id = m.member_id" +
+                                " group by m.member_id")
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(MemberOrderStats.class)
+                .executeUpdate();
+    }
+
+    /**
+     * 회원 한 페이지 + 통계를 쿼리 한 번으로 (회원 id 순)
+     */
+    public List<MemberStatsDto> findStatsPage(int offset, int limit) {
+        return em.createQuery(
+                        "select new jpabook.jpashop.repository.member.MemberStatsDto(m.id, m.name, s.orderCount, s.canceledCount, s.totalSpent, s.lastOrderDate)" +
+                                " from Member m" +
+                                " left join MemberOrderStats s on s.memberId = m.id" +
+                                " order by m.id", MemberStatsDto.class)
+                .setFirstResult(offset)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
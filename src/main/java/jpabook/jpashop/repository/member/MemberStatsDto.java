@@ -0,0 +1,25 @@
+package jpabook.jpashop.repository.member;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class MemberStatsDto {
+    private Long memberId;
+    private String name;
+    private long orderCount;
+    private long canceledCount;
+    private long totalSpent;
+    private LocalDateTime lastOrderDate;
+
+    // 통계 row가 없는 회원은 left join 결과가 null
+    public MemberStatsDto(Long memberId, String name, Long orderCount, Long canceledCount, Long totalSpent, LocalDateTime lastOrderDate) {
+        this.memberId = memberId;
+        this.name = name;
+        this.orderCount = orderCount == null ? 0 : orderCount;
+        this.canceledCount = canceledCount == null ? 0 : canceledCount;
+        this.totalSpent = totalSpent == null ? 0 : totalSpent;
+        this.lastOrderDate = lastOrderDate;
+    }
+}
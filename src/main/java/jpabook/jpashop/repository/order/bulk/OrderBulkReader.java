@@ -0,0 +1,179 @@
+package jpabook.jpashop.repository.order.bulk;
+
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.support.FetchPlanRegistry;
+import jpabook.jpashop.repository.support.InListLoader;
+import jpabook.jpashop.repository.support.PersistenceContextGuard;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.query.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 내보내기 / 리포트용 주문 대량 조회
+ *
+ * OrderRepository 로 수십만 건을 읽으면 영속성 컨텍스트에 엔티티와 스냅샷이 계속 쌓여서 flush 변경 감지와 1차 캐시가 힙, GC 를 다 잡아먹는다.
+ * 여기서는 StatelessSession 으로 읽는다. -> 1차 캐시, 스냅샷, 변경 감지, 지연 로딩이 없고 읽은 엔티티는 바로 버려진다.
+ * 1. 주문 + 회원 + 배송(XToOne)을 페치 조인해서 forward-only 커서로 order id 순서대로 읽는다.
+ * 2. chunkSize 건이 모일 때마다 그 주문들의 주문상품 + 상품을 IN 절 한 번으로 읽어서 붙인다. (컬렉션 N + 1 X)
+ *
+ * StatelessSession 은 현재 트랜잭션의 커넥션을 같이 쓴다. (읽기 전용 트랜잭션이면 복제본에서 읽는다.)
+ */
+@Repository
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class OrderBulkReader {
+
+    private final EntityManager em;
+    private final InListLoader inListLoader;
+    private final OrderRepository orderRepository;
+    private final PersistenceContextGuard persistenceContextGuard;
+    private final FetchPlanRegistry fetchPlans;
+
+    public void forEach(OrderStatus status, int chunkSize, Consumer<OrderBulkRow> consumer) {
+        try (Stream<OrderBulkRow> rows = stream(status, chunkSize)) {
+            rows.forEach(consumer);
+        }
+    }
+
+    /**
+     * 트랜잭션 안에서 호출하고 다 읽은 뒤에는 반드시 닫아야 한다. (try-with-resources, 커서 + StatelessSession)
+     */
+    @Transactional(readOnly = true, propagation = Propagation.MANDATORY)
+    public Stream<OrderBulkRow> stream(OrderStatus status, int chunkSize) {
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        StatelessSession stateless = session.getFactory().openStatelessSession(session.connection());
+        try {
+            Query<Order> query = stateless.createQuery("select o from Order o" +
+                            " join fetch o.member m" +
+                            " join fetch o.delivery d" +
+                            (status != null ? " where o.status = :status" : "") +
+                            " order by o.id", Order.class)
+                    .setFetchSize(chunkSize)
+                    .setReadOnly(true);
+            if (status != null) {
+                query.setParameter("status", status);
+            }
+            OrderChunks chunks = new OrderChunks(stateless, query.scroll(ScrollMode.FORWARD_ONLY), chunkSize);
+            return StreamSupport.stream(chunks, false).onClose(chunks::close);
+        } catch (RuntimeException e) {
+            stateless.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 비교용 일반 경로: 영속성 컨텍스트로 키셋 페이징 (v3.1 과 같은 withItems fetch plan)
+     * 청크마다 PersistenceContextGuard.checkpoint() 를 불러서 auto-clear 면 영속성 컨텍스트를 비운다.
+     * fetch plan 메트릭은 청크 단위로 남는다. (시간에는 consumer 처리도 들어간다.)
+     */
+    public void forEachManaged(OrderStatus status, int chunkSize, Consumer<OrderBulkRow> consumer) {
+        Long lastOrderId = null;
+        while (true) {
+            Long after = lastOrderId;
+            List<Order> orders = fetchPlans.record(FetchPlanRegistry.WITH_ITEMS, () -> {
+                List<Order> chunk = orderRepository.findAllAfter(after, status, FetchPlanRegistry.WITH_ITEMS, chunkSize);
+                for (Order order : chunk) {
+                    consumer.accept(new OrderBulkRow(order, order.getOrderItems()));
+                }
+                return chunk;
+            });
+            if (orders.isEmpty()) {
+                return;
+            }
+            lastOrderId = orders.get(orders.size() - 1).getId();
+            persistenceContextGuard.checkpoint(em);
+        }
+    }
+
+    /**
+     * 커서에서 주문을 chunkSize 건씩 꺼내고 주문상품을 붙여서 한 건씩 내보낸다.
+     * 메모리에는 현재 청크만 남는다.
+     */
+    private class OrderChunks extends Spliterators.AbstractSpliterator<OrderBulkRow> {
+
+        private final StatelessSession stateless;
+        private final ScrollableResults orders;
+        private final int chunkSize;
+        private final Deque<OrderBulkRow> buffer = new ArrayDeque<>();
+        private boolean exhausted;
+
+        OrderChunks(StatelessSession stateless, ScrollableResults orders, int chunkSize) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.stateless = stateless;
+            this.orders = orders;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super OrderBulkRow> action) {
+            if (buffer.isEmpty() && !exhausted) {
+                fill();
+            }
+            OrderBulkRow row = buffer.poll();
+            if (row == null) {
+                return false;
+            }
+            action.accept(row);
+            return true;
+        }
+
+        private void fill() {
+            Map<Long, Order> chunk = new LinkedHashMap<>();
+            while (chunk.size() < chunkSize && orders.next()) {
+                Order order = (Order) orders.get(0);
+                chunk.put(order.getId(), order);
+            }
+            if (chunk.size() < chunkSize) {
+                exhausted = true;
+            }
+            if (chunk.isEmpty()) {
+                return;
+            }
+
+            Map<Long, List<OrderItem>> itemsByOrder = new LinkedHashMap<>();
+            List<Object[]> rows = inListLoader.loadInCurrentTransaction(new ArrayList<>(chunk.keySet()), ids ->
+                    stateless.createQuery("select oi.order.id, oi from OrderItem oi" +
+                                    " join fetch oi.item i" +
+                                    " where oi.order.id in :orderIds" +
+                                    " order by oi.id", Object[].class)
+                            .setParameterList("orderIds", ids)
+                            .setReadOnly(true)
+                            .list());
+            for (Object[] row : rows) {
+                itemsByOrder.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add((OrderItem) row[1]);
+            }
+
+            chunk.forEach((id, order) -> buffer.add(new OrderBulkRow(order, itemsByOrder.getOrDefault(id, List.of()))));
+        }
+
+        void close() {
+            try {
+                orders.close();
+            } finally {
+                stateless.close(); // 넘겨받은 커넥션은 닫지 않는다. (트랜잭션이 돌려준다.)
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package jpabook.jpashop.repository.order.bulk;
+
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 대량 조회 한 건: 주문(회원, 배송 포함) + 주문상품(상품 포함)
+ * StatelessSession 으로 읽은 주문은 컬렉션을 채우지 않기 때문에 주문상품을 따로 들고 다닌다.
+ */
+@Getter
+@AllArgsConstructor
+public class OrderBulkRow {
+    private final Order order;
+    private final List<OrderItem> orderItems;
+}
@@ -1,22 +1,32 @@
 package jpabook.jpashop.repository.order.query;
 
+import jpabook.jpashop.repository.support.InListLoader;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.annotations.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * 관심사의 분리를 위해서 화면이나 API 관련된 쿼리를 할 때 는 이렇게 따로 repository를 두는 것이 좋다.
  * 핵심 비지니스 로직은 따로 OrderRepository에 두고..
+ * 조회 전용이라 읽기 전용 트랜잭션으로 묶는다. -> 읽기 / 쓰기 분리를 켜면 복제본에서 읽는다. (DataSourceRouter)
  */
 @Repository
+@Transactional(readOnly = true)
 @RequiredArgsConstructor
 public class OrderQueryRepository {
 
     private final EntityManager em;
+    private final InListLoader inListLoader;
 
     public List<OrderQueryDto> findOrderQueryDtos() {
         List<OrderQueryDto> result = findOrders(); //Query 1번
@@ -40,13 +50,28 @@ public class OrderQueryRepository {
         return result;
     }
 
+    /**
+     * v5를 청크 크기, 병렬 여부를 지정해서 실행 (벤치마크용)
+     * chunkSize가 0이면 예전처럼 IN 절 하나로 전부 조회한다.
+     */
+    public List<OrderQueryDto> findAllByDto_optimization(int chunkSize, boolean parallel) {
+        List<OrderQueryDto> result = findOrders();
+
+        List<Long> orderIds = toOrderIds(result);
+        int size = chunkSize > 0 ? chunkSize : Math.max(orderIds.size(), 1);
+        List<OrderItemQueryDto> orderItems = inListLoader.load(orderIds, size, parallel, this::findOrderItemsIn);
+        Map<Long, List<OrderItemQueryDto>> orderItemMap = orderItems.stream()
+                .collect(Collectors.groupingBy(OrderItemQueryDto::getOrderId));
+
+        result.forEach(o -> o.setOrderItems(orderItemMap.get(o.getOrderId())));
+
+        return result;
+    }
+
+    // 주문이 수만 건이 되면 IN 절 하나에 id가 전부 들어가서 쿼리가 거대해지고 길이마다 플랜이 새로 만들어진다.
+    // -> InListLoader로 고정 크기 청크로 나눠서 조회
     private Map<Long, List<OrderItemQueryDto>> findOrderItemMap(List<Long> orderIds) {
-        List<OrderItemQueryDto> orderItems = em.createQuery(
-                        "select new jpabook.jpashop.repository.order.query.OrderItemQueryDto(oi.order.id,i.name, oi.orderPrice, oi.count) from OrderItem oi " +
-                                " join oi.item i " +
-                                " where oi.order.id in :orderIds", OrderItemQueryDto.class)
-                .setParameter("orderIds", orderIds)
-                .getResultList();
+        List<OrderItemQueryDto> orderItems = inListLoader.load(orderIds, this::findOrderItemsIn);
 
         Map<Long, List<OrderItemQueryDto>> orderItemMap = orderItems.stream()
                 .collect(Collectors.groupingBy(OrderItemQueryDto::getOrderId));
@@ -60,6 +85,15 @@ public class OrderQueryRepository {
         return orderIds;
     }
 
+    private List<OrderItemQueryDto> findOrderItemsIn(List<Long> orderIds) {
+        return em.createQuery(
+                        "select new jpabook.jpashop.repository.order.query.OrderItemQueryDto(oi.order.id,i.name, oi.orderPrice, oi.count) from OrderItem oi " +
+                                " join oi.item i " +
+                                " where oi.order.id in :orderIds", OrderItemQueryDto.class)
+                .setParameter("orderIds", orderIds)
+                .getResultList();
+    }
+
     private List<OrderItemQueryDto> findOrderItems(Long orderId) {
         return em.createQuery(
                         "select new jpabook.jpashop.repository.order.query.OrderItemQueryDto(oi.order.id,i.name, oi.orderPrice, oi.count) from OrderItem oi " +
@@ -88,4 +122,42 @@ public class OrderQueryRepository {
                                 " join oi.item i", OrderFlatDto.class)
                 .getResultList();
     }
+
+    /**
+     * v6 플랫 조회를 스트리밍으로 처리
+     * List로 전부 메모리에 올리지 않고 forward-only 커서(ScrollableResults)로 fetchSize 만큼씩 읽는다.
+     * order id 순으로 정렬되어 있기 때문에 order id가 바뀌는 순간 이전 주문은 완성된 것이므로 바로 consumer에 넘긴다.
+     * -> 메모리에는 주문 1건 분량만 남는다.
+     * 스트리밍 응답은 별도 스레드에서 실행되기 때문에 커서가 열려있는 동안 트랜잭션(커넥션)을 직접 잡아준다. (클래스의 읽기 전용 트랜잭션)
+     */
+    public void streamAllByDto_flat(int fetchSize, Consumer<OrderQueryDto> consumer) {
+        try (Stream<OrderFlatDto> flats = em.createQuery(
+                        "select new jpabook.jpashop.repository.order.query.OrderFlatDto(o.id, m.name, o.orderDate, o.status,d.address, i.name, oi.orderPrice, oi.count)" +
+                                " from Order o " +
+                                " join o.member m " +
+                                " join o.delivery d" +
+                                " join o.orderItems oi " +
+                                " join oi.item i" +
+                                " order by o.id", OrderFlatDto.class)
+                .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                .getResultStream()) {
+
+            OrderQueryDto current = null;
+            Iterator<OrderFlatDto> iterator = flats.iterator();
+            while (iterator.hasNext()) {
+                OrderFlatDto flat = iterator.next();
+                if (current == null || !current.getOrderId().equals(flat.getOrderId())) {
+                    if (current != null) {
+                        consumer.accept(current); // 이전 주문은 완성됐으므로 내보낸다.
+                    }
+                    current = new OrderQueryDto(flat.getOrderId(), flat.getName(), flat.getOrderDate(), flat.getOrderStatus(), flat.getAddress(), new ArrayList<>());
+                }
+                current.getOrderItems().add(new OrderItemQueryDto(flat.getOrderId(), flat.getItemName(), flat.getOrderPrice(), flat.getCount()));
+            }
+
+            if (current != null) {
+                consumer.accept(current);
+            }
+        }
+    }
 }
@@ -2,11 +2,13 @@ package jpabook.jpashop.repository.order.simplequery;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
 import java.util.List;
 
 @Repository
+@Transactional(readOnly = true) // 조회 전용, 읽기 / 쓰기 분리를 켜면 복제본에서 읽는다.
 @RequiredArgsConstructor
 public class OrderSimpleQueryRepository {
 
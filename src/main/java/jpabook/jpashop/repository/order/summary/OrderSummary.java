@@ -0,0 +1,56 @@
+package jpabook.jpashop.repository.order.summary;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 주문 목록 조회용 읽기 모델 (order_summary)
+ * 주문 + 회원 이름 + 배송 주소 + 상태를 한 row에 펼쳐서 저장해두고 조회할 때 조인 없이 테이블 하나만 읽는다.
+ * 주문 / 취소 / 회원 이름 변경 시점에 OrderSummaryRepository로 같이 갱신한다. (같은 트랜잭션)
+ */
+@Entity
+@Table(name = "order_summary", indexes = @Index(name = "idx_order_summary_member", columnList = "member_id, order_id"))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class OrderSummary {
+
+    @Id
+    @Column(name = "order_id")
+    private Long orderId; // 주문 id를 그대로 쓴다.
+
+    @Column(name = "member_id")
+    private Long memberId;
+
+    private String memberName;
+
+    @Embedded
+    private Address address; // 배송 주소
+
+    private LocalDateTime orderDate;
+
+    @Enumerated(EnumType.STRING)
+    private OrderStatus status;
+
+    private int totalPrice;
+    private int itemCount; // 주문상품 수
+
+    public static OrderSummary of(Order order) {
+        OrderSummary summary = new OrderSummary();
+        summary.orderId = order.getId();
+        summary.memberId = order.getMember().getId();
+        summary.memberName = order.getMember().getName();
+        summary.address = order.getDelivery().getAddress();
+        summary.orderDate = order.getOrderDate();
+        summary.status = order.getStatus();
+        summary.totalPrice = order.getTotalPrice();
+        summary.itemCount = order.getOrderItems().size();
+        return summary;
+    }
+}
@@ -0,0 +1,23 @@
+package jpabook.jpashop.repository.order.summary;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 읽기 모델과 원본 테이블 비교 결과 (종류별로 최대 OrderSummaryRepository.CHECK_SAMPLE_SIZE 건의 주문 id)
+ */
+@Getter
+@AllArgsConstructor
+public class OrderSummaryCheckResult {
+    private final List<Long> missingOrderIds; // 주문은 있는데 요약이 없음
+    private final List<Long> orphanOrderIds; // 요약은 있는데 주문이 없음
+    private final List<Long> staleOrderIds; // 회원 이름, 주소, 상태, 금액 등이 다름
+    private final List<Long> lineMismatchOrderIds; // 주문상품이 다름
+
+    public boolean isConsistent() {
+        return missingOrderIds.isEmpty() && orphanOrderIds.isEmpty()
+                && staleOrderIds.isEmpty() && lineMismatchOrderIds.isEmpty();
+    }
+}
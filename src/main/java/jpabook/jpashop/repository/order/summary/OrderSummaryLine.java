@@ -0,0 +1,44 @@
+package jpabook.jpashop.repository.order.summary;
+
+import jpabook.jpashop.domain.OrderItem;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+
+/**
+ * 주문 목록 조회용 읽기 모델의 주문상품 (order_summary_line)
+ * 상품 이름을 같이 저장해서 item 테이블을 조인하지 않는다.
+ */
+@Entity
+@Table(name = "order_summary_line", indexes = @Index(name = "idx_order_summary_line_order", columnList = "order_id"))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class OrderSummaryLine {
+
+    @Id
+    @Column(name = "order_item_id")
+    private Long orderItemId; // 주문상품 id를 그대로 쓴다.
+
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @Column(name = "item_id")
+    private Long itemId;
+
+    private String itemName;
+    private int orderPrice;
+    private int count;
+
+    public static OrderSummaryLine of(OrderItem orderItem) {
+        OrderSummaryLine line = new OrderSummaryLine();
+        line.orderItemId = orderItem.getId();
+        line.orderId = orderItem.getOrder().getId();
+        line.itemId = orderItem.getItem().getId();
+        line.itemName = orderItem.getItem().getName();
+        line.orderPrice = orderItem.getOrderPrice();
+        line.count = orderItem.getCount();
+        return line;
+    }
+}
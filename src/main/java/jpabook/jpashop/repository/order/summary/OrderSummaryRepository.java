@@ -0,0 +1,206 @@
+package jpabook.jpashop.repository.order.summary;
+
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.order.query.OrderItemQueryDto;
+import jpabook.jpashop.repository.order.query.OrderQueryDto;
+import jpabook.jpashop.repository.order.simplequery.OrderSimpleQueryDto;
+import jpabook.jpashop.repository.support.InListLoader;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.query.NativeQuery;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 주문 요약 읽기 모델 (order_summary, order_summary_line)
+ * 쓰기: 주문 / 취소 / 이름 변경 시점에 원본과 같은 트랜잭션에서 갱신
+ * 읽기: 테이블 하나씩만 읽는다. (조인 X)
+ */
+@Repository
+@RequiredArgsConstructor
+public class OrderSummaryRepository {
+
+    public static final int CHECK_SAMPLE_SIZE = 100;
+
+    private final EntityManager em;
+    private final InListLoader inListLoader;
+
+    //==갱신==//
+
+    // 주문 저장(persist) 이후에 호출해야 한다. (주문, 주문상품 id 필요)
+    public void add(Order order) {
+        em.persist(OrderSummary.of(order));
+        for (OrderItem orderItem : order.getOrderItems()) {
+            em.persist(OrderSummaryLine.of(orderItem));
+        }
+    }
+
+    public int markCanceled(List<Long> orderIds) {
+        return em.createQuery("update OrderSummary s set s.status = :status where s.orderId in :orderIds")
+                .setParameter("status", OrderStatus.CANCEL)
+                .setParameter("orderIds", orderIds)
+                .executeUpdate();
+    }
+
+    public int updateMemberName(Long memberId, String name) {
+        return em.createQuery("update OrderSummary s set s.memberName = :name where s.memberId = :memberId")
+                .setParameter("name", name)
+                .setParameter("memberId", memberId)
+                .executeUpdate();
+    }
+
+    public int updateItemName(Long itemId, String name) {
+        return em.createQuery("update OrderSummaryLine l set l.itemName = :name where l.itemId = :itemId")
+                .setParameter("name", name)
+                .setParameter("itemId", itemId)
+                .executeUpdate();
+    }
+
+    /**
+     * 원본 테이블에서 읽기 모델을 통째로 다시 만든다. (insert ... select 두 문장)
+     * 트랜잭션이 커밋되기 전까지 다른 트랜잭션은 이전 읽기 모델을 본다.
+     * @return 만들어진 주문 요약 수
+     */
+    public int rebuild() {
+        executeNative("delete from order_summary_line");
+        executeNative("delete from order_summary");
+        int summaries = executeNative(
+                "insert into order_summary (order_id, member_id, member_name, city, street, zipcode, order_date, status, total_price, item_count)" +
+                        " select o.order_id, m.member_id, m.name, d.city, d.street, d.zipcode, o.order_date, o.status, o.total_price," +
+                        "   (select count(*) from order_item oi where oi.order_id = o.order_id)" +
+                        " from orders o" +
+                        " join member m on m.member_id = o.member_id" +
+                        " join delivery d on d.delivery_id = o.delivery_id");
+        executeNative(
+                "insert into order_summary_line (order_item_id, order_id, item_id, item_name, order_price, count)" +
+                        " select oi.order_item_id, oi.order_id, i.item_id, i.name, oi.order_price, oi.count" +
+                        " from order_item oi" +
+                        " join item i on i.item_id = oi.item_id");
+        return summaries;
+    }
+
+    private int executeNative(String sql) {
+        return em.createNativeQuery(sql)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(OrderSummary.class) // 다른 엔티티의 2차 캐시는 건드리지 않는다.
+                .addSynchronizedEntityClass(OrderSummaryLine.class)
+                .executeUpdate();
+    }
+
+    //==조회==// 쓰기 트랜잭션 안에서 부르면 그 트랜잭션에 참여하고, 컨트롤러에서 바로 부르면 읽기 전용 트랜잭션 (복제본)
+
+    @Transactional(readOnly = true)
+    public List<OrderSimpleQueryDto> findSimpleDtos() {
+        return em.createQuery(
+                        "select new jpabook.jpashop.repository.order.simplequery.OrderSimpleQueryDto(s.orderId, s.memberName, s.orderDate, s.status, s.address)" +
+                                " from OrderSummary s", OrderSimpleQueryDto.class)
+                .getResultList();
+    }
+
+    /**
+     * 회원의 주문 한 페이지 (최신순), Member.orders 컬렉션을 거치지 않는다.
+     * idx_order_summary_member (member_id, order_id) 인덱스를 그대로 타고 정렬한다.
+     */
+    public List<OrderSummary> findByMember(Long memberId, int offset, int limit) {
+        return em.createQuery(
+                        "select s from OrderSummary s" +
+                                " where s.memberId = :memberId" +
+                                " order by s.orderId desc", OrderSummary.class)
+                .setParameter("memberId", memberId)
+                .setFirstResult(offset)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Transactional(readOnly = true)
+    public List<OrderQueryDto> findDtos() {
+        List<OrderQueryDto> result = em.createQuery(
+                        "select new jpabook.jpashop.repository.order.query.OrderQueryDto(s.orderId, s.memberName, s.orderDate, s.status, s.address)" +
+                                " from OrderSummary s", OrderQueryDto.class)
+                .getResultList();
+
+        List<Long> orderIds = result.stream()
+                .map(OrderQueryDto::getOrderId)
+                .collect(Collectors.toList());
+        Map<Long, List<OrderItemQueryDto>> lineMap = inListLoader.load(orderIds, this::findLinesIn).stream()
+                .collect(Collectors.groupingBy(OrderItemQueryDto::getOrderId));
+
+        result.forEach(o -> o.setOrderItems(lineMap.getOrDefault(o.getOrderId(), List.of())));
+        return result;
+    }
+
+    private List<OrderItemQueryDto> findLinesIn(List<Long> orderIds) {
+        return em.createQuery(
+                        "select new jpabook.jpashop.repository.order.query.OrderItemQueryDto(l.orderId, l.itemName, l.orderPrice, l.count)" +
+                                " from OrderSummaryLine l" +
+                                " where l.orderId in :orderIds", OrderItemQueryDto.class)
+                .setParameter("orderIds", orderIds)
+                .getResultList();
+    }
+
+    //==정합성 검사==//
+
+    /**
+     * 읽기 모델을 원본 테이블(orders, member, delivery, order_item, item)과 비교한다.
+     * 어긋난 주문 id를 종류별로 CHECK_SAMPLE_SIZE 건까지만 돌려준다.
+     */
+    public OrderSummaryCheckResult check() {
+        List<Long> missing = findOrderIds(
+                "select o.order_id from orders o" +
+                        " left join order_summary s on s.order_id = o.order_id" +
+                        " where s.order_id is null" +
+                        " order by 1");
+        List<Long> orphan = findOrderIds(
+                "select s.order_id from order_summary s" +
+                        " left join orders o on o.order_id = s.order_id" +
+                        " where o.order_id is null" +
+                        " order by 1");
+        List<Long> stale = findOrderIds(
+                "select o.order_id from orders o" +
+                        " join order_summary s on s.order_id = o.order_id" +
+                        " join member m on m.member_id = o.member_id" +
+                        " join delivery d on d.delivery_id = o.delivery_id" +
+                        " where s.member_id <> o.member_id" +
+                        " or coalesce(s.member_name, '') <> coalesce(m.name, '')" +
+                        " or coalesce(s.city, '') <> coalesce(d.city, '')" +
+                        " or coalesce(s.street, '') <> coalesce(d.street, '')" +
+                        " or coalesce(s.zipcode, '') <> coalesce(d.zipcode, '')" +
+                        " or s.order_date <> o.order_date" +
+                        " or s.status <> o.status" +
+                        " or s.total_price <> o.total_price" +
+                        " or s.item_count <> (select count(*) from order_item oi where oi.order_id = o.order_id)" +
+                        " order by 1");
+        List<Long> lineMismatch = findOrderIds(
+                "select oi.order_id from order_item oi" +
+                        " join item i on i.item_id = oi.item_id" +
+                        " left join order_summary_line l on l.order_item_id = oi.order_item_id" +
+                        " where l.order_item_id is null" +
+                        " or l.order_id <> oi.order_id" +
+                        " or l.item_id <> oi.item_id" +
+                        " or coalesce(l.item_name, '') <> coalesce(i.name, '')" +
+                        " or l.order_price <> oi.order_price" +
+                        " or l.count <> oi.count" +
+                        " union" +
+                        " select l.order_id from order_summary_line l" +
+                        " left join order_item oi on oi.order_item_id = l.order_item_id" +
+                        " where oi.order_item_id is null" +
+                        " order by 1");
+        return new OrderSummaryCheckResult(missing, orphan, stale, lineMismatch);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Long> findOrderIds(String sql) {
+        List<Number> ids = em.createNativeQuery(sql)
+                .setMaxResults(CHECK_SAMPLE_SIZE)
+                .getResultList();
+        return ids.stream()
+                .map(Number::longValue)
+                .collect(Collectors.toList());
+    }
+}
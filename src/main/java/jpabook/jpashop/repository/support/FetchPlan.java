@@ -0,0 +1,58 @@
+package jpabook.jpashop.repository.support;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 조회할 때 무엇을 같이 읽을지 (FetchPlanRegistry 에 이름으로 등록)
+ *
+ * rootGraph: 루트 쿼리에 붙이는 엔티티 그래프, XToOne 만 넣는다. -> 페치 조인해도 SQL 에서 페이징 된다.
+ * collectionGraph: 컬렉션(+ 그 안의 XToOne) 엔티티 그래프, 루트 쿼리가 끝난 뒤 두 번째 쿼리에서 페치 조인한다.
+ * collectionFetch: 두 번째 쿼리를 나누는 방식
+ *  - NONE: 컬렉션을 읽지 않는다. (접근하면 지연 로딩, default_batch_fetch_size)
+ *  - BATCH: 루트 id 를 batchSize 개씩 IN 절로 (@BatchSize 와 같지만 plan 마다 크기가 다르다.)
+ *  - SUBSELECT: 한 번에, 페이징이 없으면 id 목록 대신 루트 쿼리의 검색 조건을 그대로 쓴다. (@Fetch(SUBSELECT) 와 같다.)
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class FetchPlan {
+
+    private final String name;
+    private final String rootGraph;
+    private final String collectionGraph;
+    private final CollectionFetch collectionFetch;
+    private final int batchSize;
+
+    public enum CollectionFetch {
+        NONE, BATCH, SUBSELECT
+    }
+
+    public static FetchPlan of(String name, String rootGraph) {
+        return new FetchPlan(name, rootGraph, null, CollectionFetch.NONE, 0);
+    }
+
+    public static FetchPlan batch(String name, String rootGraph, String collectionGraph, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize는 1 이상이어야 합니다.");
+        }
+        return new FetchPlan(name, rootGraph, collectionGraph, CollectionFetch.BATCH, batchSize);
+    }
+
+    public static FetchPlan subselect(String name, String rootGraph, String collectionGraph) {
+        return new FetchPlan(name, rootGraph, collectionGraph, CollectionFetch.SUBSELECT, 0);
+    }
+
+    /**
+     * 루트 row 수가 count 일 때 나가는 쿼리 수 (루트 1 + 컬렉션)
+     */
+    public int queryCount(int count) {
+        if (count == 0 || collectionFetch == CollectionFetch.NONE) {
+            return 1;
+        }
+        if (collectionFetch == CollectionFetch.SUBSELECT) {
+            return 2;
+        }
+        return 1 + (count + batchSize - 1) / batchSize;
+    }
+}
@@ -0,0 +1,84 @@
+package jpabook.jpashop.repository.support;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jpabook.jpashop.sql.SqlStatementCounter;
+import jpabook.jpashop.sql.SqlStatementStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 이름으로 찾는 fetch plan 목록
+ * 엔드포인트마다 페치 조인 JPQL 을 따로 만들지 않고, 조회 메서드 하나에 plan 이름만 바꿔서 넘긴다. (OrderRepository.findAll)
+ * 엔티티 그래프 이름은 Order 의 @NamedEntityGraph
+ *
+ * summary: 주문 + 회원 + 배송 (간단한 주문 조회)
+ * withItems: summary + 주문상품 + 상품, 주문 batch-size 개마다 컬렉션 쿼리 한 번 (v3.1, 키셋, 대량 조회)
+ * full: summary + 주문상품 + 상품, 주문 수와 상관없이 컬렉션 쿼리 한 번 (v3)
+ *
+ * plan 별로 조회 시간(jpashop.fetch_plan)과 실제로 나간 쿼리 수(jpashop.fetch_plan.queries)를 메트릭으로 남긴다. (record)
+ */
+@Component
+public class FetchPlanRegistry {
+
+    public static final String SUMMARY = "summary";
+    public static final String WITH_ITEMS = "withItems";
+    public static final String FULL = "full";
+
+    private final Map<String, FetchPlan> plans = new LinkedHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    public FetchPlanRegistry(MeterRegistry meterRegistry,
+                             @Value("${jpashop.fetch-plan.batch-size:100}") int batchSize) {
+        this.meterRegistry = meterRegistry;
+        register(FetchPlan.of(SUMMARY, "Order.summary"));
+        register(FetchPlan.batch(WITH_ITEMS, "Order.summary", "Order.items", batchSize));
+        register(FetchPlan.subselect(FULL, "Order.summary", "Order.items"));
+    }
+
+    public void register(FetchPlan plan) {
+        if (plans.putIfAbsent(plan.getName(), plan) != null) {
+            throw new IllegalStateException("이미 등록된 fetch plan 입니다. " + plan.getName());
+        }
+    }
+
+    public FetchPlan get(String name) {
+        FetchPlan plan = plans.get(name);
+        if (plan == null) {
+            throw new IllegalArgumentException("없는 fetch plan 입니다. " + name + " (가능: " + plans.keySet() + ")");
+        }
+        return plan;
+    }
+
+    public List<FetchPlan> getPlans() {
+        return new ArrayList<>(plans.values());
+    }
+
+    /**
+     * plan 으로 읽고 읽은 그래프를 다 쓸 때까지(DTO 변환) 걸린 시간과 그동안 실제로 나간 SQL 수를 남긴다.
+     * SQL 수는 SqlStatementCounter 로 센다. -> 지연 로딩이 새면 plan 의 queryCount 보다 커진다.
+     * 요청 밖(배치, 테스트)이라 세고 있는 통계가 없으면 여기서 세기 시작하고 끝낸다.
+     */
+    public <T> T record(String planName, Supplier<T> work) {
+        FetchPlan plan = get(planName);
+        SqlStatementStats stats = SqlStatementCounter.current();
+        boolean started = stats == null;
+        if (started) {
+            stats = SqlStatementCounter.start();
+        }
+        int before = stats.getTotal();
+        try {
+            return meterRegistry.timer("jpashop.fetch_plan", "plan", plan.getName()).record(work);
+        } finally {
+            meterRegistry.counter("jpashop.fetch_plan.queries", "plan", plan.getName()).increment(stats.getTotal() - before);
+            if (started) {
+                SqlStatementCounter.stop();
+            }
+        }
+    }
+}
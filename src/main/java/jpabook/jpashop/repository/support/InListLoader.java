@@ -0,0 +1,148 @@
+package jpabook.jpashop.repository.support;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * where x.id in :ids 쿼리를 고정 크기 청크로 나눠서 실행한다.
+ *
+ * id 개수만큼 IN 절 파라미터 수가 달라지면 길이마다 다른 SQL이 되어서 쿼리 플랜 캐시를 전혀 못 쓴다.
+ * 그래서 청크 크기를 chunkSize 이하의 2의 거듭제곱(1, 2, 4, ... chunkSize)으로만 맞추고
+ * 남는 자리는 마지막 id를 반복해서 채운다. (IN 절에 중복 값은 결과에 영향 없음)
+ * -> SQL 모양이 몇 개 안되기 때문에 DB, Hibernate 양쪽 플랜 캐시를 재사용한다.
+ *
+ * parallel 모드에서는 청크마다 별도의 읽기 전용 트랜잭션(= 별도 커넥션)으로 동시에 실행하고 순서대로 합친다.
+ * 호출한 쪽 트랜잭션도 커넥션을 하나 잡고 있기 때문에 parallelism은 커넥션 풀 크기보다 작게 잡아야 한다.
+ */
+@Component
+public class InListLoader {
+
+    private final TransactionTemplate readOnlyTx;
+    private final ExecutorService executor;
+    private final int defaultChunkSize;
+    private final boolean defaultParallel;
+
+    public InListLoader(PlatformTransactionManager transactionManager,
+                        @Value("${jpashop.in-list.chunk-size:500}") int defaultChunkSize,
+                        @Value("${jpashop.in-list.parallel:false}") boolean defaultParallel,
+                        @Value("${jpashop.in-list.parallelism:4}") int parallelism) {
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.readOnlyTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.defaultChunkSize = defaultChunkSize;
+        this.defaultParallel = defaultParallel;
+
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "in-list-loader-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public <T> List<T> load(List<Long> ids, Function<List<Long>, List<T>> query) {
+        return load(ids, defaultChunkSize, defaultParallel, query);
+    }
+
+    /**
+     * 병렬 설정과 상관없이 호출한 쪽 트랜잭션에서 청크를 차례로 조회한다.
+     * 조회한 엔티티를 그대로 수정하거나 (영속성 컨텍스트) 잠글 때 (SELECT ... FOR UPDATE) 사용
+     */
+    public <T> List<T> loadInCurrentTransaction(List<Long> ids, Function<List<Long>, List<T>> query) {
+        return load(ids, defaultChunkSize, false, query);
+    }
+
+    /**
+     * 호출한 쪽 트랜잭션에서 청크마다 action을 실행 (IN 절 벌크 update / delete 용)
+     */
+    public void forEachChunk(List<Long> ids, Consumer<List<Long>> action) {
+        chunk(ids, defaultChunkSize).forEach(action);
+    }
+
+    public <T> List<T> load(List<Long> ids, int chunkSize, boolean parallel, Function<List<Long>, List<T>> query) {
+        List<List<Long>> chunks = chunk(ids, chunkSize);
+        if (chunks.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (!parallel || chunks.size() == 1) {
+            List<T> result = new ArrayList<>();
+            chunks.forEach(c -> result.addAll(query.apply(c))); // 호출한 쪽 트랜잭션에서 그대로 실행
+            return result;
+        }
+        return loadParallel(chunks, query);
+    }
+
+    private <T> List<T> loadParallel(List<List<Long>> chunks, Function<List<Long>, List<T>> query) {
+        List<Future<List<T>>> futures = new ArrayList<>(chunks.size());
+        for (List<Long> chunk : chunks) {
+            futures.add(executor.submit(() -> readOnlyTx.execute(status -> query.apply(chunk))));
+        }
+
+        List<T> result = new ArrayList<>();
+        try {
+            for (Future<List<T>> future : futures) {
+                result.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(f -> f.cancel(true));
+            throw new IllegalStateException("IN 절 병렬 조회가 중단되었습니다.", e);
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return result;
+    }
+
+    /**
+     * 중복을 제거한 id를 chunkSize 단위로 자르고, 마지막 청크는 2의 거듭제곱(최대 chunkSize) 크기로 채운다.
+     */
+    static List<List<Long>> chunk(List<Long> ids, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize는 1 이상이어야 합니다.");
+        }
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < distinctIds.size(); from += chunkSize) {
+            List<Long> chunk = new ArrayList<>(distinctIds.subList(from, Math.min(from + chunkSize, distinctIds.size())));
+            int padded = paddedSize(chunk.size(), chunkSize);
+            Long last = chunk.get(chunk.size() - 1);
+            while (chunk.size() < padded) {
+                chunk.add(last);
+            }
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    static int paddedSize(int size, int chunkSize) {
+        int padded = 1;
+        while (padded < size) {
+            padded <<= 1;
+        }
+        return Math.min(padded, chunkSize);
+    }
+}
@@ -0,0 +1,81 @@
+package jpabook.jpashop.repository.support;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostLoadEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * 영속성 컨텍스트 크기 감시
+ * 엔티티가 쌓일수록 flush 할 때 변경 감지 비용과 1차 캐시 메모리가 같이 커진다.
+ *
+ * 엔티티를 로딩할 때(PostLoad) 관리 중인 엔티티 수가 max-entities 를 넘으면 세션당 한 번 경고하고 메트릭을 올린다.
+ * 로딩 도중에는 비울 수 없기 때문에 실제로 비우는 건 청크 경계에서 checkpoint() 를 부를 때만 한다. (auto-clear: true)
+ * 수십만 건을 읽을 때는 영속성 컨텍스트를 쓰지 않는 OrderBulkReader.stream() 을 쓴다.
+ */
+@Slf4j
+@Component
+public class PersistenceContextGuard {
+
+    private final int maxEntities;
+    private final boolean autoClear;
+    private final Counter exceeded;
+    private final Counter cleared;
+    private final Set<Object> warnedSessions = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    public PersistenceContextGuard(EntityManagerFactory emf, MeterRegistry meterRegistry,
+                                   @Value("${jpashop.persistence-context.max-entities:10000}") int maxEntities,
+                                   @Value("${jpashop.persistence-context.auto-clear:false}") boolean autoClear) {
+        this.maxEntities = maxEntities;
+        this.autoClear = autoClear;
+        this.exceeded = meterRegistry.counter("jpashop.persistence_context.exceeded");
+        this.cleared = meterRegistry.counter("jpashop.persistence_context.cleared");
+
+        emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class)
+                .getEventListenerGroup(EventType.POST_LOAD)
+                .appendListener(this::onPostLoad);
+    }
+
+    private void onPostLoad(PostLoadEvent event) {
+        int managed = event.getSession().getPersistenceContext().getNumberOfManagedEntities();
+        if (managed > maxEntities && warnedSessions.add(event.getSession())) {
+            exceeded.increment();
+            log.warn("영속성 컨텍스트 엔티티 {}개 (기준 {}개), 대량 조회는 청크마다 비우거나 StatelessSession 으로 읽어야 한다.",
+                    managed, maxEntities);
+        }
+    }
+
+    /**
+     * 청크 경계에서 호출한다. 기준을 넘었고 auto-clear 면 flush 후 비운다.
+     * 비우면 이전 청크에서 읽은 엔티티는 준영속이 되므로 호출한 쪽은 더 이상 그 엔티티를 쓰면 안된다.
+     *
+     * @return 비웠으면 true
+     */
+    public boolean checkpoint(EntityManager em) {
+        if (!autoClear || managedEntities(em) <= maxEntities) {
+            return false;
+        }
+        em.flush();
+        em.clear();
+        cleared.increment();
+        return true;
+    }
+
+    public static int managedEntities(EntityManager em) {
+        return em.unwrap(SessionImplementor.class).getPersistenceContext().getNumberOfManagedEntities();
+    }
+}
@@ -2,12 +2,19 @@ package jpabook.jpashop.service;
 
 import jpabook.jpashop.domain.item.Book;
 import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.domain.item.ItemStockShard;
 import jpabook.jpashop.repository.ItemRepository;
+import jpabook.jpashop.repository.ItemStockShardRepository;
+import jpabook.jpashop.repository.order.summary.OrderSummaryRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional(readOnly = true)
@@ -15,6 +22,8 @@ import java.util.List;
 public class ItemService {
 
     private final ItemRepository itemRepository;
+    private final ItemStockShardRepository shardRepository;
+    private final OrderSummaryRepository orderSummaryRepository;
 
     @Transactional
     public void save(Item item) {
@@ -25,14 +34,114 @@ public class ItemService {
     public Item updateItem(Long itemId, String name, int price, int stockQuantity) {
         Item findItem = itemRepository.findOne(itemId); // 영속상태 -> 변경감지 가능 -> 변경이 있으면 자동 update
 
+        if (!Objects.equals(findItem.getName(), name)) {
+            orderSummaryRepository.updateItemName(itemId, name); // 주문 요약에 펼쳐둔 상품 이름
+        }
         findItem.setPrice(price);
         findItem.setName(name);
-        findItem.setStockQuantity(stockQuantity);
+        if (findItem.isStockSharded()) {
+            shardRepository.redistribute(shardRepository.findAllForUpdate(itemId), stockQuantity);
+        } else {
+            findItem.setStockQuantity(stockQuantity);
+        }
 
         return findItem;
 
     }
 
+    /**
+     * 상품 재고를 shards 개의 하위 재고로 나눈다. (주문이 몰리는 인기 상품용)
+     */
+    @Transactional
+    public void enableStockSharding(Long itemId, int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("샤드 수는 1 이상이어야 합니다.");
+        }
+        Item item = itemRepository.findOneForUpdate(itemId); // 진행 중인 주문의 재고 차감이 끝날 때까지 기다린다.
+        if (item.isStockSharded()) {
+            throw new IllegalStateException("이미 재고가 샤딩된 상품입니다.");
+        }
+
+        List<ItemStockShard> created = new ArrayList<>();
+        for (int shardNo = 0; shardNo < shards; shardNo++) {
+            ItemStockShard shard = ItemStockShard.createShard(item, shardNo, 0);
+            shardRepository.save(shard);
+            created.add(shard);
+        }
+        shardRepository.redistribute(created, item.getStockQuantity());
+
+        item.setStockQuantity(0);
+        item.setStockShards(shards);
+    }
+
+    /**
+     * 하위 재고를 합쳐서 다시 상품 row 하나로 되돌린다.
+     */
+    @Transactional
+    public void disableStockSharding(Long itemId) {
+        Item item = itemRepository.findOneForUpdate(itemId);
+        if (!item.isStockSharded()) {
+            return;
+        }
+
+        int total = shardRepository.findAllForUpdate(itemId).stream()
+                .mapToInt(ItemStockShard::getQuantity)
+                .sum();
+        shardRepository.deleteAll(itemId);
+
+        item.setStockShards(0);
+        item.setStockQuantity(total);
+    }
+
+    /**
+     * 샤드 간 재고 차이가 1보다 크면 고르게 다시 나눈다.
+     * 무작위 샤드에서 빼다 보면 한쪽만 먼저 바닥나서 여러 샤드를 잠그는 느린 경로로 빠지기 때문
+     * @return 재분배 했으면 true
+     */
+    @Transactional
+    public boolean rebalanceStock(Long itemId) {
+        List<ItemStockShard> shards = shardRepository.findAllForUpdate(itemId);
+        if (shards.isEmpty()) {
+            return false;
+        }
+
+        int min = shards.stream().mapToInt(ItemStockShard::getQuantity).min().getAsInt();
+        int max = shards.stream().mapToInt(ItemStockShard::getQuantity).max().getAsInt();
+        if (max - min <= 1) {
+            return false;
+        }
+
+        int total = shards.stream().mapToInt(ItemStockShard::getQuantity).sum();
+        shardRepository.redistribute(shards, total);
+        return true;
+    }
+
+    public List<Long> findStockShardedItemIds() {
+        return shardRepository.findShardedItemIds();
+    }
+
+    /**
+     * 재고 수량 (샤딩된 상품만 샤드 합을 조회한다.)
+     * 상품을 읽을 때마다 샤드 합 서브쿼리를 붙이지 않고 필요한 곳에서만 읽는다.
+     */
+    public int getStockQuantity(Item item) {
+        return item.isStockSharded() ? shardRepository.sumQuantity(item.getId()) : item.getStockQuantity();
+    }
+
+    /**
+     * 상품 id -> 재고 수량 (샤딩된 상품이 있을 때만 샤드 합 쿼리 한 번)
+     */
+    public Map<Long, Integer> getStockQuantities(List<Item> items) {
+        List<Long> shardedIds = items.stream()
+                .filter(Item::isStockSharded)
+                .map(Item::getId)
+                .collect(Collectors.toList());
+        Map<Long, Integer> sharded = shardedIds.isEmpty() ? Map.of() : shardRepository.sumQuantities(shardedIds);
+        return items.stream()
+                .collect(Collectors.toMap(Item::getId,
+                        item -> item.isStockSharded() ? sharded.getOrDefault(item.getId(), 0) : item.getStockQuantity()));
+    }
+
     public List<Item> findItems() {
         return itemRepository.findAll();
     }
@@ -0,0 +1,31 @@
+package jpabook.jpashop.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 샤딩된 상품의 하위 재고를 주기적으로 고르게 맞춘다.
+ * 상품마다 별도 트랜잭션이라 샤드를 잠그는 시간은 상품 하나 분량만큼만 걸린다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ItemStockRebalancer {
+
+    private final ItemService itemService;
+
+    @Scheduled(fixedDelayString = "${jpashop.stock.rebalance-interval:5000}")
+    public void rebalance() {
+        for (Long itemId : itemService.findStockShardedItemIds()) {
+            try {
+                if (itemService.rebalanceStock(itemId)) {
+                    log.debug("재고 샤드 재분배 itemId={}", itemId);
+                }
+            } catch (RuntimeException e) {
+                log.warn("재고 샤드 재분배 실패 itemId={}", itemId, e);
+            }
+        }
+    }
+}
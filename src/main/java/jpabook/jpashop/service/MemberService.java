@@ -2,6 +2,9 @@ package jpabook.jpashop.service;
 
 import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.repository.MemberRepository;
+import jpabook.jpashop.repository.member.MemberOrderStats;
+import jpabook.jpashop.repository.member.MemberOrderStatsRepository;
+import jpabook.jpashop.repository.order.summary.OrderSummaryRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -14,6 +17,8 @@ import java.util.List;
 public class MemberService {
 
     private final MemberRepository memberRepository;
+    private final OrderSummaryRepository orderSummaryRepository;
+    private final MemberOrderStatsRepository memberOrderStatsRepository;
 
     /**
      * 회원 가입
@@ -24,6 +29,7 @@ public class MemberService {
     public Long join(Member member) {
         validateDuplicateMember(member); // 중복 회원 검증
         memberRepository.save(member);
+        memberOrderStatsRepository.save(MemberOrderStats.empty(member.getId())); // 주문 통계는 0부터
         return member.getId();
     }
 
@@ -49,5 +55,14 @@ public class MemberService {
     public void update(Long id, String name) {
         Member member = memberRepository.findOne(id); // 영속성 컨텍스트에 member 영속 상태
         member.setName(name); // 변경감지
+        orderSummaryRepository.updateMemberName(id, name); // 주문 요약에 펼쳐둔 회원 이름
+    }
+
+    /**
+     * JDBC로 직접 넣은 데이터(DataGenerator)나 어긋난 통계를 orders 에서 다시 만든다.
+     */
+    @Transactional
+    public int rebuildOrderStats() {
+        return memberOrderStatsRepository.rebuild();
     }
 }
@@ -0,0 +1,17 @@
+package jpabook.jpashop.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 대량 주문 취소 결과
+ */
+@Getter
+@AllArgsConstructor
+public class OrderCancelResult {
+    private final List<Long> canceledOrderIds;
+    private final List<Long> completedOrderIds; // 배송완료라 취소 불가
+    private final List<Long> skippedOrderIds; // 이미 취소됐거나 없는 주문
+}
@@ -0,0 +1,16 @@
+package jpabook.jpashop.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 대량 주문의 주문 한 건 (회원 한 명, 주문상품 여러 개)
+ */
+@Getter
+@AllArgsConstructor
+public class OrderCommand {
+    private final Long memberId;
+    private final List<OrderLine> lines;
+}
@@ -0,0 +1,25 @@
+package jpabook.jpashop.service;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 대량 주문의 주문별 결과 (index는 요청 순서)
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class OrderResult {
+    private final int index;
+    private final Long orderId;
+    private final boolean success;
+    private final String message;
+
+    public static OrderResult success(int index, Long orderId) {
+        return new OrderResult(index, orderId, true, null);
+    }
+
+    public static OrderResult failed(int index, String message) {
+        return new OrderResult(index, null, false, message);
+    }
+}
@@ -1,28 +1,62 @@
 package jpabook.jpashop.service;
 
 import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.DeliveryStatus;
 import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderStatus;
 import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.exception.NotEnoughStockException;
 import jpabook.jpashop.repository.ItemRepository;
 import jpabook.jpashop.repository.MemberRepository;
+import jpabook.jpashop.repository.OrderListDto;
 import jpabook.jpashop.repository.OrderRepository;
 import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.repository.OrderTotals;
+import jpabook.jpashop.repository.member.MemberOrderStatsRepository;
+import jpabook.jpashop.repository.order.summary.OrderSummaryRepository;
+import jpabook.jpashop.repository.support.InListLoader;
+import jpabook.jpashop.service.event.OrderCanceledEvent;
+import jpabook.jpashop.service.event.OrderPlacedEvent;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional(readOnly = true)
 @RequiredArgsConstructor
 public class OrderService {
 
+    public static final int MAX_CANCEL_ORDERS = 100_000; // 대량 취소 한 번에 취소할 수 있는 주문 수
+
     private final OrderRepository orderRepository;
     private final MemberRepository memberRepository;
     private final ItemRepository itemRepository;
+    private final StockManager stockManager;
+    private final InListLoader inListLoader;
+    private final OrderSummaryRepository orderSummaryRepository;
+    private final MemberOrderStatsRepository memberOrderStatsRepository;
+    private final ApplicationEventPublisher eventPublisher; // 매출 스냅샷, 베스트셀러 (커밋 후에 받는다)
+    private final EntityManager em;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:100}")
+    private int bulkBatchSize; // 대량 주문을 이만큼씩 flush / clear 한다.
 
     /**
      * 주문
@@ -32,39 +66,278 @@ public class OrderService {
 
         // 엔티티 조회
         Member member = memberRepository.findOne(memberId);
-        Item item = itemRepository.findOne(itemId);
+        Item item = stockManager.reserve(itemId, count); // 재고 차감 (jpashop.stock.mode)
 
         // 배송정보 생성 -> CASCADE.ALL 속성 때문에 따로 PERSIST 해주지 않아도 영속성 전이됨
         Delivery delivery = new Delivery();
         delivery.setAddress(member.getAddress());
 
         // 주문상품 생성 -> CASCADE.ALL 속성 때문에 따로 PERSIST 해주지 않아도 영속성 전이됨
-        OrderItem orderItem = OrderItem.createOrderItem(item, item.getPrice(), count); // static 생성 메서드
+        OrderItem orderItem = OrderItem.createReservedOrderItem(item, item.getPrice(), count); // static 생성 메서드
 
         // 주문 생성
         Order order = Order.createOrder(member, delivery, orderItem); // static 생성 메서드
 
         // 주문 저장
         orderRepository.save(order);
+        orderSummaryRepository.add(order); // 읽기 모델도 같은 트랜잭션에서 갱신
+        memberOrderStatsRepository.recordOrder(order); // 회원별 주문 통계
+        eventPublisher.publishEvent(OrderPlacedEvent.of(order));
         return order.getId();
     }
 
 
+    /**
+     * 대량 주문
+     * 상품 row 는 처음에 재고 모드와 상관없이 id 순서로 잠근다. (StockManager.lockForBulk, 동시에 들어온 대량 주문끼리 데드락 방지)
+     * OPTIMISTIC 모드라도 잠근다. 잠그지 않으면 다른 주문 하나만 겹쳐도 flush 할 때 version 충돌로 배치 전체가 롤백된다.
+     * 재고가 모자라거나 회원/상품이 없는 주문만 실패로 돌려주고 나머지 주문은 저장한다.
+     * insert / update 는 hibernate.jdbc.batch_size 단위로 묶여서 나가고, 그만큼 주문하면 flush / clear 해서 영속성 컨텍스트가 커지지 않게 한다.
+     * (회원, 상품은 배치마다 IN 쿼리로 다시 조회한다)
+     */
+    @Transactional
+    public List<OrderResult> orderBulk(List<OrderCommand> commands) {
+        inListLoader.loadInCurrentTransaction(sortedItemIds(commands), stockManager::lockForBulk);
+
+        List<OrderResult> results = new ArrayList<>(commands.size());
+        for (int from = 0; from < commands.size(); from += bulkBatchSize) {
+            List<OrderCommand> batch = commands.subList(from, Math.min(from + bulkBatchSize, commands.size()));
+            List<Long> memberIds = batch.stream()
+                    .map(OrderCommand::getMemberId)
+                    .distinct()
+                    .collect(Collectors.toList());
+            Map<Long, Member> members = inListLoader.loadInCurrentTransaction(memberIds, memberRepository::findAllByIdIn).stream()
+                    .collect(Collectors.toMap(Member::getId, Function.identity(), (a, b) -> a));
+            Map<Long, Item> items = inListLoader.loadInCurrentTransaction(sortedItemIds(batch), itemRepository::findAllByIdIn).stream()
+                    .collect(Collectors.toMap(Item::getId, Function.identity(), (a, b) -> a));
+
+            for (int i = 0; i < batch.size(); i++) {
+                results.add(placeOrder(from + i, batch.get(i), members, items));
+            }
+            em.flush();
+            em.clear(); // 잠금은 커밋까지 남는다.
+        }
+        return results;
+    }
+
+    private static List<Long> sortedItemIds(List<OrderCommand> commands) {
+        return commands.stream()
+                .flatMap(c -> c.getLines().stream())
+                .map(OrderLine::getItemId)
+                .distinct()
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private OrderResult placeOrder(int index, OrderCommand command, Map<Long, Member> members, Map<Long, Item> items) {
+        Member member = members.get(command.getMemberId());
+        if (member == null) {
+            return OrderResult.failed(index, "회원이 없습니다. memberId=" + command.getMemberId());
+        }
+        String invalid = validateLines(command.getLines(), items);
+        if (invalid != null) {
+            return OrderResult.failed(index, invalid);
+        }
+
+        try {
+            return OrderResult.success(index, placeReservedOrder(member, command.getLines(), items).getId());
+        } catch (NotEnoughStockException e) {
+            return OrderResult.failed(index, e.getMessage());
+        }
+    }
+
+    /**
+     * 장바구니 주문
+     * 여러 상품을 주문 하나, 배송 하나로 주문한다.
+     * 상품은 재고 모드에 맞게 id 순서대로 잠그고 조회해서 (장바구니가 겹쳐도 데드락 X) 모든 상품의 재고를 차감하거나 하나도 차감하지 않는다.
+     */
+    @Transactional
+    public Long checkout(Long memberId, List<OrderLine> lines) {
+        Member member = memberRepository.findOne(memberId);
+        if (member == null) {
+            throw new IllegalArgumentException("회원이 없습니다. memberId=" + memberId);
+        }
+
+        List<Long> itemIds = lines.stream()
+                .map(OrderLine::getItemId)
+                .distinct()
+                .sorted()
+                .collect(Collectors.toList());
+        stockManager.lockForReserveAll(itemIds);
+        Map<Long, Item> items = itemIds.isEmpty() ? Map.of() : itemRepository.findAllByIdIn(itemIds).stream()
+                .collect(Collectors.toMap(Item::getId, Function.identity()));
+
+        String invalid = validateLines(lines, items);
+        if (invalid != null) {
+            throw new IllegalArgumentException(invalid);
+        }
+        return placeReservedOrder(member, lines, items).getId();
+    }
+
+    // 주문상품 검증, 문제가 없으면 null
+    private static String validateLines(List<OrderLine> lines, Map<Long, Item> items) {
+        if (lines.isEmpty()) {
+            return "주문상품이 없습니다.";
+        }
+        for (OrderLine line : lines) {
+            if (!items.containsKey(line.getItemId())) {
+                return "상품이 없습니다. itemId=" + line.getItemId();
+            }
+            if (line.getCount() < 1) {
+                return "주문 수량은 1 이상이어야 합니다. itemId=" + line.getItemId();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 잠가둔 상품들의 재고를 한 번에 차감하고 주문 하나 (배송 하나) 로 저장
+     * 재고가 하나라도 모자라면 NotEnoughStockException, 아무것도 차감하지 않는다.
+     */
+    private Order placeReservedOrder(Member member, List<OrderLine> lines, Map<Long, Item> items) {
+        Map<Item, Integer> quantities = new LinkedHashMap<>(); // 같은 상품이 여러 줄이면 합쳐서 차감
+        for (OrderLine line : lines) {
+            quantities.merge(items.get(line.getItemId()), line.getCount(), Integer::sum);
+        }
+        stockManager.reserveAll(quantities);
+
+        OrderItem[] orderItems = lines.stream()
+                .map(line -> {
+                    Item item = items.get(line.getItemId());
+                    return OrderItem.createReservedOrderItem(item, item.getPrice(), line.getCount());
+                })
+                .toArray(OrderItem[]::new);
+
+        Delivery delivery = new Delivery();
+        delivery.setAddress(member.getAddress());
+
+        Order order = Order.createOrder(member, delivery, orderItems);
+        orderRepository.save(order);
+        orderSummaryRepository.add(order);
+        memberOrderStatsRepository.recordOrder(order);
+        eventPublisher.publishEvent(OrderPlacedEvent.of(order));
+        return order;
+    }
+
     /**
      * 주문 취소
+     * 이미 취소된 주문이면 아무것도 하지 않는다. (두 번 눌러도 재고 원복, 회원 통계, 취소 이벤트는 한 번만)
      */
     @Transactional
     public void cancelOrder(Long orderId) {
+        // 주문 row 를 잠그고 상태 확인 -> 같은 주문을 동시에 취소해도 한쪽은 취소된 상태를 본다.
+        List<Object[]> states = orderRepository.findCancelStatesForUpdate(List.of(orderId));
+        if (!states.isEmpty() && states.get(0)[1] == OrderStatus.CANCEL) {
+            return;
+        }
         // 주문 엔티티 조회
         Order order = orderRepository.findOne(orderId);
         // 주문 취소
-        order.cancel();
+        order.markCanceled();
+        // 재고 원복
+        for (OrderItem orderItem : order.getOrderItems()) {
+            stockManager.restore(orderItem);
+        }
+        orderSummaryRepository.markCanceled(List.of(orderId));
+        memberOrderStatsRepository.recordCancel(order);
+        eventPublisher.publishEvent(OrderCanceledEvent.of(order));
+    }
+
+    /**
+     * 대량 주문 취소
+     * 1. 주문 / 배송 상태를 쿼리 하나로 잠그고 조회해서 배송완료, 이미 취소된 주문을 걸러낸다.
+     * 2. 재고는 상품별로 합쳐서 벌크 update 한 번으로 원복한다.
+     * 3. 주문 상태는 벌크 update 한 번으로 바꾼다. (주문 요약도 같이)
+     * 벌크 연산은 영속성 컨텍스트를 거치지 않기 때문에 끝나면 영속성 컨텍스트를 비운다. (이전에 조회한 엔티티는 준영속)
+     */
+    @Transactional
+    public OrderCancelResult cancelOrders(List<Long> orderIds) {
+        List<Long> ids = orderIds.stream()
+                .distinct()
+                .sorted() // 잠금 순서
+                .collect(Collectors.toList());
+
+        List<Long> cancelable = new ArrayList<>();
+        List<Long> completed = new ArrayList<>();
+        Set<Long> handled = new HashSet<>(); // 취소했거나 배송완료로 거절한 주문
+        for (Object[] row : inListLoader.loadInCurrentTransaction(ids, orderRepository::findCancelStatesForUpdate)) {
+            Long orderId = (Long) row[0];
+            if (row[1] != OrderStatus.ORDER) {
+                continue;
+            }
+            handled.add(orderId);
+            if (row[2] == DeliveryStatus.COMP) {
+                completed.add(orderId);
+            } else {
+                cancelable.add(orderId);
+            }
+        }
+        List<Long> skipped = ids.stream()
+                .filter(id -> !handled.contains(id))
+                .collect(Collectors.toList());
+
+        if (!cancelable.isEmpty()) {
+            Map<Long, Integer> itemQuantities = new HashMap<>();
+            inListLoader.forEachChunk(cancelable, chunk -> {
+                for (Object[] row : orderRepository.findItemQuantitiesOfOrders(chunk)) {
+                    itemQuantities.merge((Long) row[0], ((Number) row[1]).intValue(), Integer::sum);
+                }
+                stockManager.restoreOrders(chunk);
+                memberOrderStatsRepository.recordCancels(chunk);
+                orderRepository.markCanceled(chunk);
+                orderSummaryRepository.markCanceled(chunk);
+            });
+            orderRepository.flushAndClear();
+            eventPublisher.publishEvent(new OrderCanceledEvent(cancelable, itemQuantities));
+        }
+        return new OrderCancelResult(cancelable, completed, skipped);
+    }
+
+    /**
+     * 조건에 맞는 주문 상태의 주문을 모두 취소
+     * 조건이 하나도 없으면 (전체 주문 취소) 거절하고, 맞는 주문이 MAX_CANCEL_ORDERS 건을 넘으면 하나도 취소하지 않고 거절한다.
+     */
+    @Transactional
+    public OrderCancelResult cancelOrders(OrderSearch orderSearch) {
+        if (orderSearch == null || !orderSearch.hasConditions()) {
+            throw new IllegalArgumentException("취소할 주문의 검색 조건이 없습니다. (회원 이름, 상품 이름, 주문일 중 하나 이상)");
+        }
+        List<Long> orderIds = orderRepository.findIdsToCancel(orderSearch, MAX_CANCEL_ORDERS + 1);
+        if (orderIds.size() > MAX_CANCEL_ORDERS) {
+            throw new IllegalArgumentException("조건에 맞는 주문이 " + MAX_CANCEL_ORDERS + "건을 넘습니다. 조건을 좁혀서 나눠 요청하세요.");
+        }
+        return cancelOrders(orderIds);
     }
 
-    // 검색
-    public List<Order> findOrders(OrderSearch orderSearch) {
+    // 검색 (한 페이지)
+    public Page<OrderListDto> findOrders(OrderSearch orderSearch, Pageable pageable) {
 //        return orderRepository.findAllByString(orderSearch);
-        return orderRepository.findAll(orderSearch);
+        OrderRepository.checkSortable(pageable.getSort());
+        return orderRepository.findAll(orderSearch, pageable);
+    }
+
+    // 검색 결과 전체의 주문 수, 금액 합계
+    public OrderTotals findOrderTotals(OrderSearch orderSearch) {
+        return orderRepository.findTotals(orderSearch);
+    }
+
+    /**
+     * 이미 조회한 첫 페이지에 검색 결과가 다 들어있으면 합계 쿼리 없이 페이지에서 더한다. (집계 쿼리처럼 취소 주문은 금액에서 뺀다)
+     */
+    public OrderTotals findOrderTotals(OrderSearch orderSearch, Page<OrderListDto> page) {
+        if (page.isFirst() && !page.hasNext()) {
+            long canceledCount = 0;
+            long totalPrice = 0;
+            for (OrderListDto row : page.getContent()) {
+                if (row.getStatus() == OrderStatus.CANCEL) {
+                    canceledCount++;
+                } else {
+                    totalPrice += row.getOrderPrice();
+                }
+            }
+            return new OrderTotals(page.getNumberOfElements(), canceledCount, totalPrice);
+        }
+        return findOrderTotals(orderSearch);
     }
 
 }
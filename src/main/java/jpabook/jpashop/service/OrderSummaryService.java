@@ -0,0 +1,40 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.repository.order.summary.OrderSummaryCheckResult;
+import jpabook.jpashop.repository.order.summary.OrderSummaryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * 주문 요약 읽기 모델 재구축 / 정합성 검사
+ * 평소에는 OrderService, MemberService, ItemService 가 변경할 때 같이 갱신하고
+ * JDBC로 직접 넣은 데이터(DataGenerator)나 어긋난 읽기 모델은 rebuild로 다시 만든다.
+ */
+@Slf4j
+@Service
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class OrderSummaryService {
+
+    private final OrderSummaryRepository orderSummaryRepository;
+
+    @Transactional
+    public int rebuild() {
+        long start = System.nanoTime();
+        int rebuilt = orderSummaryRepository.rebuild();
+        log.info("주문 요약 재구축 {}건 ({}ms)", rebuilt, (System.nanoTime() - start) / 1_000_000);
+        return rebuilt;
+    }
+
+    public OrderSummaryCheckResult check() {
+        OrderSummaryCheckResult result = orderSummaryRepository.check();
+        if (!result.isConsistent()) {
+            log.warn("주문 요약 불일치 missing={} orphan={} stale={} lines={}",
+                    result.getMissingOrderIds(), result.getOrphanOrderIds(),
+                    result.getStaleOrderIds(), result.getLineMismatchOrderIds());
+        }
+        return result;
+    }
+}
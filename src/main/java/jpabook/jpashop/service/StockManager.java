@@ -0,0 +1,186 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import jpabook.jpashop.repository.ItemRepository;
+import jpabook.jpashop.repository.ItemStockShardRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 재고 차감 / 원복을 jpashop.stock.mode 에 따라 처리한다.
+ * 샤딩된 상품은 모드와 상관없이 item_stock_shard 에서 차감한다. (상품 row는 잠그지 않는다)
+ * 트랜잭션은 호출하는 서비스의 것을 그대로 쓴다.
+ */
+@Component
+public class StockManager {
+
+    private final ItemRepository itemRepository;
+    private final ItemStockShardRepository shardRepository;
+    private final StockMode mode;
+
+    public StockManager(ItemRepository itemRepository,
+                        ItemStockShardRepository shardRepository,
+                        @Value("${jpashop.stock.mode:ATOMIC}") StockMode mode) {
+        this.itemRepository = itemRepository;
+        this.shardRepository = shardRepository;
+        this.mode = mode;
+    }
+
+    public StockMode getMode() {
+        return mode;
+    }
+
+    /**
+     * 재고를 차감하고 상품을 반환 (재고가 부족하면 NotEnoughStockException)
+     */
+    public Item reserve(Long itemId, int count) {
+        switch (mode) {
+            case ATOMIC:
+                if (itemRepository.decreaseStock(itemId, count) == 1) {
+                    return itemRepository.findOne(itemId);
+                }
+                Item sharded = itemRepository.findOne(itemId);
+                if (sharded == null || !sharded.isStockSharded()) {
+                    throw new NotEnoughStockException("need more stock");
+                }
+                return reserveShard(sharded, count);
+            case PESSIMISTIC:
+                // 샤딩된 상품의 row를 잠그면 샤딩한 의미가 없다.
+                if (itemRepository.isStockSharded(itemId)) {
+                    return reserveShard(itemRepository.findOne(itemId), count);
+                }
+                Item locked = itemRepository.findOneForUpdate(itemId);
+                locked.removeStock(count);
+                return locked;
+            default:
+                Item item = itemRepository.findOne(itemId);
+                if (item.isStockSharded()) {
+                    return reserveShard(item, count);
+                }
+                item.removeStock(count); // 커밋할 때 update ... where version = ?
+                return item;
+        }
+    }
+
+    /**
+     * 여러 상품을 차감하기 전에 (장바구니) 모드에 맞게 상품 row 를 잠근다. 트랜잭션 처음에 한 번 부른다.
+     * ATOMIC, PESSIMISTIC: 샤딩 안 된 상품만 id 순서로 잠근다.
+     * (ATOMIC 도 차감하면 그 row 를 커밋까지 잡기 때문에 미리 같은 순서로 잡아서 장바구니끼리 데드락이 나지 않게 한다)
+     * OPTIMISTIC: 잠그지 않는다. flush 할 때 version 으로 검사한다. (장바구니 주문 하나가 실패할 뿐이다. 대량 주문은 lockForBulk)
+     * 샤딩된 상품은 모드와 상관없이 잠그지 않는다. (차감할 때 샤드 row 만 잡는다)
+     * @param itemIds 정렬된 상품 id
+     * @return 잠근 상품
+     */
+    public List<Item> lockForReserveAll(List<Long> itemIds) {
+        if (mode == StockMode.OPTIMISTIC) {
+            return List.of();
+        }
+        return lockForBulk(itemIds);
+    }
+
+    /**
+     * 대량 주문용: 모드와 상관없이 샤딩 안 된 상품 row 를 id 순서로 잠근다.
+     * OPTIMISTIC 이라도 대량 주문은 잠가야 한다. flush 할 때 version 충돌이 나면 트랜잭션 전체가 롤백돼서 주문별 결과가 남지 않는다.
+     * @param itemIds 정렬된 상품 id
+     * @return 잠근 상품
+     */
+    public List<Item> lockForBulk(List<Long> itemIds) {
+        if (itemIds.isEmpty()) {
+            return List.of();
+        }
+        return itemRepository.findAllUnshardedForUpdate(itemIds);
+    }
+
+    /**
+     * 상품들의 재고를 모두 차감하거나, 하나라도 모자라면 아무것도 차감하지 않는다. (lockForReserveAll 이나 lockForBulk 를 먼저 부른다)
+     * 샤딩 안 된 상품은 엔티티의 재고로 먼저 검사하고 (잠그지 않은 OPTIMISTIC 장바구니는 flush 할 때 version 검사),
+     * 샤딩된 상품은 상품 id 순서로 차감하고 (샤드 row 도 커밋까지 잡기 때문에 장바구니 순서대로 빼면 [A, B] 와 [B, A] 가 데드락),
+     * 차감하다 실패하면 먼저 뺀 샤드를 되돌린다.
+     * @param quantities 상품별 주문 수량
+     */
+    public void reserveAll(Map<Item, Integer> quantities) {
+        List<Map.Entry<Item, Integer>> sharded = new ArrayList<>();
+        for (Map.Entry<Item, Integer> entry : quantities.entrySet()) {
+            Item item = entry.getKey();
+            if (item.isStockSharded()) {
+                sharded.add(entry);
+            } else if (item.getStockQuantity() < entry.getValue()) {
+                throw new NotEnoughStockException("need more stock: itemId=" + item.getId());
+            }
+        }
+        sharded.sort(Comparator.comparing(entry -> entry.getKey().getId()));
+
+        List<Map.Entry<Item, Integer>> taken = new ArrayList<>();
+        for (Map.Entry<Item, Integer> entry : sharded) {
+            Item item = entry.getKey();
+            try {
+                shardRepository.take(item.getId(), item.getStockShards(), entry.getValue());
+                taken.add(entry);
+            } catch (NotEnoughStockException e) {
+                taken.forEach(t -> shardRepository.give(t.getKey().getId(), t.getKey().getStockShards(), t.getValue()));
+                throw new NotEnoughStockException("need more stock: itemId=" + item.getId(), e);
+            }
+        }
+
+        quantities.forEach((item, quantity) -> {
+            if (!item.isStockSharded()) {
+                item.removeStock(quantity); // 더티 체킹 -> 배치 update
+            }
+        });
+    }
+
+    /**
+     * 주문상품 수량만큼 재고 원복
+     */
+    public void restore(OrderItem orderItem) {
+        Long itemId = orderItem.getItem().getId();
+        switch (mode) {
+            case ATOMIC:
+                if (itemRepository.increaseStock(itemId, orderItem.getCount()) == 0) {
+                    restoreShard(orderItem.getItem(), orderItem.getCount());
+                }
+                break;
+            case PESSIMISTIC:
+                if (itemRepository.isStockSharded(itemId)) {
+                    restoreShard(orderItem.getItem(), orderItem.getCount());
+                } else {
+                    itemRepository.findOneForUpdate(itemId).addStock(orderItem.getCount());
+                }
+                break;
+            default:
+                if (orderItem.getItem().isStockSharded()) {
+                    restoreShard(orderItem.getItem(), orderItem.getCount());
+                } else {
+                    orderItem.cancel();
+                }
+        }
+    }
+
+    /**
+     * 주문들의 재고를 상품별로 합쳐서 원복 (대량 취소용, 모드와 상관없이 벌크 update)
+     * 샤딩 안 된 상품은 한 문장으로, 샤딩된 상품은 상품마다 샤드 하나에 되돌린다.
+     */
+    public void restoreOrders(List<Long> orderIds) {
+        itemRepository.restoreStockOfOrders(orderIds);
+        for (Object[] row : itemRepository.findShardedQuantitiesOfOrders(orderIds)) {
+            shardRepository.give((Long) row[0], (Integer) row[1], ((Long) row[2]).intValue());
+        }
+    }
+
+    // 샤드만 바뀌고 상품 row 는 그대로라서 캐시나 영속성 컨텍스트의 상품은 손대지 않는다.
+    private Item reserveShard(Item item, int count) {
+        shardRepository.take(item.getId(), item.getStockShards(), count);
+        return item;
+    }
+
+    private void restoreShard(Item item, int count) {
+        shardRepository.give(item.getId(), item.getStockShards(), count);
+    }
+}
@@ -0,0 +1,10 @@
+package jpabook.jpashop.service;
+
+/**
+ * 주문 시 재고 차감 방식
+ */
+public enum StockMode {
+    ATOMIC, // update ... where stock_quantity >= ? 한 문장 (락 대기, 재시도 없음)
+    OPTIMISTIC, // 더티 체킹 + @Version (충돌하면 ObjectOptimisticLockingFailureException)
+    PESSIMISTIC // SELECT ... FOR UPDATE 후 더티 체킹
+}
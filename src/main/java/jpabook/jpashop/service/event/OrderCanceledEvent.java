@@ -0,0 +1,30 @@
+package jpabook.jpashop.service.event;
+
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 주문이 취소됐다. (단건 / 대량 취소 모두)
+ * itemQuantities: 상품 id -> 취소된 수량 합
+ */
+@Getter
+@AllArgsConstructor
+public class OrderCanceledEvent {
+
+    private final List<Long> orderIds;
+    private final Map<Long, Integer> itemQuantities;
+
+    public static OrderCanceledEvent of(Order order) {
+        Map<Long, Integer> itemQuantities = new HashMap<>();
+        for (OrderItem orderItem : order.getOrderItems()) {
+            itemQuantities.merge(orderItem.getItem().getId(), orderItem.getCount(), Integer::sum);
+        }
+        return new OrderCanceledEvent(List.of(order.getId()), itemQuantities);
+    }
+}
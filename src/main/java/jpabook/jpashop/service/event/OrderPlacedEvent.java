@@ -0,0 +1,35 @@
+package jpabook.jpashop.service.event;
+
+import jpabook.jpashop.domain.Order;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 주문이 저장됐다. (OrderService 가 발행, 리스너는 보통 커밋 후에 받는다)
+ * 엔티티 대신 값만 담아서 트랜잭션이 끝난 뒤에도 지연 로딩 없이 쓸 수 있다.
+ */
+@Getter
+@AllArgsConstructor
+public class OrderPlacedEvent {
+
+    private final Long orderId;
+    private final List<Line> lines;
+
+    public static OrderPlacedEvent of(Order order) {
+        List<Line> lines = order.getOrderItems().stream()
+                .map(oi -> new Line(oi.getItem().getId(), oi.getItem().getName(), oi.getCount()))
+                .collect(Collectors.toList());
+        return new OrderPlacedEvent(order.getId(), lines);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Line {
+        private final Long itemId;
+        private final String itemName;
+        private final int count;
+    }
+}
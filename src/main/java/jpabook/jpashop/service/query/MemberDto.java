@@ -0,0 +1,10 @@
+package jpabook.jpashop.service.query;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class MemberDto {
+    private String name;
+}
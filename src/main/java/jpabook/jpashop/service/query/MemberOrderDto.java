@@ -0,0 +1,27 @@
+package jpabook.jpashop.service.query;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.order.summary.OrderSummary;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class MemberOrderDto {
+    private Long orderId;
+    private LocalDateTime orderDate;
+    private OrderStatus orderStatus;
+    private Address address;
+    private int totalPrice;
+    private int itemCount;
+
+    public MemberOrderDto(OrderSummary summary) {
+        orderId = summary.getOrderId();
+        orderDate = summary.getOrderDate();
+        orderStatus = summary.getStatus();
+        address = summary.getAddress();
+        totalPrice = summary.getTotalPrice();
+        itemCount = summary.getItemCount();
+    }
+}
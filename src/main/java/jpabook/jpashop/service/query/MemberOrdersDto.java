@@ -0,0 +1,21 @@
+package jpabook.jpashop.service.query;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 회원 주문 통계 + 주문 목록 한 페이지
+ */
+@Data
+@AllArgsConstructor
+public class MemberOrdersDto {
+    private Long memberId;
+    private long orderCount;
+    private long canceledCount;
+    private long totalSpent;
+    private LocalDateTime lastOrderDate;
+    private List<MemberOrderDto> orders;
+}
@@ -0,0 +1,63 @@
+package jpabook.jpashop.service.query;
+
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.repository.MemberRepository;
+import jpabook.jpashop.repository.member.MemberOrderStats;
+import jpabook.jpashop.repository.member.MemberOrderStatsRepository;
+import jpabook.jpashop.repository.member.MemberStatsDto;
+import jpabook.jpashop.repository.order.summary.OrderSummaryRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 회원 조회 API 전용 서비스 (OrderQueryService 와 같은 방식)
+ * 읽기 전용 트랜잭션 안에서 DTO까지 만들어서 돌려준다.
+ */
+@Service
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class MemberQueryService {
+
+    private final MemberRepository memberRepository;
+    private final MemberOrderStatsRepository memberOrderStatsRepository;
+    private final OrderSummaryRepository orderSummaryRepository;
+
+    // v1: 엔티티 직접 노출 (orders 는 @JsonIgnore)
+    public List<Member> findMemberEntities() {
+        return memberRepository.findAll();
+    }
+
+    public List<MemberDto> findMembers() {
+        return memberRepository.findAll().stream()
+                .map(m -> new MemberDto(m.getName()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 회원 주문 통계, Member.orders 컬렉션을 초기화하지 않는다.
+     * 통계 row가 없으면 (아직 재구축 전) 빈 통계
+     */
+    public MemberOrderStats findOrderStats(Long memberId) {
+        MemberOrderStats stats = memberOrderStatsRepository.findOne(memberId);
+        return stats != null ? stats : MemberOrderStats.empty(memberId);
+    }
+
+    // 회원 주문 통계 + 주문 목록 (최신순 페이징, 주문 요약 읽기 모델)
+    public MemberOrdersDto findOrders(Long memberId, int offset, int limit) {
+        MemberOrderStats stats = findOrderStats(memberId);
+        List<MemberOrderDto> orders = orderSummaryRepository.findByMember(memberId, offset, limit).stream()
+                .map(MemberOrderDto::new)
+                .collect(Collectors.toList());
+        return new MemberOrdersDto(memberId, stats.getOrderCount(), stats.getCanceledCount(), stats.getTotalSpent(),
+                stats.getLastOrderDate(), orders);
+    }
+
+    // 회원 한 페이지 + 주문 통계 (쿼리 한 번)
+    public List<MemberStatsDto> findMemberStats(int offset, int limit) {
+        return memberOrderStatsRepository.findStatsPage(offset, limit);
+    }
+}
@@ -1,8 +1,39 @@
 package jpabook.jpashop.service.query;
 
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.repository.order.bulk.OrderBulkReader;
+import jpabook.jpashop.repository.order.query.OrderFlatDto;
+import jpabook.jpashop.repository.order.query.OrderItemQueryDto;
+import jpabook.jpashop.repository.order.query.OrderQueryDto;
+import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import jpabook.jpashop.repository.order.simplequery.OrderSimpleQueryDto;
+import jpabook.jpashop.repository.order.simplequery.OrderSimpleQueryRepository;
+import jpabook.jpashop.repository.order.summary.OrderSummaryRepository;
+import jpabook.jpashop.repository.support.FetchPlanRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * 주문 / 간단한 주문 조회 API 전용 서비스 (spring.jpa.open-in-view: false)
+ * 컨트롤러는 여기서 다 만들어진 DTO만 받는다. 지연 로딩, DTO 변환이 모두 읽기 전용 트랜잭션 안에서 끝나기 때문에
+ * 커넥션은 쿼리하는 동안만 쓰고 JSON 직렬화, 응답 쓰기 중에는 풀에 돌아가 있다.
+ *
+ * 읽기 전용 트랜잭션이면 스프링(HibernateJpaDialect)이 세션을 FlushMode.MANUAL, 기본 읽기 전용으로 열어서
+ * 조회한 엔티티의 스냅샷(변경 감지용 복사본)을 만들지 않고 커밋할 때 flush 도 하지 않는다.
+ * 엔티티를 조회하는 리포지토리 메서드에는 같은 뜻의 쿼리 힌트(org.hibernate.readOnly, org.hibernate.flushMode)도 붙어 있다.
+ */
+@Service
 @Transactional(readOnly = true)
+@RequiredArgsConstructor
 public class OrderQueryService {
 
     /**
@@ -26,4 +57,135 @@ public class OrderQueryService {
      * 장점: 트랜잭션이 종료되는 시점에 영속성 컨텍스트를 닫고, 데이터베이스 커넥션도 닫기 때문에 리소스 낭비하지 않음
      * 단점: OSIV를 끄면 지연로딩을 모두 트랜잭션 안에서 처리해야한다.
      */
+
+    private final OrderRepository orderRepository;
+    private final OrderQueryRepository orderQueryRepository;
+    private final OrderSimpleQueryRepository orderSimpleQueryRepository;
+    private final OrderSummaryRepository orderSummaryRepository;
+    private final OrderBulkReader orderBulkReader;
+    private final FetchPlanRegistry fetchPlans;
+
+    //==주문 조회 (컬렉션 포함)==//
+
+    /**
+     * v1: 엔티티 직접 노출, 트랜잭션이 끝나기 전에 프록시를 강제 초기화해서 돌려준다.
+     */
+    public List<Order> findOrderEntities() {
+        List<Order> all = orderRepository.findAllByString(new OrderSearch());
+        for (Order order : all) {
+            // 프록시 강제 초기화, Hibernate5Module 때문에 없는 객체는 나타내지 않기 때문
+            // OSIV 를 FALSE 하면 트랜잭션이 끝나는 순간 데이터베이스 커넥션도 끊기기 때문에 지연로딩이 불가능하다.
+            // 즉 프록시 초기화를 여기(트랜잭션 안)에서 해야 한다. 안그러면 LazyInitializationException 발생
+            order.getMember().getName();
+            order.getDelivery().getAddress();
+            List<OrderItem> orderItems = order.getOrderItems();
+            orderItems.stream().forEach(o -> o.getItem().getName());
+        }
+        return all;
+    }
+
+    // v2: 지연 로딩 (N + 1)
+    public List<OrderDto> findOrdersLazy() {
+        return toOrderDtos(orderRepository.findAllByString(new OrderSearch()));
+    }
+
+    // v3: 한 페이지 + 컬렉션 쿼리 한 번 (full)
+    public List<OrderDto> findOrdersWithItem(OrderSearch orderSearch, int offset, int limit) {
+        return fetchPlans.record(FetchPlanRegistry.FULL, () ->
+                toOrderDtos(orderRepository.findAll(orderSearch, FetchPlanRegistry.FULL, offset, limit)));
+    }
+
+    // v3.1: XToOne 페치 조인 + 컬렉션 batch size 단위 (withItems)
+    public List<OrderDto> findOrdersPage(int offset, int limit) {
+        return fetchPlans.record(FetchPlanRegistry.WITH_ITEMS, () ->
+                toOrderDtos(orderRepository.findAll(new OrderSearch(), FetchPlanRegistry.WITH_ITEMS, offset, limit)));
+    }
+
+    // v3.1 키셋 페이징
+    public List<OrderDto> findOrdersAfter(Long lastOrderId, OrderSearch orderSearch, int limit) {
+        return fetchPlans.record(FetchPlanRegistry.WITH_ITEMS, () ->
+                toOrderDtos(orderRepository.findAllAfter(lastOrderId, orderSearch.getOrderStatus(), FetchPlanRegistry.WITH_ITEMS, limit)));
+    }
+
+    // v4: DTO 직접 조회 + 컬렉션 N + 1
+    public List<OrderQueryDto> findOrderQueryDtos() {
+        return orderQueryRepository.findOrderQueryDtos();
+    }
+
+    // v5: DTO 직접 조회 + 컬렉션 IN 절
+    public List<OrderQueryDto> findOrderQueryDtosOptimized() {
+        return orderQueryRepository.findAllByDto_optimization();
+    }
+
+    // v6: 플랫 조회 1번 + 애플리케이션에서 주문별로 묶기
+    public List<OrderQueryDto> findOrderQueryDtosFlat() {
+        List<OrderFlatDto> flats = orderQueryRepository.findAllByDto_flat();
+
+        return flats.stream()
+                .collect(Collectors.groupingBy(o -> new OrderQueryDto(o.getOrderId(), o.getName(), o.getOrderDate(), o.getOrderStatus(), o.getAddress()),
+                        Collectors.mapping(o -> new OrderItemQueryDto(o.getOrderId(), o.getItemName(), o.getOrderPrice(), o.getCount()), Collectors.toList())))
+                .entrySet().stream()
+                .map(e -> new OrderQueryDto(e.getKey().getOrderId(), e.getKey().getName(), e.getKey().getOrderDate(), e.getKey().getOrderStatus(), e.getKey().getAddress(), e.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    // v6 스트리밍: 커서가 열려있는 동안만 트랜잭션(커넥션)을 잡는다.
+    public void streamOrderQueryDtos(int fetchSize, Consumer<OrderQueryDto> consumer) {
+        orderQueryRepository.streamAllByDto_flat(fetchSize, consumer);
+    }
+
+    // 내보내기: StatelessSession 으로 읽어서 영속성 컨텍스트에 아무것도 남기지 않는다.
+    public void exportOrders(OrderStatus status, int chunkSize, Consumer<OrderDto> consumer) {
+        orderBulkReader.forEach(status, chunkSize, row -> consumer.accept(new OrderDto(row.getOrder(), row.getOrderItems())));
+    }
+
+    // v7: 읽기 모델
+    public List<OrderQueryDto> findOrderSummaries() {
+        return orderSummaryRepository.findDtos();
+    }
+
+    //==간단한 주문 조회 (XToOne)==//
+
+    // v1: 엔티티 직접 노출
+    public List<Order> findSimpleOrderEntities() {
+        List<Order> all = orderRepository.findAllByString(new OrderSearch());
+        for (Order order : all) {
+            order.getMember().getName(); // LAZY 강제 초기화
+            order.getDelivery().getAddress(); // LAZY 강제 초기화
+        }
+        return all;
+    }
+
+    // v2: 지연 로딩 (N + 1)
+    public List<SimpleOrderDto> findSimpleOrdersLazy() {
+        return toSimpleOrderDtos(orderRepository.findAllByString(new OrderSearch()));
+    }
+
+    // v3: 페치 조인 (summary)
+    public List<SimpleOrderDto> findSimpleOrdersFetchJoin() {
+        return fetchPlans.record(FetchPlanRegistry.SUMMARY, () ->
+                toSimpleOrderDtos(orderRepository.findAll(new OrderSearch(), FetchPlanRegistry.SUMMARY)));
+    }
+
+    // v4: DTO 직접 조회
+    public List<OrderSimpleQueryDto> findSimpleOrderQueryDtos() {
+        return orderSimpleQueryRepository.findOrdersDtos();
+    }
+
+    // v7: 읽기 모델
+    public List<OrderSimpleQueryDto> findSimpleOrderSummaries() {
+        return orderSummaryRepository.findSimpleDtos();
+    }
+
+    private static List<OrderDto> toOrderDtos(List<Order> orders) {
+        return orders.stream()
+                .map(OrderDto::new)
+                .collect(Collectors.toList());
+    }
+
+    private static List<SimpleOrderDto> toSimpleOrderDtos(List<Order> orders) {
+        return orders.stream()
+                .map(SimpleOrderDto::new)
+                .collect(Collectors.toList());
+    }
 }
@@ -0,0 +1,28 @@
+package jpabook.jpashop.service.query;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 주문 + 회원 + 배송 (XToOne 만)
+ */
+@Data
+public class SimpleOrderDto {
+    private Long orderId;
+    private String name;
+    private LocalDateTime orderDate;
+    private OrderStatus orderStatus;
+    private Address address;
+
+    public SimpleOrderDto(Order order) {
+        orderId = order.getId();
+        name = order.getMember().getName(); // LAZY 초기화 (프록시 초기화) 쿼리 나가는 시점
+        orderDate = order.getOrderDate();
+        address = order.getDelivery().getAddress();  // LAZY 초기화 (프록시 초기화) 쿼리 나가는 시점
+        orderStatus = order.getStatus();
+    }
+}
@@ -0,0 +1,28 @@
+package jpabook.jpashop.sql;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+@Configuration
+@EnableConfigurationProperties(SqlBudgetProperties.class)
+public class SqlBudgetConfig {
+
+    @Bean
+    HibernatePropertiesCustomizer sqlStatementCounterCustomizer() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new SqlStatementCounter());
+    }
+
+    // OSIV 인터셉터보다 바깥에서 감싸야 뷰 렌더링 중의 지연 로딩까지 센다.
+    @Bean
+    FilterRegistrationBean<SqlBudgetFilter> sqlBudgetFilter(SqlBudgetProperties properties, MeterRegistry meterRegistry) {
+        FilterRegistrationBean<SqlBudgetFilter> registration = new FilterRegistrationBean<>(new SqlBudgetFilter(properties, meterRegistry));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+}
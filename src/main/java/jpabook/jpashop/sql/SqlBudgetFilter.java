@@ -0,0 +1,102 @@
+package jpabook.jpashop.sql;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jpabook.jpashop.exception.SqlBudgetExceededException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 요청마다 실행된 SQL 수를 세서 응답 헤더와 메트릭으로 내보낸다.
+ * X-Sql-Statements: 전체 SQL 수
+ * X-Sql-Repeated: 같은 모양으로 반복된 SQL 수 (N + 1 의심)
+ *
+ * OSIV가 켜져 있으면 JSON 직렬화, 뷰 렌더링 중에도 지연 로딩 SQL이 나가기 때문에
+ * 응답 바디를 버퍼링해두고 모든 SQL이 끝난 뒤에 헤더를 붙인다.
+ * 세는 건 요청 스레드의 SQL 뿐이다. (SqlStatementCounter 는 ThreadLocal)
+ *
+ * 예산 검사도 요청이 끝난 뒤라서 FAIL 모드로 실패시켜도 트랜잭션은 이미 커밋된 뒤다. -> FAIL 은 테스트 / 개발에서만 쓴다.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class SqlBudgetFilter extends OncePerRequestFilter {
+
+    public static final String STATEMENTS_HEADER = "X-Sql-Statements";
+    public static final String REPEATED_HEADER = "X-Sql-Repeated";
+
+    private final SqlBudgetProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = pathOf(request);
+        return !properties.isEnabled()
+                || properties.getExcludes().stream().anyMatch(p -> pathMatcher.match(p, path));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        SqlStatementCounter.start();
+        SqlStatementStats stats;
+        try {
+            filterChain.doFilter(request, wrapper);
+        } finally {
+            stats = SqlStatementCounter.stop();
+        }
+
+        String path = pathOf(request);
+        String uri = uriTag(request);
+        int repeated = stats.repeatedCount(properties.getRepeatThreshold());
+
+        wrapper.setHeader(STATEMENTS_HEADER, String.valueOf(stats.getTotal()));
+        wrapper.setHeader(REPEATED_HEADER, String.valueOf(repeated));
+        meterRegistry.summary("http.server.sql.statements", "uri", uri).record(stats.getTotal());
+        if (repeated > 0) {
+            meterRegistry.counter("http.server.sql.repeated", "uri", uri).increment(repeated);
+            log.warn("N + 1 의심 {} {}: {}", request.getMethod(), path, stats.repeatedShapes(properties.getRepeatThreshold()));
+        }
+
+        Integer budget = budgetOf(path);
+        if (budget != null && stats.getTotal() > budget) {
+            meterRegistry.counter("http.server.sql.budget.exceeded", "uri", uri).increment();
+            String message = String.format("SQL 예산 초과 %s %s: %d > %d", request.getMethod(), path, stats.getTotal(), budget);
+            if (properties.getMode() == SqlBudgetProperties.Mode.FAIL) {
+                throw new SqlBudgetExceededException(message); // 버퍼링된 바디는 버린다. (쓰기 요청이면 커밋은 이미 끝났다)
+            }
+            log.warn(message);
+        }
+
+        wrapper.copyBodyToResponse();
+    }
+
+    private Integer budgetOf(String path) {
+        for (Map.Entry<String, Integer> entry : properties.getBudgets().entrySet()) {
+            if (pathMatcher.match(entry.getKey(), path)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    // 메트릭 태그가 무한히 늘어나지 않도록 /api/v2/members/{id} 같은 매핑 패턴을 쓴다.
+    private static String uriTag(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern != null ? pattern.toString() : "UNKNOWN";
+    }
+
+    private static String pathOf(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+}
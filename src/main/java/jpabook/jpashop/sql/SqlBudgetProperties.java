@@ -0,0 +1,43 @@
+package jpabook.jpashop.sql;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Getter @Setter
+@ConfigurationProperties("jpashop.sql-budget")
+public class SqlBudgetProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * 예산을 넘었을 때 LOG: 경고 로그만, FAIL: 요청을 실패시킨다.
+     * FAIL 은 테스트 / 개발용이다. 요청이 끝난 뒤에 검사하기 때문에 트랜잭션은 이미 커밋됐을 수 있고 (주문은 저장됐는데 500 응답),
+     * 요청 스레드에서 나간 SQL 만 센다. (비동기, 병렬 조회 스레드의 SQL 은 빠진다)
+     */
+    private Mode mode = Mode.LOG;
+
+    /**
+     * 같은 모양의 SQL이 이 횟수 이상 나가면 N + 1 로 본다.
+     */
+    private int repeatThreshold = 3;
+
+    /**
+     * 엔드포인트(ant 패턴)별 요청당 최대 SQL 수, 먼저 선언된 패턴이 우선
+     */
+    private Map<String, Integer> budgets = new LinkedHashMap<>();
+
+    /**
+     * 응답을 버퍼링하면 안되는 경로 (스트리밍 응답, 정적 리소스)
+     */
+    private List<String> excludes = new ArrayList<>(List.of("/api/v6/orders/stream", "/api/v1/orders/export", "/css/**", "/js/**"));
+
+    public enum Mode {
+        LOG, FAIL
+    }
+}
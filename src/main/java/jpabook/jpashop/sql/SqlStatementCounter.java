@@ -0,0 +1,40 @@
+package jpabook.jpashop.sql;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Hibernate가 실행하는 모든 SQL을 현재 스레드의 SqlStatementStats에 기록한다.
+ * hibernate.session_factory.statement_inspector 로 등록된다. (SqlBudgetConfig)
+ *
+ * 지연 로딩도 요청 스레드에서 일어나기 때문에 요청 단위로 셀 수 있다.
+ * 다른 스레드에서 실행된 SQL(InListLoader 병렬 조회 등)은 세지 않는다.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<SqlStatementStats> CURRENT = new ThreadLocal<>();
+
+    public static SqlStatementStats start() {
+        SqlStatementStats stats = new SqlStatementStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    public static SqlStatementStats stop() {
+        SqlStatementStats stats = CURRENT.get();
+        CURRENT.remove();
+        return stats;
+    }
+
+    public static SqlStatementStats current() {
+        return CURRENT.get();
+    }
+
+    @Override
+    public String inspect(String sql) {
+        SqlStatementStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.record(sql);
+        }
+        return sql; // SQL은 바꾸지 않는다.
+    }
+}
@@ -0,0 +1,59 @@
+package jpabook.jpashop.sql;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 요청 하나에서 실행된 SQL 통계
+ * 같은 모양(shape)의 SQL이 여러 번 나가면 N + 1 을 의심할 수 있다.
+ * shape는 파라미터 값, IN 절 길이, 공백 차이를 없앤 SQL 이다.
+ */
+public class SqlStatementStats {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern IN_LIST = Pattern.compile("in \\(\\s*\\?(\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+\\b");
+
+    private int total;
+    private final Map<String, Integer> shapes = new LinkedHashMap<>();
+
+    void record(String sql) {
+        total++;
+        shapes.merge(shapeOf(sql), 1, Integer::sum);
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * threshold 번 이상 반복된 SQL shape 와 횟수
+     */
+    public Map<String, Integer> repeatedShapes(int threshold) {
+        Map<String, Integer> repeated = new LinkedHashMap<>();
+        shapes.forEach((shape, count) -> {
+            if (count >= threshold) {
+                repeated.put(shape, count);
+            }
+        });
+        return repeated;
+    }
+
+    /**
+     * 반복된 shape 들에서 첫 번째 실행을 뺀 나머지 실행 수 (N + 1 에서 N 에 해당)
+     */
+    public int repeatedCount(int threshold) {
+        return repeatedShapes(threshold).values().stream()
+                .mapToInt(count -> count - 1)
+                .sum();
+    }
+
+    static String shapeOf(String sql) {
+        String shape = WHITESPACE.matcher(sql.trim().toLowerCase()).replaceAll(" ");
+        shape = STRING_LITERAL.matcher(shape).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        return IN_LIST.matcher(shape).replaceAll("in (?)");
+    }
+}
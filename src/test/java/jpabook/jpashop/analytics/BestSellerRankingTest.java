@@ -0,0 +1,79 @@
+package jpabook.jpashop.analytics;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class BestSellerRankingTest {
+
+    @Test
+    public void 판매량_순으로_정렬하고_꼴찌를_밀어낸다() {
+        TopN topN = new TopN(3);
+        topN.update(1, () -> 10);
+        topN.update(2, () -> 30);
+        topN.update(3, () -> 20);
+        topN.update(4, () -> 25); // 1번(10)을 밀어낸다.
+        topN.update(5, () -> 5); // 꼴찌보다 작아서 못 들어온다.
+
+        long[][] top = topN.top(3);
+        assertArrayEquals(new long[]{2, 4, 3}, top[0]);
+        assertArrayEquals(new long[]{30, 25, 20}, top[1]);
+    }
+
+    @Test
+    public void 취소로_판매량이_줄면_순위가_내려가고_0이면_빠진다() {
+        TopN topN = new TopN(3);
+        topN.update(1, () -> 10);
+        topN.update(2, () -> 30);
+        topN.update(3, () -> 20);
+
+        topN.update(2, () -> 15);
+        assertArrayEquals(new long[]{3, 2, 1}, topN.top(3)[0]);
+
+        topN.update(3, () -> 0);
+        assertArrayEquals(new long[]{2, 1}, topN.top(3)[0]);
+    }
+
+    @Test
+    public void 급상승은_최근_조각만_더한다() {
+        AtomicLong now = new AtomicLong(0);
+        TrendingWindow window = new TrendingWindow(3, 1000, 4, 256, now::get);
+
+        window.add(7, 5);
+        now.set(1500);
+        window.add(7, 2);
+        window.add(8, 1);
+        assertTrue("Count-Min 은 작게 추정하지 않는다.", window.estimate(7) >= 7);
+
+        now.set(3200); // 조각 0 은 window(3조각) 밖
+        assertEquals(2, window.estimate(7));
+
+        now.set(10_000); // 전부 지나감
+        assertEquals(0, window.estimate(7));
+        assertEquals(0, window.estimate(8));
+    }
+
+    @Test
+    public void 새_조각이_열리면_급상승_순위_점수를_다시_매긴다() {
+        AtomicLong now = new AtomicLong(0);
+        TrendingWindow window = new TrendingWindow(2, 1000, 4, 256, now::get);
+        TopN trending = new TopN(2);
+
+        assertTrue("처음 조각도 새로 연다.", window.add(1, 100));
+        trending.update(1, () -> window.estimate(1));
+        window.add(2, 50);
+        trending.update(2, () -> window.estimate(2));
+        assertFalse(window.add(2, 1));
+
+        now.set(2500); // 조각 0 (상품 1, 2) 이 window 밖으로
+        assertTrue(window.add(3, 10));
+        trending.rescore(window::estimate);
+        trending.update(3, () -> window.estimate(3));
+
+        long[][] top = trending.top(2);
+        assertArrayEquals("예전 점수는 빠지고 새 상품이 들어온다.", new long[]{3}, top[0]);
+        assertEquals(10, top[1][0]);
+    }
+}
@@ -0,0 +1,122 @@
+package jpabook.jpashop.analytics;
+
+import jpabook.jpashop.domain.OrderStatus;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class SalesSnapshotTest {
+
+    private static final ForkJoinPool pool = new ForkJoinPool(4);
+    private static final byte ORDER = (byte) OrderStatus.ORDER.ordinal();
+    private static final byte CANCEL = (byte) OrderStatus.CANCEL.ordinal();
+    private static final LocalDate DAY = LocalDate.of(2022, 7, 1);
+
+    @AfterClass
+    public static void shutdown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void 상품별_일별_상태별_집계() {
+        SalesColumns columns = new SalesColumns();
+        columns.append(1, day(0), 10, 1000, 2, ORDER);
+        columns.append(1, day(0), 20, 500, 1, ORDER);
+        columns.append(2, day(1), 10, 1000, 3, ORDER);
+        columns.append(3, day(1), 20, 500, 4, CANCEL);
+
+        SalesSnapshot snapshot = columns.snapshot();
+
+        List<SalesRow> byItem = snapshot.aggregate(query(SalesGroupBy.ITEM), pool).getRows();
+        assertEquals("매출 내림차순", 10L, byItem.get(0).getKey());
+        assertEquals(5000, byItem.get(0).getRevenue());
+        assertEquals(2500, byItem.get(1).getRevenue());
+
+        List<SalesRow> byDay = snapshot.aggregate(query(SalesGroupBy.DAY), pool).getRows();
+        assertEquals("날짜 오름차순", DAY, byDay.get(0).getKey());
+        assertEquals(2500, byDay.get(0).getRevenue());
+        assertEquals(5000, byDay.get(1).getRevenue());
+
+        SalesQuery ordered = query(SalesGroupBy.STATUS);
+        ordered.setStatus(OrderStatus.ORDER);
+        SalesReport report = snapshot.aggregate(ordered, pool);
+        assertEquals(1, report.getRows().size());
+        assertEquals(5500, report.getRows().get(0).getRevenue());
+        assertEquals(3, report.getMatchedLines());
+    }
+
+    @Test
+    public void 병렬_스캔_결과는_순차_합계와_같다() {
+        int lines = SalesScanTask.THRESHOLD * 5 + 123;
+        SalesColumns columns = new SalesColumns();
+        long expectedRevenue = 0;
+        for (int i = 0; i < lines; i++) {
+            int price = (i % 50 + 1) * 100;
+            int count = i % 5 + 1;
+            columns.append(i / 3, day(i % 30), i % 97, price, count, ORDER);
+            if (i % 97 == 7 && i % 30 < 10) {
+                expectedRevenue += (long) price * count;
+            }
+        }
+
+        SalesQuery query = query(SalesGroupBy.ITEM);
+        query.setItemId(7L);
+        query.setTo(DAY.plusDays(9));
+        SalesReport report = columns.snapshot().aggregate(query, pool);
+
+        assertEquals(1, report.getRows().size());
+        assertEquals(expectedRevenue, report.getRows().get(0).getRevenue());
+    }
+
+    @Test
+    public void 취소하면_주문의_모든_주문상품_상태가_바뀐다() {
+        SalesColumns columns = new SalesColumns();
+        columns.append(1, day(0), 10, 1000, 1, ORDER);
+        columns.append(2, day(0), 10, 1000, 1, ORDER);
+        columns.append(2, day(0), 20, 1000, 1, ORDER);
+        columns.append(3, day(0), 10, 1000, 1, ORDER);
+
+        assertEquals(2, columns.updateStatus(2, CANCEL));
+        assertEquals("없는 주문", 0, columns.updateStatus(4, CANCEL));
+
+        SalesQuery canceled = query(SalesGroupBy.STATUS);
+        canceled.setStatus(OrderStatus.CANCEL);
+        assertEquals(2, columns.snapshot().aggregate(canceled, pool).getMatchedLines());
+    }
+
+    @Test
+    public void 뒤를_잘라내고_늦게_커밋된_주문부터_다시_붙인다() {
+        SalesColumns columns = new SalesColumns();
+        columns.append(1, day(0), 10, 1000, 1, ORDER);
+        columns.append(3, day(0), 10, 1000, 1, ORDER);
+        columns.append(3, day(0), 20, 1000, 1, ORDER);
+        SalesSnapshot before = columns.snapshot();
+
+        assertFalse("2번 주문이 늦게 커밋됐다.", columns.containsOrder(2));
+        assertEquals(2, columns.truncateAfter(1));
+        columns.append(2, day(0), 30, 500, 1, ORDER);
+        columns.append(3, day(0), 10, 1000, 1, ORDER);
+        columns.append(3, day(0), 20, 1000, 1, ORDER);
+
+        assertTrue(columns.containsOrder(2));
+        assertEquals(3, columns.lastOrderId());
+        assertEquals(3500, columns.snapshot().aggregate(query(SalesGroupBy.STATUS), pool).getRows().get(0).getRevenue());
+        assertEquals("이전 스냅샷은 그대로", 3000, before.aggregate(query(SalesGroupBy.STATUS), pool).getRows().get(0).getRevenue());
+    }
+
+    private static SalesQuery query(SalesGroupBy groupBy) {
+        SalesQuery query = new SalesQuery();
+        query.setGroupBy(groupBy);
+        query.setLimit(0);
+        return query;
+    }
+
+    private static int day(int plusDays) {
+        return (int) DAY.plusDays(plusDays).toEpochDay();
+    }
+}
@@ -0,0 +1,46 @@
+package jpabook.jpashop.api;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class OrderApiControllerTest {
+
+    @Autowired MockMvc mockMvc;
+
+    @Test
+    public void 키셋_페이징_limit_범위를_벗어나면_400() throws Exception {
+        mockMvc.perform(get("/api/v3.1/orders/keyset").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v3.1/orders/keyset").param("limit", "201"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v3.1/orders/keyset").param("limit", String.valueOf(Integer.MAX_VALUE))) // limit + 1 이 넘친다.
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v3.1/orders/keyset").param("limit", "200"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void offset_페이징_offset_limit_범위를_벗어나면_400() throws Exception {
+        for (String url : new String[]{"/api/v3/orders", "/api/v3.1/orders"}) {
+            mockMvc.perform(get(url).param("offset", "-1"))
+                    .andExpect(status().isBadRequest());
+            mockMvc.perform(get(url).param("limit", "-1"))
+                    .andExpect(status().isBadRequest());
+            mockMvc.perform(get(url).param("limit", "201"))
+                    .andExpect(status().isBadRequest());
+            mockMvc.perform(get(url).param("offset", "0").param("limit", "200"))
+                    .andExpect(status().isOk());
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package jpabook.jpashop.cache;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.repository.ItemRepository;
+import jpabook.jpashop.repository.MemberRepository;
+import jpabook.jpashop.service.OrderService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 2차 캐시는 트랜잭션을 넘어서 동작하기 때문에 트랜잭션을 직접 나눠서 커밋한다.
+ * 캐시 설정은 테스트 application.yml 에 있어서 다른 테스트와 같은 컨텍스트(같은 캐시, 같은 DB)를 쓴다.
+ * -> 시작할 때 캐시와 통계를 비우고, 끝나면 커밋한 row 를 지운다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class SecondLevelCacheTest {
+
+    @Autowired EntityManagerFactory emf;
+    @Autowired JdbcTemplate jdbcTemplate;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired ItemRepository itemRepository;
+    @Autowired MemberRepository memberRepository;
+    @Autowired OrderService orderService;
+
+    Long memberId;
+    Long bookId;
+
+    @Before
+    public void setUp() {
+        emf.getCache().evictAll();
+        emf.unwrap(SessionFactory.class).getStatistics().clear();
+    }
+
+    @After
+    public void tearDown() {
+        if (memberId != null) {
+            List<Long> deliveryIds = jdbcTemplate.queryForList("select delivery_id from orders where member_id = ?", Long.class, memberId);
+            jdbcTemplate.update("delete from order_summary_line where order_id in (select order_id from orders where member_id = ?)", memberId);
+            jdbcTemplate.update("delete from order_summary where member_id = ?", memberId);
+            jdbcTemplate.update("delete from member_order_stats where member_id = ?", memberId);
+            jdbcTemplate.update("delete from order_item where order_id in (select order_id from orders where member_id = ?)", memberId);
+            jdbcTemplate.update("delete from orders where member_id = ?", memberId);
+            deliveryIds.forEach(id -> jdbcTemplate.update("delete from delivery where delivery_id = ?", id));
+            jdbcTemplate.update("delete from member where member_id = ?", memberId);
+        }
+        if (bookId != null) {
+            jdbcTemplate.update("delete from item where item_id = ?", bookId);
+        }
+        emf.getCache().evictAll(); // JDBC 로 지운 row 가 캐시에 남지 않게
+    }
+
+    @Test
+    public void 재고가_바뀌면_상품_캐시를_무효화한다() {
+        // given
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        memberId = tx.execute(s -> createMember().getId());
+        bookId = tx.execute(s -> createBook("시골 Jpa", 10000, 10).getId());
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+
+        tx.execute(s -> itemRepository.findOne(bookId));
+        long hits = statistics.getSecondLevelCacheHitCount();
+        tx.execute(s -> itemRepository.findOne(bookId));
+        assertTrue("두 번째 조회는 2차 캐시에서 가져온다.", statistics.getSecondLevelCacheHitCount() > hits);
+
+        // when
+        orderService.order(memberId, bookId, 3);
+
+        // then
+        assertEquals("주문 후에는 캐시가 아니라 바뀐 재고를 읽어야 한다.",
+                7, tx.execute(s -> itemRepository.findOne(bookId)).getStockQuantity());
+    }
+
+    private Book createBook(String name, int price, int stockQuantity) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(price);
+        book.setStockQuantity(stockQuantity);
+        itemRepository.save(book);
+        return book;
+    }
+
+    private Member createMember() {
+        Member member = new Member();
+        member.setName("회원1");
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        memberRepository.save(member);
+        return member;
+    }
+}
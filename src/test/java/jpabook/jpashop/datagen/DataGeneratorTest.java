@@ -0,0 +1,118 @@
+package jpabook.jpashop.datagen;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * 같은 seed면 스레드 수가 달라도 같은 row 가 만들어진다.
+ * id는 실행할 때마다 시퀀스에서 새로 예약하므로 실행마다 첫 id를 빼서 비교한다.
+ * JDBC로 바로 커밋하기 때문에 테스트 트랜잭션 없이 돌리고 만든 row 는 끝나면 지운다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class DataGeneratorTest {
+
+    @Autowired DataGenerator dataGenerator;
+    @Autowired JdbcTemplate jdbcTemplate;
+    @Autowired EntityManagerFactory emf;
+
+    private Ids firstRun;
+
+    @After
+    public void tearDown() {
+        if (firstRun != null) {
+            Ids ids = firstRun; // 첫 실행 이후 id는 전부 이 테스트 것
+            jdbcTemplate.update("delete from order_item where order_item_id > ?", ids.orderItem);
+            jdbcTemplate.update("delete from orders where order_id > ?", ids.order);
+            jdbcTemplate.update("delete from delivery where delivery_id > ?", ids.delivery);
+            jdbcTemplate.update("delete from member where member_id > ?", ids.member);
+            jdbcTemplate.update("delete from item where item_id > ?", ids.item);
+        }
+        emf.getCache().evictAll();
+    }
+
+    @Test
+    public void 같은_seed면_스레드_수와_상관없이_같은_데이터() {
+        // 주문 파티션(10,000건)이 두 개 이상 나오게
+        List<List<Map<String, Object>>> first = generate(42, 1);
+        List<List<Map<String, Object>>> second = generate(42, 4);
+        List<List<Map<String, Object>>> other = generate(7, 4);
+
+        assertEquals(10_050, first.get(2).size());
+        assertEquals(first, second);
+        assertNotEquals("seed가 다르면 다른 데이터", first, other);
+    }
+
+    private List<List<Map<String, Object>>> generate(long seed, int threads) {
+        DataGeneratorProperties props = new DataGeneratorProperties();
+        props.setSeed(seed);
+        props.setThreads(threads);
+        props.setMembers(20);
+        props.setBooks(5);
+        props.setAlbums(3);
+        props.setMovies(2);
+        props.setOrders(10_050);
+        props.setItemsPerOrder(2);
+        props.setCategoryDepth(0); // 카테고리 트리는 난수를 쓰지 않는다.
+
+        Ids before = new Ids();
+        if (firstRun == null) {
+            firstRun = before;
+        }
+        dataGenerator.generate(props);
+        return rows(before);
+    }
+
+    /**
+     * 이번 실행에서 만든 row 를 테이블별로 id 순서대로, id는 실행의 첫 id 기준으로 바꿔서 읽는다.
+     */
+    private List<List<Map<String, Object>>> rows(Ids before) {
+        long member = firstId("member", "member_id", before.member);
+        long item = firstId("item", "item_id", before.item);
+        long delivery = firstId("delivery", "delivery_id", before.delivery);
+        long order = firstId("orders", "order_id", before.order);
+        long orderItem = firstId("order_item", "order_item_id", before.orderItem);
+
+        List<List<Map<String, Object>>> tables = new ArrayList<>();
+        tables.add(jdbcTemplate.queryForList("select member_id - ? as id, name, city, street, zipcode" +
+                " from member where member_id > ? order by member_id", member, before.member));
+        tables.add(jdbcTemplate.queryForList("select item_id - ? as id, dtype, name, price, stock_quantity, author, artist, director, actor" +
+                " from item where item_id > ? order by item_id", item, before.item));
+        tables.add(jdbcTemplate.queryForList("select o.order_id - ? as id, o.member_id - ? as member, o.delivery_id - ? as delivery," +
+                        " o.order_date, o.status, o.total_price, d.city, d.street, d.zipcode, d.status as delivery_status" +
+                        " from orders o join delivery d on d.delivery_id = o.delivery_id where o.order_id > ? order by o.order_id",
+                order, member, delivery, before.order));
+        tables.add(jdbcTemplate.queryForList("select order_item_id - ? as id, order_id - ? as order_id, item_id - ? as item_id, order_price, count" +
+                " from order_item where order_item_id > ? order by order_item_id", orderItem, order, item, before.orderItem));
+        return tables;
+    }
+
+    private long firstId(String table, String idColumn, long after) {
+        return jdbcTemplate.queryForObject("select min(" + idColumn + ") from " + table + " where " + idColumn + " > ?", Long.class, after);
+    }
+
+    private long maxId(String table, String idColumn) {
+        return jdbcTemplate.queryForObject("select coalesce(max(" + idColumn + "), 0) from " + table, Long.class);
+    }
+
+    // 생성 전 테이블별 마지막 id (시퀀스는 줄지 않으므로 이보다 큰 id는 이번 실행 것)
+    private class Ids {
+        final long member = maxId("member", "member_id");
+        final long item = maxId("item", "item_id");
+        final long delivery = maxId("delivery", "delivery_id");
+        final long order = maxId("orders", "order_id");
+        final long orderItem = maxId("order_item", "order_item_id");
+    }
+}
@@ -0,0 +1,189 @@
+package jpabook.jpashop.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * 원본 / 복제본을 각각 H2 메모리 DB로 두고 복제는 테스트에서 하트비트를 복사하는 것으로 흉내낸다.
+ * 테스트마다 DB 이름을 새로 만들어서 앞 테스트가 남긴 테이블 (풀을 닫은 복제본 등) 과 섞이지 않게 한다.
+ */
+public class DataSourceRouterTest {
+
+    private final AtomicLong clock = new AtomicLong(1000);
+    private HikariDataSource primary;
+    private HikariDataSource replicaPool;
+    private DataSourceRouter router;
+    private ReplicaHealthChecker checker;
+
+    @Before
+    public void setUp() {
+        String suffix = UUID.randomUUID().toString();
+        primary = pool("routing-primary-" + suffix);
+        replicaPool = pool("routing-replica-" + suffix);
+        createRouteTable(primary, "primary");
+        createRouteTable(replicaPool, "replica");
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        router = new DataSourceRouter(primary, List.of(new ReplicaDataSource("replica1", replicaPool)), true, meterRegistry);
+        checker = new ReplicaHealthChecker(router, 1000, meterRegistry, clock::get);
+        checker.createHeartbeatTable();
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        ReadYourWrites.clear();
+        if (router != null) {
+            router.destroy();
+        }
+        // 풀을 닫아도 DB_CLOSE_DELAY=-1 메모리 DB는 남아 있어서 새 커넥션으로 내린다.
+        shutdown(primary);
+        shutdown(replicaPool);
+    }
+
+    @Test
+    public void 읽기_전용_트랜잭션만_복제본으로() throws SQLException {
+        // 복제 전: 하트비트 테이블이 복제본에 없다.
+        checker.check();
+        assertEquals("primary", readOnlyRoute());
+
+        replicate();
+        clock.set(1500);
+        checker.check(); // 지연 500ms
+
+        assertEquals("replica", readOnlyRoute());
+        assertEquals("쓰기 트랜잭션은 원본", "primary", route());
+    }
+
+    @Test
+    public void 복제_지연이_크면_원본() throws SQLException {
+        replicate();
+        clock.set(5000);
+        checker.check(); // 지연 4000ms > 1000ms
+
+        assertEquals("primary", readOnlyRoute());
+    }
+
+    @Test
+    public void 내가_쓴_데이터가_복제되기_전에는_원본() throws SQLException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        ReadYourWrites.begin(0, response, 30);
+        replicate(); // 1000 까지 복제
+        clock.set(1100);
+        checker.check();
+
+        // 쓰기 트랜잭션 커밋 (1200)
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        route();
+        clock.set(1200);
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+        assertTrue(ReadYourWrites.lastWriteMillis() > 0);
+        assertNotNull("다음 요청도 이어지도록 쿠키를 내린다.", response.getCookie(ReadYourWrites.COOKIE_NAME));
+
+        ReadYourWrites.begin(1200, response, 30);
+        assertEquals("1200 쓰기가 아직 복제 안됨", "primary", readOnlyRoute());
+
+        replicate(); // 1100 (마지막 하트비트) 까지 복제
+        clock.set(1300);
+        checker.check();
+        assertEquals("primary", readOnlyRoute());
+
+        replicate(); // 1300 까지 복제
+        clock.set(1400);
+        checker.check();
+        assertEquals("replica", readOnlyRoute());
+    }
+
+    @Test
+    public void 복제본_커넥션_실패하면_원본() throws SQLException {
+        replicate();
+        clock.set(1100);
+        checker.check();
+        assertEquals("replica", readOnlyRoute());
+
+        replicaPool.close();
+
+        assertEquals("primary", readOnlyRoute());
+        assertFalse(router.getReplicas().get(0).isHealthy());
+    }
+
+    // 원본 하트비트를 복제본으로 복사 (복제 흉내)
+    private void replicate() {
+        Long beat = new JdbcTemplate(primary).queryForObject("select beat_millis from replication_heartbeat where id = 1", Long.class);
+        JdbcTemplate replica = new JdbcTemplate(replicaPool);
+        replica.execute("create table if not exists replication_heartbeat (id int primary key, beat_millis bigint not null)");
+        replica.update("delete from replication_heartbeat");
+        replica.update("insert into replication_heartbeat (id, beat_millis) values (1, ?)", beat);
+    }
+
+    private String readOnlyRoute() throws SQLException {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        try {
+            return route();
+        } finally {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        }
+    }
+
+    private String route() throws SQLException {
+        try (Connection connection = router.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select name from route")) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    // 어느 DB에서 읽었는지 확인용
+    private static void createRouteTable(HikariDataSource dataSource, String name) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table route (name varchar(20))");
+        jdbcTemplate.update("insert into route values (?)", name);
+    }
+
+    private static void shutdown(HikariDataSource dataSource) throws SQLException {
+        if (dataSource == null) {
+            return;
+        }
+        dataSource.close();
+        try (Connection connection = DriverManager.getConnection(dataSource.getJdbcUrl(), "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("shutdown");
+        }
+    }
+
+    private static HikariDataSource pool(String name) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setPoolName(name);
+        pool.setJdbcUrl("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        pool.setUsername("sa");
+        pool.setMaximumPoolSize(2);
+        return pool;
+    }
+}
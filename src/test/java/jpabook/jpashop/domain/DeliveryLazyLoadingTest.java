@@ -0,0 +1,78 @@
+package jpabook.jpashop.domain;
+
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.service.OrderService;
+import jpabook.jpashop.sql.SqlStatementCounter;
+import jpabook.jpashop.sql.SqlStatementStats;
+import org.hibernate.Hibernate;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Delivery.order 는 mappedBy 일대일이라 바이트코드 향상(build.gradle hibernate.enhance)이 있어야 지연 로딩된다.
+ * 향상이 빠지면 배송 하나마다 주문 select 가 하나씩 더 나간다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class DeliveryLazyLoadingTest {
+
+    @Autowired EntityManager em;
+    @Autowired OrderService orderService;
+
+    @Test
+    public void 배송을_조회해도_주문은_조회하지_않는다() {
+        // given
+        Member member = new Member();
+        member.setName("kim");
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        em.persist(member);
+
+        Book book = new Book();
+        book.setName("시골 JPA");
+        book.setPrice(10000);
+        book.setStockQuantity(10);
+        em.persist(book);
+
+        List<Long> orderIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            orderIds.add(orderService.order(member.getId(), book.getId(), 1));
+        }
+        List<Long> deliveryIds = em.createQuery("select o.delivery.id from Order o where o.id in :orderIds", Long.class)
+                .setParameter("orderIds", orderIds)
+                .getResultList();
+        em.flush();
+        em.clear();
+
+        // when
+        SqlStatementCounter.start();
+        List<Delivery> deliveries = em.createQuery("select d from Delivery d where d.id in :ids", Delivery.class)
+                .setParameter("ids", deliveryIds)
+                .getResultList();
+        Delivery found = em.find(Delivery.class, deliveryIds.get(0));
+        SqlStatementStats stats = SqlStatementCounter.stop();
+
+        // then
+        assertEquals("배송 목록 조회 한 번만 나가야 한다. (em.find 는 영속성 컨텍스트에서)", 1, stats.getTotal());
+        assertTrue(stats.repeatedShapes(1).keySet().stream().noneMatch(sql -> sql.contains("from orders")));
+        assertEquals(3, deliveries.size());
+        for (Delivery delivery : deliveries) {
+            assertFalse("Delivery.order 는 초기화되지 않아야 한다.", Hibernate.isPropertyInitialized(delivery, "order"));
+        }
+
+        // 접근하면 그때 주문을 읽는다.
+        Order order = found.getOrder();
+        assertTrue(orderIds.contains(order.getId()));
+        assertSame(found, order.getDelivery());
+    }
+}
@@ -0,0 +1,80 @@
+package jpabook.jpashop.domain.id;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.junit.Assert.*;
+
+public class IdBlockDispenserTest {
+
+    @Test
+    public void 블록_단위로_순서대로_나눠준다() {
+        AtomicLong sequence = new AtomicLong(1);
+        IdBlockDispenser dispenser = new IdBlockDispenser("test_seq", 10, new SimpleMeterRegistry());
+
+        for (long expected = 1; expected <= 25; expected++) {
+            assertEquals(expected, dispenser.next(() -> sequence.getAndAdd(10)));
+        }
+        assertEquals("시퀀스는 블록마다 한 번씩만 조회한다.", 31, sequence.get()); // 1, 11, 21
+    }
+
+    @Test
+    public void 동시에_받아도_id가_겹치지_않는다() throws Exception {
+        AtomicLong sequence = new AtomicLong(1);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        IdBlockDispenser dispenser = new IdBlockDispenser("test_seq", 10, registry);
+
+        int threads = 8;
+        int perThread = 10_000;
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(workers.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    assertTrue(ids.add(dispenser.next(() -> sequence.getAndAdd(10))));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        workers.shutdown();
+
+        assertEquals(threads * perThread, ids.size());
+        assertTrue(registry.counter("jpashop.id.block.refills", "sequence", "test_seq").count() > 0);
+    }
+
+    @Test
+    public void 미리_받기가_실패해도_꺼낸_id는_돌려준다() {
+        AtomicLong sequence = new AtomicLong(1);
+        AtomicBoolean broken = new AtomicBoolean();
+        IdBlockDispenser dispenser = new IdBlockDispenser("test_seq", 10, new SimpleMeterRegistry());
+        LongSupplier flaky = () -> {
+            if (broken.get()) {
+                throw new IllegalStateException("시퀀스 조회 실패");
+            }
+            return sequence.getAndAdd(10);
+        };
+
+        assertEquals(1, dispenser.next(flaky));
+        broken.set(true);
+        for (long expected = 2; expected <= 10; expected++) {
+            assertEquals(expected, dispenser.next(flaky)); // 6 에서 미리 받기가 실패한다.
+        }
+
+        broken.set(false);
+        assertEquals("블록이 바닥나면 다시 받는다.", 11, dispenser.next(flaky));
+    }
+}
@@ -0,0 +1,155 @@
+package jpabook.jpashop.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jpabook.jpashop.domain.*;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.repository.support.FetchPlanRegistry;
+import jpabook.jpashop.sql.SqlStatementCounter;
+import jpabook.jpashop.sql.SqlStatementStats;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * fetch plan 마다 나가는 SQL 수
+ * plan 이 약속한 그래프(회원, 배송, 주문상품, 상품)를 다 읽어도 SQL 이 더 나가면 안된다.
+ * batch-size 를 2로 줄여서 주문 5건이면 withItems 는 컬렉션 쿼리가 3번 나간다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "jpashop.fetch-plan.batch-size=2")
+@Transactional
+public class FetchPlanTest {
+
+    private static final int ORDERS = 5;
+
+    @Autowired EntityManager em;
+    @Autowired OrderRepository orderRepository;
+    @Autowired FetchPlanRegistry fetchPlans;
+    @Autowired MeterRegistry meterRegistry;
+
+    OrderSearch search;
+
+    @Before
+    public void setUp() {
+        Member member = new Member();
+        member.setName("플랜회원");
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        em.persist(member);
+
+        Book book = createBook("시골 JPA");
+        Book other = createBook("JPA 프로그래밍");
+        for (int i = 0; i < ORDERS; i++) {
+            Delivery delivery = new Delivery();
+            delivery.setAddress(member.getAddress());
+            em.persist(Order.createOrder(member, delivery,
+                    OrderItem.createOrderItem(book, book.getPrice(), 1),
+                    OrderItem.createOrderItem(other, other.getPrice(), 1)));
+        }
+        em.flush();
+        em.clear();
+        em.getEntityManagerFactory().getCache().evictAll(); // 회원, 상품은 2차 캐시 대상이라 캐시에서 읽으면 SQL 수가 달라진다.
+
+        search = new OrderSearch();
+        search.setMemberName("플랜회원");
+    }
+
+    @Test
+    public void summary_주문_회원_배송_한번() {
+        List<Order> orders = assertStatements(1, () -> touchSummary(orderRepository.findAll(search, FetchPlanRegistry.SUMMARY, 0, 100)));
+        assertEquals(ORDERS, orders.size());
+    }
+
+    @Test
+    public void withItems_배치_크기마다_컬렉션_쿼리() {
+        int expected = 1 + 3; // 루트 1 + 주문 5건을 2개씩
+        assertEquals(expected, fetchPlans.get(FetchPlanRegistry.WITH_ITEMS).queryCount(ORDERS));
+
+        List<Order> orders = assertStatements(expected, () -> touchAll(orderRepository.findAll(search, FetchPlanRegistry.WITH_ITEMS, 0, 100)));
+        assertEquals(ORDERS, orders.size());
+    }
+
+    @Test
+    public void full_페이징해도_컬렉션_쿼리_한번() {
+        List<Order> orders = assertStatements(2, () -> touchAll(orderRepository.findAll(search, FetchPlanRegistry.FULL, 1, 3)));
+        assertEquals(3, orders.size());
+    }
+
+    @Test
+    public void full_페이징_없으면_같은_검색조건으로_컬렉션_조회() {
+        List<Order> orders = assertStatements(2, () -> touchAll(orderRepository.findAll(search, FetchPlanRegistry.FULL)));
+        assertEquals(ORDERS, orders.size());
+    }
+
+    @Test
+    public void 키셋_페이징도_plan_을_따른다() {
+        Long firstOrderId = em.createQuery("select min(o.id) from Order o where o.member.name = :name", Long.class)
+                .setParameter("name", "플랜회원")
+                .getSingleResult();
+
+        List<Order> orders = assertStatements(2, () -> touchAll(orderRepository.findAllAfter(firstOrderId - 1, null, FetchPlanRegistry.FULL, 3)));
+        assertEquals(3, orders.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void 없는_plan() {
+        fetchPlans.get("unknown");
+    }
+
+    @Test
+    public void 지연_로딩도_plan_쿼리_수에_잡힌다() {
+        double before = queriesOf(FetchPlanRegistry.SUMMARY);
+
+        // summary 는 주문상품을 읽지 않아서 주문마다 컬렉션 지연 로딩이 나간다. (default_batch_fetch_size 로 묶이더라도 1번 이상)
+        fetchPlans.record(FetchPlanRegistry.SUMMARY, () -> touchAll(orderRepository.findAll(search, FetchPlanRegistry.SUMMARY, 0, 100)));
+
+        assertTrue("plan 이 약속한 1번보다 많이 나간다.", queriesOf(FetchPlanRegistry.SUMMARY) - before > 1);
+    }
+
+    private double queriesOf(String planName) {
+        return meterRegistry.counter("jpashop.fetch_plan.queries", "plan", planName).count();
+    }
+
+    private <T> T assertStatements(int expected, Supplier<T> work) {
+        SqlStatementCounter.start();
+        T result = work.get();
+        SqlStatementStats stats = SqlStatementCounter.stop();
+        assertEquals("SQL 수", expected, stats.getTotal());
+        return result;
+    }
+
+    private static List<Order> touchSummary(List<Order> orders) {
+        for (Order order : orders) {
+            order.getMember().getName();
+            order.getDelivery().getAddress().getCity();
+        }
+        return orders;
+    }
+
+    private static List<Order> touchAll(List<Order> orders) {
+        touchSummary(orders);
+        for (Order order : orders) {
+            assertEquals(2, order.getOrderItems().size());
+            order.getOrderItems().forEach(orderItem -> orderItem.getItem().getName());
+        }
+        return orders;
+    }
+
+    private Book createBook(String name) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(10000);
+        book.setStockQuantity(100);
+        em.persist(book);
+        return book;
+    }
+}
@@ -0,0 +1,246 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.*;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.repository.order.bulk.OrderBulkReader;
+import jpabook.jpashop.repository.order.bulk.OrderBulkRow;
+import jpabook.jpashop.repository.support.FetchPlanRegistry;
+import jpabook.jpashop.repository.support.PersistenceContextGuard;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class OrderRepositoryTest {
+
+    @Autowired EntityManager em;
+
+    @Autowired OrderRepository orderRepository;
+    @Autowired OrderBulkReader orderBulkReader;
+
+    @Test
+    public void 키셋_페이징() {
+        // given
+        Member member = createMember();
+        Book book = createBook();
+        for (int i = 0; i < 7; i++) {
+            createOrder(member, book);
+        }
+        em.flush();
+        em.clear();
+
+        List<Long> expected = em.createQuery("select o.id from Order o order by o.id", Long.class).getResultList();
+
+        // when : 3개씩 끊어서 끝까지 읽는다.
+        List<Long> actual = new ArrayList<>();
+        Long lastOrderId = null;
+        while (true) {
+            List<Order> page = orderRepository.findAllAfter(lastOrderId, null, FetchPlanRegistry.SUMMARY, 3);
+            if (page.isEmpty()) {
+                break;
+            }
+            page.forEach(o -> actual.add(o.getId()));
+            lastOrderId = page.get(page.size() - 1).getId();
+        }
+
+        // then
+        assertEquals("키셋 페이징 결과는 전체를 id 순으로 읽은 것과 같아야 한다.", expected, actual);
+    }
+
+    @Test
+    public void 키셋_페이징_상태필터() {
+        // given
+        Member member = createMember();
+        Book book = createBook();
+        Order canceled = createOrder(member, book);
+        canceled.cancel();
+        createOrder(member, book);
+        em.flush();
+        em.clear();
+
+        // when
+        List<Order> result = orderRepository.findAllAfter(null, OrderStatus.CANCEL, FetchPlanRegistry.SUMMARY, 100);
+
+        // then
+        List<Long> ids = result.stream().map(Order::getId).collect(Collectors.toList());
+        assertTrue("취소된 주문이 조회되어야 한다.", ids.contains(canceled.getId()));
+        assertTrue("취소 상태 주문만 조회되어야 한다.", result.stream().allMatch(o -> o.getStatus() == OrderStatus.CANCEL));
+    }
+
+    @Test
+    public void 컬렉션_페치조인_페이징() {
+        // given
+        Member member = createMember();
+        Book book = createBook();
+        for (int i = 0; i < 5; i++) {
+            createOrder(member, book);
+        }
+        em.flush();
+        em.clear();
+
+        List<Long> expected = em.createQuery("select o.id from Order o order by o.id desc", Long.class)
+                .setFirstResult(2)
+                .setMaxResults(3)
+                .getResultList();
+
+        // when
+        List<Order> result = orderRepository.findAll(new OrderSearch(), FetchPlanRegistry.FULL, 2, 3);
+
+        // then
+        assertEquals("SQL 페이징 결과와 같은 주문이 같은 순서로 조회되어야 한다.",
+                expected, result.stream().map(Order::getId).collect(Collectors.toList()));
+        assertTrue("orderItems 컬렉션이 초기화되어 있어야 한다.",
+                result.stream().allMatch(o -> em.getEntityManagerFactory().getPersistenceUnitUtil().isLoaded(o, "orderItems")));
+    }
+
+    @Test
+    public void 검색조건_전체_합계() {
+        // given
+        Member member = createMember();
+        member.setName("합계회원");
+        Book book = createBook();
+        for (int i = 0; i < 3; i++) {
+            createOrder(member, book);
+        }
+        createOrder(member, book).setStatus(OrderStatus.CANCEL);
+        em.flush();
+        em.clear();
+
+        OrderSearch orderSearch = new OrderSearch();
+        orderSearch.setMemberName("합계회원");
+        orderSearch.setOrderStatus(OrderStatus.ORDER);
+
+        // when
+        OrderTotals totals = orderRepository.findTotals(orderSearch);
+
+        // then
+        assertEquals(3, totals.getOrderCount());
+        assertEquals("주문 금액은 저장된 total_price 합이다.", 3 * 10000, totals.getTotalPrice());
+        assertEquals(0, totals.getCanceledCount());
+    }
+
+    @Test
+    public void 주문목록_DTO_페이징_정렬() {
+        // given
+        Member member = createMember();
+        member.setName("목록회원");
+        Book book = createBook();
+        Book other = createBook();
+        other.setName("김영한 스프링");
+        for (int i = 0; i < 3; i++) {
+            createOrder(member, book);
+        }
+        Delivery delivery = new Delivery();
+        delivery.setAddress(member.getAddress());
+        Order twoItems = Order.createOrder(member, delivery,
+                OrderItem.createOrderItem(other, 20000, 1), OrderItem.createOrderItem(book, 10000, 2));
+        em.persist(twoItems);
+        em.flush();
+        em.clear();
+
+        OrderSearch orderSearch = new OrderSearch();
+        orderSearch.setMemberName("목록회원");
+        orderSearch.setOrderDateFrom(LocalDate.now().minusDays(1));
+        orderSearch.setOrderDateTo(LocalDate.now());
+
+        // when
+        Page<OrderListDto> first = orderRepository.findAll(orderSearch, PageRequest.of(0, 3, Sort.by(Sort.Direction.DESC, "orderPrice")));
+        Page<OrderListDto> last = orderRepository.findAll(orderSearch, PageRequest.of(1, 3, Sort.by(Sort.Direction.DESC, "orderPrice")));
+
+        // then
+        assertEquals(4, first.getTotalElements());
+        assertEquals(3, first.getNumberOfElements());
+        OrderListDto top = first.getContent().get(0);
+        assertEquals("금액이 가장 큰 주문이 먼저", twoItems.getId(), top.getOrderId());
+        assertEquals("김영한 스프링", top.getItemName()); // 첫 번째 주문상품
+        assertEquals(2, top.getItemCount());
+        assertEquals(40000, top.getOrderPrice());
+        assertEquals(3, top.getCount());
+        assertEquals(1, last.getNumberOfElements());
+
+        // 상품 이름 검색
+        orderSearch.setItemName("스프링");
+        Page<OrderListDto> byItem = orderRepository.findAll(orderSearch, PageRequest.of(0, 10));
+        assertEquals(1, byItem.getTotalElements());
+        assertEquals(twoItems.getId(), byItem.getContent().get(0).getOrderId());
+    }
+
+    @Test
+    public void 대량_조회는_영속성_컨텍스트를_쓰지_않는다() {
+        // given
+        Member member = createMember();
+        Book book = createBook();
+        Book other = createBook();
+        List<Long> orderIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Delivery delivery = new Delivery();
+            delivery.setAddress(member.getAddress());
+            Order order = Order.createOrder(member, delivery,
+                    OrderItem.createOrderItem(book, book.getPrice(), 1),
+                    OrderItem.createOrderItem(other, other.getPrice(), 2));
+            em.persist(order);
+            orderIds.add(order.getId());
+        }
+        em.flush();
+        em.clear();
+
+        // when : 청크 크기 2 -> 청크 경계를 여러 번 지난다.
+        List<OrderBulkRow> rows = new ArrayList<>();
+        orderBulkReader.forEach(null, 2, row -> {
+            if (orderIds.contains(row.getOrder().getId())) {
+                rows.add(row);
+            }
+        });
+
+        // then
+        assertEquals(orderIds, rows.stream().map(r -> r.getOrder().getId()).collect(Collectors.toList()));
+        for (OrderBulkRow row : rows) {
+            assertEquals("회원1", row.getOrder().getMember().getName());
+            assertEquals("서울", row.getOrder().getDelivery().getAddress().getCity());
+            assertEquals(2, row.getOrderItems().size());
+            assertEquals("시골 JPA", row.getOrderItems().get(0).getItem().getName());
+        }
+        assertEquals("StatelessSession 으로 읽은 엔티티는 영속성 컨텍스트에 남지 않는다.", 0, PersistenceContextGuard.managedEntities(em));
+    }
+
+    private Order createOrder(Member member, Book book) {
+        Delivery delivery = new Delivery();
+        delivery.setAddress(member.getAddress());
+        Order order = Order.createOrder(member, delivery, OrderItem.createOrderItem(book, book.getPrice(), 1));
+        em.persist(order);
+        return order;
+    }
+
+    private Book createBook() {
+        Book book = new Book();
+        book.setName("시골 JPA");
+        book.setPrice(10000);
+        book.setStockQuantity(100);
+        em.persist(book);
+        return book;
+    }
+
+    private Member createMember() {
+        Member member = new Member();
+        member.setName("회원1");
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        em.persist(member);
+        return member;
+    }
+}
@@ -0,0 +1,118 @@
+package jpabook.jpashop.repository.order.query;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.item.Book;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class OrderQueryRepositoryTest {
+
+    @Autowired EntityManager em;
+    @Autowired OrderQueryRepository orderQueryRepository;
+    @Autowired ObjectMapper objectMapper;
+
+    /**
+     * v6 스트리밍: 플랫 row 를 주문 단위로 다시 묶어서 한 줄에 주문 1건씩 (NDJSON)
+     * fetch size 2 -> 주문상품 3개인 첫 주문은 커서 청크 두 개에 걸쳐 읽힌다.
+     */
+    @Test
+    public void v6_스트리밍은_청크에_걸친_주문도_한_줄로_묶는다() throws IOException {
+        // given
+        Member member = createMember();
+        Book a = createBook("시골 JPA");
+        Book b = createBook("토비의 봄");
+        Book c = createBook("객체지향의 사실과 오해");
+        Long first = createOrder(member, OrderItem.createOrderItem(a, 10000, 1), OrderItem.createOrderItem(b, 10000, 2), OrderItem.createOrderItem(c, 10000, 3));
+        Long second = createOrder(member, OrderItem.createOrderItem(a, 10000, 1));
+        Long third = createOrder(member, OrderItem.createOrderItem(b, 10000, 1), OrderItem.createOrderItem(c, 10000, 1));
+        em.flush();
+        em.clear();
+
+        // when: 컨트롤러처럼 주문이 완성될 때마다 한 줄씩 쓴다.
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        orderQueryRepository.streamAllByDto_flat(2, order -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(order));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        // then
+        Map<Long, JsonNode> lines = new HashMap<>();
+        List<Long> orderIds = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            JsonNode order = objectMapper.readTree(line);
+            long orderId = order.get("orderId").asLong();
+            assertNull("주문 하나는 한 줄에만 나온다. orderId=" + orderId, lines.put(orderId, order));
+            orderIds.add(orderId);
+        }
+        assertTrue(orderIds.containsAll(List.of(first, second, third)));
+        assertTrue("주문 id 순서", orderIds.indexOf(first) < orderIds.indexOf(second) && orderIds.indexOf(second) < orderIds.indexOf(third));
+
+        assertEquals(Set.of("시골 JPA", "토비의 봄", "객체지향의 사실과 오해"), itemNames(lines.get(first)));
+        assertEquals(Set.of("시골 JPA"), itemNames(lines.get(second)));
+        assertEquals(Set.of("토비의 봄", "객체지향의 사실과 오해"), itemNames(lines.get(third)));
+        assertEquals("회원1", lines.get(first).get("name").asText());
+    }
+
+    private static Set<String> itemNames(JsonNode order) {
+        Set<String> names = new HashSet<>();
+        order.get("orderItems").forEach(item -> names.add(item.get("itemName").asText()));
+        assertEquals("주문상품이 빠지거나 겹치지 않는다.", order.get("orderItems").size(), names.size());
+        return names;
+    }
+
+    private Long createOrder(Member member, OrderItem... orderItems) {
+        Delivery delivery = new Delivery();
+        delivery.setAddress(member.getAddress());
+        Order order = Order.createOrder(member, delivery, orderItems);
+        em.persist(order);
+        return order.getId();
+    }
+
+    private Book createBook(String name) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(10000);
+        book.setStockQuantity(100);
+        em.persist(book);
+        return book;
+    }
+
+    private Member createMember() {
+        Member member = new Member();
+        member.setName("회원1");
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        em.persist(member);
+        return member;
+    }
+}
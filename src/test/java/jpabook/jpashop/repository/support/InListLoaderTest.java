@@ -0,0 +1,42 @@
+package jpabook.jpashop.repository.support;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.*;
+
+public class InListLoaderTest {
+
+    @Test
+    public void 청크는_2의_거듭제곱_크기로_채운다() {
+        // given
+        List<Long> ids = LongStream.rangeClosed(1, 11).boxed().collect(Collectors.toList());
+
+        // when
+        List<List<Long>> chunks = InListLoader.chunk(ids, 8);
+
+        // then
+        assertEquals(2, chunks.size());
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L), chunks.get(0));
+        assertEquals("남는 자리는 마지막 id로 채운다.", Arrays.asList(9L, 10L, 11L, 11L), chunks.get(1));
+    }
+
+    @Test
+    public void 중복_id는_제거한다() {
+        List<List<Long>> chunks = InListLoader.chunk(Arrays.asList(3L, 3L, 1L), 500);
+
+        assertEquals(1, chunks.size());
+        assertEquals(Arrays.asList(3L, 1L), chunks.get(0));
+    }
+
+    @Test
+    public void 마지막_청크는_chunkSize를_넘지_않는다() {
+        assertEquals(500, InListLoader.paddedSize(300, 500));
+        assertEquals(256, InListLoader.paddedSize(200, 500));
+        assertEquals(1, InListLoader.paddedSize(1, 500));
+    }
+}
@@ -0,0 +1,95 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import jpabook.jpashop.repository.ItemRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class ItemServiceTest {
+
+    @Autowired EntityManager em;
+
+    @Autowired ItemService itemService;
+    @Autowired OrderService orderService;
+    @Autowired ItemRepository itemRepository;
+
+    @Test
+    public void 재고_샤딩() {
+        // given
+        Member member = createMember();
+        Book book = createBook("시골 Jpa", 10000, 10);
+        em.flush(); // 샤딩은 상품 row 를 version 조건으로 잠근다.
+        itemService.enableStockSharding(book.getId(), 4); // 3, 3, 2, 2
+        em.flush();
+        em.clear();
+
+        // when: 샤드 하나로는 모자라서 여러 샤드에서 나눠 뺀다.
+        Long orderId = orderService.order(member.getId(), book.getId(), 7);
+
+        // then
+        Item sharded = itemRepository.findOne(book.getId());
+        assertEquals("상품 row 의 재고는 0", 0, sharded.getStockQuantity());
+        assertEquals("샤드 합만큼 재고가 보여야 한다.", 3, itemService.getStockQuantity(sharded));
+
+        orderService.cancelOrder(orderId);
+        em.flush();
+        em.clear();
+        assertEquals("취소하면 샤드로 재고가 돌아온다.", 10, itemService.getStockQuantity(itemRepository.findOne(book.getId())));
+
+        itemService.disableStockSharding(book.getId());
+        em.flush();
+        em.clear();
+        Item item = itemRepository.findOne(book.getId());
+        assertFalse(item.isStockSharded());
+        assertEquals("샤딩을 끄면 샤드 합이 상품 재고가 된다.", 10, item.getStockQuantity());
+    }
+
+    @Test(expected = NotEnoughStockException.class)
+    public void 재고_샤딩_재고수량초과() {
+        // given
+        Member member = createMember();
+        Book book = createBook("시골 Jpa", 10000, 10);
+        em.flush();
+        itemService.enableStockSharding(book.getId(), 4);
+        em.flush();
+        em.clear();
+
+        // when
+        orderService.order(member.getId(), book.getId(), 11);
+
+        // then
+        fail("재고 수량 부족 예외가 발생해야 한다.");
+    }
+
+    private Book createBook(String name, int price, int stockQuantity) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(price);
+        book.setStockQuantity(stockQuantity);
+        em.persist(book);
+        return book;
+    }
+
+    private Member createMember() {
+        Member member = new Member();
+        member.setName("회원1");
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        em.persist(member);
+        return member;
+    }
+}
@@ -1,15 +1,33 @@
 package jpabook.jpashop.service;
 
+import jpabook.jpashop.domain.Address;
 import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
 import jpabook.jpashop.repository.MemberRepository;
+import jpabook.jpashop.repository.member.MemberOrderStats;
+import jpabook.jpashop.repository.member.MemberStatsDto;
+import jpabook.jpashop.service.query.MemberOrdersDto;
+import jpabook.jpashop.service.query.MemberQueryService;
 import org.junit.Test;
 import org.junit.jupiter.api.Assertions;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.*;
 
@@ -20,6 +38,11 @@ public class MemberServiceTest {
 
     @Autowired MemberService memberService; // test로 다른 곳에서 참조하거나 하는 곳이 없기 때문에 그냥 필드 주입 선택
     @Autowired MemberRepository memberRepository;
+    @Autowired OrderService orderService;
+    @Autowired MemberQueryService memberQueryService;
+    @Autowired EntityManager em;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired JdbcTemplate jdbcTemplate;
 
     @Test
 //    @Rollback(value = false) DB 쿼리 나가는것을 확인하기 위해서는 false로 해서 확인할 수 있음!
@@ -51,4 +74,121 @@ public class MemberServiceTest {
         // then
         Assertions.fail("예외가 발생해야 한다!!"); // 여기까지 오면 안되고 위에서 에러가 발생해야 한다.
     }
-}
\ No newline at end of file
+
+    @Test
+    public void 회원_주문_통계() {
+        // given
+        Member member = new Member();
+        member.setName("kim");
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        Long memberId = memberService.join(member);
+
+        Book book = new Book();
+        book.setName("시골 JPA");
+        book.setPrice(10000);
+        book.setStockQuantity(10);
+        em.persist(book);
+
+        Long first = orderService.order(memberId, book.getId(), 2);
+        Long second = orderService.order(memberId, book.getId(), 1);
+
+        // when
+        orderService.cancelOrder(first);
+        em.flush();
+        em.clear(); // 통계는 벌크 update 로 바뀌기 때문에 영속성 컨텍스트를 비우고 다시 읽는다.
+
+        // then
+        MemberOrderStats stats = memberQueryService.findOrderStats(memberId);
+        assertEquals(1, stats.getOrderCount());
+        assertEquals(1, stats.getCanceledCount());
+        assertEquals(10000, stats.getTotalSpent());
+        assertNotNull(stats.getLastOrderDate());
+
+        // 대량 취소
+        orderService.cancelOrders(List.of(second));
+        stats = memberQueryService.findOrderStats(memberId);
+        assertEquals(0, stats.getOrderCount());
+        assertEquals(2, stats.getCanceledCount());
+        assertEquals(0, stats.getTotalSpent());
+
+        // 주문 목록은 최신순 페이징
+        MemberOrdersDto page = memberQueryService.findOrders(memberId, 0, 1);
+        assertEquals(2, page.getCanceledCount());
+        assertEquals(1, page.getOrders().size());
+        assertEquals(second, page.getOrders().get(0).getOrderId());
+
+        // 재구축해도 같은 값
+        memberService.rebuildOrderStats();
+        em.clear();
+        MemberStatsDto rebuilt = memberQueryService.findMemberStats(0, 1000).stream()
+                .filter(s -> s.getMemberId().equals(memberId))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(0, rebuilt.getOrderCount());
+        assertEquals(2, rebuilt.getCanceledCount());
+        assertEquals(0, rebuilt.getTotalSpent());
+    }
+
+    /**
+     * 통계 row 없이 만든 회원(JDBC, 직접 persist)의 첫 주문이 동시에 들어와도 하나가 키 중복으로 실패하지 않는다.
+     * 상품 row 잠금으로 줄 세워지지 않도록 스레드마다 다른 상품을 주문한다.
+     */
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // 스레드마다 따로 커밋한다.
+    public void 통계_없는_회원의_첫_주문이_동시에_들어와도_하나로_합친다() throws Exception {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long memberId = tx.execute(s -> {
+            Member member = new Member();
+            member.setName("동시주문");
+            member.setAddress(new Address("서울", "강가", "123-123"));
+            memberRepository.save(member); // join 을 거치지 않아서 통계 row 가 없다.
+            return member.getId();
+        });
+        List<Long> bookIds = tx.execute(s -> List.of(createBook("동시 JPA 1"), createBook("동시 JPA 2")));
+
+        ExecutorService executor = Executors.newFixedThreadPool(bookIds.size());
+        CyclicBarrier start = new CyclicBarrier(bookIds.size());
+        try {
+            List<Future<Long>> orders = new ArrayList<>();
+            for (Long bookId : bookIds) {
+                orders.add(executor.submit(() -> {
+                    start.await();
+                    return orderService.order(memberId, bookId, 1);
+                }));
+            }
+            for (Future<Long> order : orders) {
+                order.get(); // 키 중복이면 여기서 ExecutionException
+            }
+
+            MemberOrderStats stats = memberQueryService.findOrderStats(memberId);
+            assertEquals(2, stats.getOrderCount());
+            assertEquals(20000, stats.getTotalSpent());
+        } finally {
+            executor.shutdown();
+            deleteCommitted(memberId, bookIds);
+        }
+    }
+
+    private Long createBook(String name) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(10000);
+        book.setStockQuantity(10);
+        em.persist(book);
+        return book.getId();
+    }
+
+    // 커밋한 주문, 회원, 상품을 지운다. (다른 테스트는 롤백하는 트랜잭션 안에서 같은 DB를 쓴다)
+    private void deleteCommitted(Long memberId, List<Long> bookIds) {
+        List<Long> deliveryIds = jdbcTemplate.queryForList("select delivery_id from orders where member_id = ?", Long.class, memberId);
+        jdbcTemplate.update("delete from order_summary_line where order_id in (select order_id from orders where member_id = ?)", memberId);
+        jdbcTemplate.update("delete from order_summary where member_id = ?", memberId);
+        jdbcTemplate.update("delete from member_order_stats where member_id = ?", memberId);
+        jdbcTemplate.update("delete from order_item where order_id in (select order_id from orders where member_id = ?)", memberId);
+        jdbcTemplate.update("delete from orders where member_id = ?", memberId);
+        deliveryIds.forEach(id -> jdbcTemplate.update("delete from delivery where delivery_id = ?", id));
+        jdbcTemplate.update("delete from member where member_id = ?", memberId);
+        bookIds.forEach(id -> jdbcTemplate.update("delete from item where item_id = ?", id));
+        em.getEntityManagerFactory().getCache().evictAll(); // JDBC 로 지운 row 가 2차 캐시에 남지 않게
+    }
+}
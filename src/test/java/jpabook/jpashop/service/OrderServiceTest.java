@@ -1,6 +1,7 @@
 package jpabook.jpashop.service;
 
 import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.DeliveryStatus;
 import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderStatus;
@@ -8,14 +9,33 @@ import jpabook.jpashop.domain.item.Book;
 import jpabook.jpashop.domain.item.Item;
 import jpabook.jpashop.exception.NotEnoughStockException;
 import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.repository.OrderTotals;
+import jpabook.jpashop.repository.member.MemberOrderStats;
+import jpabook.jpashop.repository.member.MemberOrderStatsRepository;
+import jpabook.jpashop.repository.support.PersistenceContextGuard;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
@@ -30,6 +50,14 @@ public class OrderServiceTest {
 
     @Autowired OrderRepository orderRepository;
 
+    @Autowired ItemService itemService;
+
+    @Autowired MemberOrderStatsRepository memberOrderStatsRepository;
+
+    @Autowired PlatformTransactionManager transactionManager;
+
+    @Autowired JdbcTemplate jdbcTemplate;
+
     @Test
     public void 상품주문() {
         // given
@@ -66,6 +94,12 @@ public class OrderServiceTest {
         fail("재고 수량 부족 예외가 발생해야 한다.");
     }
 
+    // 리포지토리까지 가기 전에 서비스에서 막아야 컨트롤러가 400 으로 돌려준다. (리포지토리 예외는 스프링 예외로 바뀐다.)
+    @Test(expected = IllegalArgumentException.class)
+    public void 주문목록_허용하지_않는_정렬() {
+        orderService.findOrders(new OrderSearch(), PageRequest.of(0, 10, Sort.by("member.address.city")));
+    }
+
     @Test
     public void 주문취소() {
 
@@ -85,6 +119,236 @@ public class OrderServiceTest {
         assertEquals("주문이 취소된 상품은 그만큼 재고가 증가해야 한다.", 10, item.getStockQuantity());
     }
 
+    @Test
+    public void 주문취소_두_번_해도_한_번만_반영된다() {
+        // given
+        Member member = createMember();
+        Book item = createBook("시골 JPA", 10000, 10);
+        Long orderId = orderService.order(member.getId(), item.getId(), 2);
+        orderService.cancelOrder(orderId);
+
+        // when: 두 번 누르거나 POST /orders/{id}/cancel 를 다시 보낸다.
+        orderService.cancelOrder(orderId);
+        em.flush();
+        em.clear();
+
+        // then
+        MemberOrderStats stats = memberOrderStatsRepository.findOne(member.getId());
+        assertEquals(0, stats.getOrderCount());
+        assertEquals(1, stats.getCanceledCount());
+        assertEquals(0, stats.getTotalSpent());
+        assertEquals("재고는 한 번만 원복한다.", 10, em.find(Book.class, item.getId()).getStockQuantity());
+    }
+
+    @Test
+    public void 장바구니주문() {
+        // given
+        Member member = createMember();
+        Book bookA = createBook("시골 Jpa", 10000, 10);
+        Book bookB = createBook("토비의 봄", 20000, 5);
+
+        // when
+        Long orderId = orderService.checkout(member.getId(), Arrays.asList(
+                new OrderLine(bookB.getId(), 2), new OrderLine(bookA.getId(), 1)));
+
+        // then
+        Order getOrder = orderRepository.findOne(orderId);
+        assertEquals("장바구니 상품이 주문 하나에 담긴다.", 2, getOrder.getOrderItems().size());
+        assertEquals(10000 + 20000 * 2, getOrder.getTotalPrice());
+        assertEquals(9, bookA.getStockQuantity());
+        assertEquals(3, bookB.getStockQuantity());
+    }
+
+    @Test
+    public void 장바구니주문_재고부족이면_아무것도_차감하지_않는다() {
+        // given
+        Member member = createMember();
+        Book bookA = createBook("시골 Jpa", 10000, 10);
+        Book bookB = createBook("토비의 봄", 20000, 1);
+
+        // when
+        try {
+            orderService.checkout(member.getId(), Arrays.asList(
+                    new OrderLine(bookA.getId(), 3), new OrderLine(bookB.getId(), 2)));
+            fail("재고 수량 부족 예외가 발생해야 한다.");
+        } catch (NotEnoughStockException e) {
+            // then
+            assertEquals(10, bookA.getStockQuantity());
+            assertEquals(1, bookB.getStockQuantity());
+        }
+    }
+
+    /**
+     * 샤딩된 상품 두 개를 반대 순서로 담은 장바구니가 동시에 들어와도 데드락 없이 둘 다 주문된다.
+     * 샤드가 하나라서 장바구니 순서대로 차감하면 서로 상대의 샤드 row 를 기다린다.
+     */
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // 스레드마다 따로 커밋한다.
+    public void 샤딩된_상품을_반대_순서로_담은_장바구니가_동시에_들어와도_데드락_없다() throws Exception {
+        int rounds = 20;
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long memberId = tx.execute(s -> createMember().getId());
+        List<Long> bookIds = tx.execute(s -> List.of(
+                createBook("시골 Jpa", 10000, rounds * 2).getId(), createBook("토비의 봄", 20000, rounds * 2).getId()));
+        tx.executeWithoutResult(s -> bookIds.forEach(id -> itemService.enableStockSharding(id, 1)));
+        Long bookA = bookIds.get(0);
+        Long bookB = bookIds.get(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < rounds; round++) {
+                CyclicBarrier start = new CyclicBarrier(2);
+                Future<Long> ab = executor.submit(() -> {
+                    start.await();
+                    return orderService.checkout(memberId, Arrays.asList(new OrderLine(bookA, 1), new OrderLine(bookB, 1)));
+                });
+                Future<Long> ba = executor.submit(() -> {
+                    start.await();
+                    return orderService.checkout(memberId, Arrays.asList(new OrderLine(bookB, 1), new OrderLine(bookA, 1)));
+                });
+                ab.get(10, TimeUnit.SECONDS); // 데드락이면 여기서 ExecutionException
+                ba.get(10, TimeUnit.SECONDS);
+            }
+
+            for (Long bookId : bookIds) {
+                assertEquals(0, itemService.getStockQuantity(itemService.findOne(bookId)));
+            }
+        } finally {
+            executor.shutdownNow();
+            deleteCommitted(memberId, bookIds);
+        }
+    }
+
+    @Test
+    public void 대량주문_주문별_재고부족() {
+        // given
+        Member member = createMember();
+        Book bookA = createBook("시골 Jpa", 10000, 10);
+        Book bookB = createBook("토비의 봄", 20000, 1);
+
+        // when
+        List<OrderResult> results = orderService.orderBulk(Arrays.asList(
+                new OrderCommand(member.getId(), Arrays.asList(new OrderLine(bookA.getId(), 3), new OrderLine(bookB.getId(), 1))),
+                new OrderCommand(member.getId(), Arrays.asList(new OrderLine(bookA.getId(), 1), new OrderLine(bookB.getId(), 1))),
+                new OrderCommand(member.getId(), Arrays.asList(new OrderLine(bookA.getId(), 2))),
+                new OrderCommand(-1L, Arrays.asList(new OrderLine(bookA.getId(), 1)))));
+
+        // then
+        assertTrue(results.get(0).isSuccess());
+        assertFalse("재고가 모자란 주문만 실패한다.", results.get(1).isSuccess());
+        assertTrue(results.get(2).isSuccess());
+        assertFalse("없는 회원의 주문은 실패한다.", results.get(3).isSuccess());
+
+        assertEquals("실패한 주문은 재고를 차감하지 않는다.", 5, bookA.getStockQuantity());
+        assertEquals(0, bookB.getStockQuantity());
+        assertEquals(2, orderRepository.findOne(results.get(0).getOrderId()).getOrderItems().size());
+    }
+
+    @Test
+    public void 대량주문_배치마다_비워도_재고가_맞다() {
+        // given: batch_size(100) 를 넘는 주문, 샤딩된 상품 섞어서
+        Member member = createMember();
+        Book book = createBook("시골 Jpa", 10000, 300);
+        Book sharded = createBook("토비의 봄", 20000, 300);
+        em.flush();
+        itemService.enableStockSharding(sharded.getId(), 4);
+        em.flush();
+        em.clear();
+
+        List<OrderCommand> commands = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            commands.add(new OrderCommand(member.getId(), Arrays.asList(new OrderLine(book.getId(), 1), new OrderLine(sharded.getId(), 1))));
+        }
+
+        // when
+        List<OrderResult> results = orderService.orderBulk(commands);
+
+        // then
+        assertTrue(results.stream().allMatch(OrderResult::isSuccess));
+        assertEquals("배치가 끝나면 영속성 컨텍스트를 비운다.", 0, PersistenceContextGuard.managedEntities(em));
+        assertEquals(50, em.find(Book.class, book.getId()).getStockQuantity());
+        assertEquals(50, itemService.getStockQuantity(em.find(Book.class, sharded.getId())));
+    }
+
+    @Test
+    public void 주문목록_합계는_취소된_주문_금액을_빼고_건수는_따로_센다() {
+        // given: 상태 조건 없는 기본 목록
+        Member member = createMember();
+        member.setName("합계회원");
+        Book book = createBook("시골 Jpa", 10000, 10);
+        orderService.order(member.getId(), book.getId(), 1);
+        orderService.order(member.getId(), book.getId(), 2);
+        orderService.cancelOrder(orderService.order(member.getId(), book.getId(), 3));
+        em.flush();
+        em.clear();
+
+        OrderSearch orderSearch = new OrderSearch();
+        orderSearch.setMemberName("합계회원");
+
+        // when
+        OrderTotals byQuery = orderService.findOrderTotals(orderSearch);
+        OrderTotals byPage = orderService.findOrderTotals(orderSearch, orderService.findOrders(orderSearch, PageRequest.of(0, 10)));
+
+        // then: 집계 쿼리와 한 페이지에서 더한 합계가 같다.
+        for (OrderTotals totals : Arrays.asList(byQuery, byPage)) {
+            assertEquals(3, totals.getOrderCount());
+            assertEquals(1, totals.getCanceledCount());
+            assertEquals("취소된 주문 금액은 합계에서 뺀다.", 10000 * 3, totals.getTotalPrice());
+        }
+    }
+
+    @Test
+    public void 대량주문취소() {
+        // given
+        Member member = createMember();
+        Book bookA = createBook("시골 Jpa", 10000, 10);
+        Book bookB = createBook("토비의 봄", 20000, 10);
+        Long orderId1 = orderService.checkout(member.getId(), Arrays.asList(new OrderLine(bookA.getId(), 2), new OrderLine(bookB.getId(), 1)));
+        Long orderId2 = orderService.order(member.getId(), bookA.getId(), 3);
+        Long shippedId = orderService.order(member.getId(), bookB.getId(), 4);
+        orderRepository.findOne(shippedId).getDelivery().setStatus(DeliveryStatus.COMP);
+        em.flush();
+
+        // when
+        OrderCancelResult result = orderService.cancelOrders(Arrays.asList(orderId1, orderId2, shippedId, -1L));
+
+        // then
+        assertEquals(Arrays.asList(orderId1, orderId2), result.getCanceledOrderIds());
+        assertEquals(Arrays.asList(shippedId), result.getCompletedOrderIds());
+        assertEquals(Arrays.asList(-1L), result.getSkippedOrderIds());
+
+        assertEquals(OrderStatus.CANCEL, orderRepository.findOne(orderId1).getStatus());
+        assertEquals(OrderStatus.ORDER, orderRepository.findOne(shippedId).getStatus());
+        assertEquals("상품별로 합쳐서 원복", 10, em.find(Book.class, bookA.getId()).getStockQuantity());
+        assertEquals("배송완료 주문의 재고는 그대로", 6, em.find(Book.class, bookB.getId()).getStockQuantity());
+
+        OrderCancelResult again = orderService.cancelOrders(Arrays.asList(orderId1));
+        assertTrue("이미 취소된 주문은 다시 원복하지 않는다.", again.getCanceledOrderIds().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void 대량주문취소_조건_없으면_거절() {
+        OrderSearch filter = new OrderSearch();
+        filter.setOrderStatus(OrderStatus.ORDER); // 주문상태만으로는 전체 주문이다.
+
+        orderService.cancelOrders(filter);
+    }
+
+    // 커밋한 주문, 회원, 상품을 지운다. (다른 테스트는 롤백하는 트랜잭션 안에서 같은 DB를 쓴다)
+    private void deleteCommitted(Long memberId, List<Long> itemIds) {
+        List<Long> deliveryIds = jdbcTemplate.queryForList("select delivery_id from orders where member_id = ?", Long.class, memberId);
+        jdbcTemplate.update("delete from order_summary_line where order_id in (select order_id from orders where member_id = ?)", memberId);
+        jdbcTemplate.update("delete from order_summary where member_id = ?", memberId);
+        jdbcTemplate.update("delete from member_order_stats where member_id = ?", memberId);
+        jdbcTemplate.update("delete from order_item where order_id in (select order_id from orders where member_id = ?)", memberId);
+        jdbcTemplate.update("delete from orders where member_id = ?", memberId);
+        deliveryIds.forEach(id -> jdbcTemplate.update("delete from delivery where delivery_id = ?", id));
+        jdbcTemplate.update("delete from member where member_id = ?", memberId);
+        itemIds.forEach(id -> jdbcTemplate.update("delete from item_stock_shard where item_id = ?", id));
+        itemIds.forEach(id -> jdbcTemplate.update("delete from item where item_id = ?", id));
+        em.getEntityManagerFactory().getCache().evictAll(); // JDBC 로 지운 row 가 2차 캐시에 남지 않게
+    }
+
     private Book createBook(String name, int price, int stockQuantity) {
         Book book = new Book();
         book.setName(name);
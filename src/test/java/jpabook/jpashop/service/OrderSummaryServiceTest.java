@@ -0,0 +1,90 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.repository.order.summary.OrderSummary;
+import jpabook.jpashop.repository.order.summary.OrderSummaryCheckResult;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class OrderSummaryServiceTest {
+
+    @Autowired EntityManager em;
+    @Autowired OrderService orderService;
+    @Autowired MemberService memberService;
+    @Autowired ItemService itemService;
+    @Autowired OrderSummaryService orderSummaryService;
+
+    @Test
+    public void 주문_취소_이름변경이_읽기모델에_반영된다() {
+        // given
+        Member member = createMember();
+        Book book = createBook("시골 JPA", 10000, 10);
+
+        // when
+        Long orderId = orderService.order(member.getId(), book.getId(), 2);
+        memberService.update(member.getId(), "회원2");
+        itemService.updateItem(book.getId(), "시골 JPA 2판", 10000, 8);
+        orderService.cancelOrder(orderId);
+        em.flush();
+        em.clear();
+
+        // then
+        OrderSummary summary = em.find(OrderSummary.class, orderId);
+        assertEquals("회원2", summary.getMemberName());
+        assertEquals(OrderStatus.CANCEL, summary.getStatus());
+        assertEquals(20000, summary.getTotalPrice());
+        assertTrue("읽기 모델과 원본이 같아야 한다.", orderSummaryService.check().isConsistent());
+    }
+
+    @Test
+    public void 어긋난_읽기모델은_검사에서_찾고_재구축하면_맞춰진다() {
+        // given
+        Member member = createMember();
+        Book book = createBook("시골 JPA", 10000, 10);
+        Long orderId = orderService.order(member.getId(), book.getId(), 2);
+        em.flush();
+        em.createQuery("delete from OrderSummaryLine l where l.orderId = :orderId").setParameter("orderId", orderId).executeUpdate();
+        em.createQuery("update OrderSummary s set s.memberName = '엉뚱한 이름' where s.orderId = :orderId").setParameter("orderId", orderId).executeUpdate();
+
+        // when
+        OrderSummaryCheckResult broken = orderSummaryService.check();
+        orderSummaryService.rebuild();
+
+        // then
+        assertEquals(List.of(orderId), broken.getStaleOrderIds());
+        assertEquals(List.of(orderId), broken.getLineMismatchOrderIds());
+        assertTrue("재구축하면 원본과 같아야 한다.", orderSummaryService.check().isConsistent());
+    }
+
+    private Member createMember() {
+        Member member = new Member();
+        member.setName("회원1");
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        em.persist(member);
+        return member;
+    }
+
+    private Book createBook(String name, int price, int stockQuantity) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(price);
+        book.setStockQuantity(stockQuantity);
+        em.persist(book);
+        return book;
+    }
+}
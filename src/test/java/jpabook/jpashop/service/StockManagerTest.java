@@ -0,0 +1,198 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import jpabook.jpashop.repository.ItemRepository;
+import jpabook.jpashop.repository.ItemStockShardRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 모드별로 두 스레드가 같은 상품의 재고를 동시에 차감한다. (재고 5, 3개씩)
+ * 한쪽만 성공하고 재고는 2가 남아야 한다. (둘 다 5를 읽고 2를 쓰면 갱신 분실)
+ * 스레드마다 따로 커밋하기 때문에 테스트 트랜잭션 없이 돌리고 상품은 끝나면 지운다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class StockManagerTest {
+
+    private static final int STOCK = 5;
+    private static final int COUNT = 3;
+
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired ItemRepository itemRepository;
+    @Autowired ItemStockShardRepository shardRepository;
+    @Autowired JdbcTemplate jdbcTemplate;
+    @Autowired EntityManager em;
+    @Autowired EntityManagerFactory emf;
+
+    TransactionTemplate tx;
+    Long itemId;
+
+    @Before
+    public void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        itemId = tx.execute(s -> {
+            Book book = new Book();
+            book.setName("동시 재고");
+            book.setPrice(10000);
+            book.setStockQuantity(STOCK);
+            em.persist(book);
+            return book.getId();
+        });
+    }
+
+    @After
+    public void tearDown() {
+        jdbcTemplate.update("delete from item where item_id = ?", itemId);
+        emf.getCache().evictAll(); // JDBC 로 지운 row 가 2차 캐시에 남지 않게
+    }
+
+    @Test
+    public void ATOMIC_늦은_쪽은_재고_부족() throws Exception {
+        // 조건부 update 가 row 를 잡기 때문에 늦은 쪽은 먼저 커밋된 재고를 보고 0 row 를 바꾼다.
+        List<Throwable> failures = reserveConcurrently(StockMode.ATOMIC, false);
+
+        assertFailure(NotEnoughStockException.class, failures);
+        assertEquals(STOCK - COUNT, stockQuantity());
+    }
+
+    @Test
+    public void PESSIMISTIC_늦은_쪽은_잠금을_기다렸다가_재고_부족() throws Exception {
+        List<Throwable> failures = reserveConcurrently(StockMode.PESSIMISTIC, false);
+
+        assertFailure(NotEnoughStockException.class, failures);
+        assertEquals(STOCK - COUNT, stockQuantity());
+    }
+
+    @Test
+    public void OPTIMISTIC_둘_다_읽고_나서_늦게_커밋한_쪽은_버전_충돌() throws Exception {
+        // 둘 다 재고 5를 읽고 메모리에서 차감한 뒤에 커밋한다. -> update ... where version = ? 가 한쪽만 성공
+        List<Throwable> failures = reserveConcurrently(StockMode.OPTIMISTIC, true);
+
+        assertFailure(ObjectOptimisticLockingFailureException.class, failures);
+        assertEquals(STOCK - COUNT, stockQuantity());
+    }
+
+    @Test
+    public void OPTIMISTIC_대량_주문은_잠가서_겹친_주문이_있어도_커밋된다() throws Exception {
+        // 대량 주문이 version 충돌로 롤백되면 주문별 결과가 다 사라진다. -> 잠근 쪽이 이기고 겹친 주문 하나만 실패해야 한다.
+        StockManager stockManager = new StockManager(itemRepository, shardRepository, StockMode.OPTIMISTIC);
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        CountDownLatch singleDone = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> bulk = executor.submit(() -> tx.executeWithoutResult(s -> {
+                Item locked = stockManager.lockForBulk(List.of(itemId)).get(0);
+                stockManager.reserveAll(Map.of(locked, COUNT));
+                await(barrier);
+                // 겹친 주문이 먼저 커밋하게 기다려본다. (잠겨 있으면 대량 주문이 커밋할 때까지 못 끝낸다)
+                try {
+                    singleDone.await(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            Future<?> single = executor.submit(() -> {
+                try {
+                    tx.executeWithoutResult(s -> {
+                        stockManager.reserve(itemId, 1); // 대량 주문과 같은 version 을 읽는다.
+                        await(barrier);
+                    });
+                } finally {
+                    singleDone.countDown();
+                }
+            });
+
+            bulk.get(10, TimeUnit.SECONDS); // 잠그지 않으면 여기서 version 충돌
+            try {
+                single.get(10, TimeUnit.SECONDS);
+                fail("대량 주문이 먼저 고친 row 를 이전 version 으로 고치려는 겹친 주문은 실패해야 한다.");
+            } catch (ExecutionException expected) {
+                // version 충돌 (DB 에 따라 잠금 대기 후 동시 수정 오류)
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(STOCK - COUNT, stockQuantity());
+    }
+
+    /**
+     * @param readBothFirst true 면 두 스레드가 차감까지 마친 뒤에 커밋한다. (잠그는 모드에서는 늦은 쪽이 차감하다 기다리므로 false)
+     * @return 실패한 스레드의 예외
+     */
+    private List<Throwable> reserveConcurrently(StockMode mode, boolean readBothFirst) throws Exception {
+        StockManager stockManager = new StockManager(itemRepository, shardRepository, mode);
+        int threads = 2;
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> tx.executeWithoutResult(s -> {
+                    if (!readBothFirst) {
+                        await(barrier);
+                    }
+                    stockManager.reserve(itemId, COUNT);
+                    if (readBothFirst) {
+                        await(barrier);
+                    }
+                })));
+            }
+
+            List<Throwable> failures = new ArrayList<>();
+            for (Future<?> future : futures) {
+                try {
+                    future.get(10, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    failures.add(e.getCause());
+                }
+            }
+            return failures;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await(5, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void assertFailure(Class<? extends Throwable> expected, List<Throwable> failures) {
+        assertEquals("한쪽만 실패한다. " + failures, 1, failures.size());
+        assertTrue("실패 원인: " + failures.get(0), expected.isInstance(failures.get(0)));
+    }
+
+    private int stockQuantity() {
+        return jdbcTemplate.queryForObject("select stock_quantity from item where item_id = ?", Integer.class, itemId);
+    }
+}
@@ -0,0 +1,56 @@
+package jpabook.jpashop.sql;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.junit.Assert.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "jpashop.sql-budget.repeat-threshold=2",
+        "jpashop.sql-budget.mode=fail",
+        "jpashop.sql-budget.budgets[/api/v4/simple-orders]=1"
+})
+@AutoConfigureMockMvc
+public class SqlBudgetFilterTest {
+
+    @Autowired MockMvc mockMvc;
+
+    @Test
+    public void DTO_직접_조회는_쿼리_1번() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/v4/simple-orders"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertEquals("1", result.getResponse().getHeader(SqlBudgetFilter.STATEMENTS_HEADER));
+        assertEquals("0", result.getResponse().getHeader(SqlBudgetFilter.REPEATED_HEADER));
+    }
+
+    @Test
+    public void 지연로딩_N_플러스_1_감지() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/v2/simple-orders"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        int statements = Integer.parseInt(result.getResponse().getHeader(SqlBudgetFilter.STATEMENTS_HEADER));
+        int repeated = Integer.parseInt(result.getResponse().getHeader(SqlBudgetFilter.REPEATED_HEADER));
+        assertTrue("주문 조회 후 회원, 배송을 지연 로딩해야 한다.", statements > 1);
+        assertTrue("회원, 배송 조회가 반복되어야 한다.", repeated > 0);
+    }
+
+    @Test
+    public void 같은_모양의_SQL은_하나로_본다() {
+        assertEquals(SqlStatementStats.shapeOf("select * from item where item_id in (?, ?, ?)"),
+                SqlStatementStats.shapeOf("select *  from item\n where item_id in (?)"));
+        assertEquals(SqlStatementStats.shapeOf("select * from member where name = 'kim' and member_id = 1"),
+                SqlStatementStats.shapeOf("select * from member where name = 'lee' and member_id = 2"));
+    }
+}